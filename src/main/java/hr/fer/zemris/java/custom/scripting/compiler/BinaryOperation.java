@@ -0,0 +1,173 @@
+package hr.fer.zemris.java.custom.scripting.compiler;
+
+import java.util.EmptyStackException;
+import java.util.function.BiConsumer;
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.IntBinaryOperator;
+
+import hr.fer.zemris.java.custom.scripting.exec.ValueWrapper;
+
+/**
+ * Class that represents an echo operation which applies a binary operator to
+ * the two values on the top of the operand stack. The value on the top is the
+ * left operand, like in the interpreter. Numeric operands are computed on
+ * primitives with the rules of the {@link ValueWrapper}: two integers give an
+ * integer, anything else gives a double. Other operands go through the
+ * {@link ValueWrapper} itself.
+ * 
+ * @author Dinz
+ *
+ */
+class BinaryOperation implements EchoOperation {
+
+	/**
+	 * Symbol of the operator.
+	 */
+	private final String symbol;
+
+	/**
+	 * Operation on two integers.
+	 */
+	private final IntBinaryOperator intOperation;
+
+	/**
+	 * Operation on two doubles.
+	 */
+	private final DoubleBinaryOperator doubleOperation;
+
+	/**
+	 * Operation applied to the wrapped left operand.
+	 */
+	private final BiConsumer<ValueWrapper, Object> operation;
+
+	/**
+	 * Constructs a new binary operation.
+	 * 
+	 * @param symbol
+	 *            Symbol of the operator.
+	 * @param intOperation
+	 *            Operation on two integers.
+	 * @param doubleOperation
+	 *            Operation on two doubles.
+	 * @param operation
+	 *            Operation applied to the wrapped left operand.
+	 */
+	private BinaryOperation(String symbol, IntBinaryOperator intOperation, DoubleBinaryOperator doubleOperation,
+			BiConsumer<ValueWrapper, Object> operation) {
+		this.symbol = symbol;
+		this.intOperation = intOperation;
+		this.doubleOperation = doubleOperation;
+		this.operation = operation;
+	}
+
+	/**
+	 * Creates the binary operation for the operator symbol. An unknown symbol
+	 * still compiles, but fails when it is executed, like in the interpreter.
+	 * 
+	 * @param symbol
+	 *            Symbol of the operator.
+	 * @return Binary operation.
+	 */
+	static BinaryOperation forSymbol(String symbol) {
+		switch (symbol) {
+		case "*":
+			return new BinaryOperation(symbol, (a, b) -> a * b, (a, b) -> a * b, ValueWrapper::multiply);
+		case "/":
+			return new BinaryOperation(symbol, (a, b) -> a / checkDivisor(b), (a, b) -> a / checkDivisor(b),
+					ValueWrapper::divide);
+		case "+":
+			return new BinaryOperation(symbol, (a, b) -> a + b, (a, b) -> a + b, ValueWrapper::add);
+		case "-":
+			return new BinaryOperation(symbol, (a, b) -> a - b, (a, b) -> a - b, ValueWrapper::subtract);
+		default:
+			return new BinaryOperation(symbol, (a, b) -> {
+				throw new IllegalArgumentException("Invalid operator");
+			}, (a, b) -> {
+				throw new IllegalArgumentException("Invalid operator");
+			}, (left, right) -> {
+				throw new IllegalArgumentException("Invalid operator");
+			});
+		}
+	}
+
+	@Override
+	public void apply(ScriptFrame frame) {
+		OperandStack stack = frame.getOperands();
+		int top = stack.size() - 1;
+		if (top < 1) {
+			throw new EmptyStackException();
+		}
+		byte leftKind = stack.kindAt(top);
+		byte rightKind = stack.kindAt(top - 1);
+		if (leftKind != OperandStack.REFERENCE && rightKind != OperandStack.REFERENCE) {
+			if (isInteger(leftKind) && isInteger(rightKind)) {
+				int result = intOperation.applyAsInt(stack.intAt(top), stack.intAt(top - 1));
+				stack.drop(2);
+				stack.pushInt(result);
+			} else {
+				double result = doubleOperation.applyAsDouble(stack.doubleAt(top), stack.doubleAt(top - 1));
+				stack.drop(2);
+				stack.pushDouble(result);
+			}
+			return;
+		}
+
+		ValueWrapper left = new ValueWrapper(frame.pop().toString());
+		String right = frame.pop().toString();
+		operation.accept(left, right);
+		frame.push(left.getValue());
+	}
+
+	@Override
+	public boolean isFoldable() {
+		return true;
+	}
+
+	@Override
+	public String toString() {
+		return symbol;
+	}
+
+	/**
+	 * Checks if the kind of the operand is an integer kind.
+	 * 
+	 * @param kind
+	 *            Kind of the operand.
+	 * @return True if the operand is an integer, false otherwise.
+	 */
+	private static boolean isInteger(byte kind) {
+		return kind == OperandStack.INTEGER || kind == OperandStack.INTEGER_TEXT;
+	}
+
+	/**
+	 * Checks that the divisor is not zero.
+	 * 
+	 * @param divisor
+	 *            Divisor.
+	 * @return The same divisor.
+	 * @throws IllegalArgumentException
+	 *             If the divisor is zero.
+	 */
+	private static int checkDivisor(int divisor) {
+		if (divisor == 0) {
+			throw new IllegalArgumentException("Can't divide with zero.");
+		}
+		return divisor;
+	}
+
+	/**
+	 * Checks that the divisor is not zero.
+	 * 
+	 * @param divisor
+	 *            Divisor.
+	 * @return The same divisor.
+	 * @throws IllegalArgumentException
+	 *             If the divisor is zero.
+	 */
+	private static double checkDivisor(double divisor) {
+		if (divisor == 0) {
+			throw new IllegalArgumentException("Can't divide with zero.");
+		}
+		return divisor;
+	}
+}
@@ -0,0 +1,40 @@
+package hr.fer.zemris.java.custom.scripting.compiler;
+
+/**
+ * Class that represents a compiled sequence of nodes, such as the document or
+ * the body of a loop.
+ * 
+ * @author Dinz
+ *
+ */
+class BlockExecutable implements Executable {
+
+	/**
+	 * Nodes of the block, in order of execution.
+	 */
+	private final Executable[] children;
+
+	/**
+	 * Constructs a new compiled block.
+	 * 
+	 * @param children
+	 *            Nodes of the block.
+	 */
+	BlockExecutable(Executable[] children) {
+		this.children = children;
+	}
+
+	@Override
+	public void execute(ScriptFrame frame) {
+		for (Executable child : children) {
+			child.execute(frame);
+		}
+	}
+
+	@Override
+	public void dump(StringBuilder sb, String indent) {
+		for (Executable child : children) {
+			child.dump(sb, indent);
+		}
+	}
+}
@@ -0,0 +1,171 @@
+package hr.fer.zemris.java.custom.scripting.compiler;
+
+import java.io.IOException;
+import java.util.List;
+
+import hr.fer.zemris.java.webserver.RequestContext;
+
+/**
+ * Class that represents a compiled smart script. Like the
+ * {@link hr.fer.zemris.java.custom.scripting.exec.SmartScriptEngine}, the
+ * compiled script holds no execution state: every thread reuses its own
+ * {@link ScriptFrame}, so one compiled script can be executed by all the worker
+ * threads at the same time.
+ * 
+ * @author Dinz
+ *
+ */
+public class CompiledScript {
+
+	/**
+	 * Execution frame reused by every thread.
+	 */
+	private static final ThreadLocal<ScriptFrame> FRAMES = ThreadLocal.withInitial(ScriptFrame::new);
+
+	/**
+	 * Static prologue of the script, null if the script has none.
+	 */
+	private final Executable prologue;
+
+	/**
+	 * Top node of the compiled script, without the prologue.
+	 */
+	private final Executable root;
+
+	/**
+	 * Number of variable slots the script needs.
+	 */
+	private final int slots;
+
+	/**
+	 * Sources of the tags which were eliminated because they have no effect.
+	 */
+	private final List<String> eliminated;
+
+	/**
+	 * Parameters the script reads and changes.
+	 */
+	private final ScriptDependencies dependencies;
+
+	/**
+	 * Constructs a new compiled script.
+	 * 
+	 * @param prologue
+	 *            Static prologue of the script, null if the script has none.
+	 * @param root
+	 *            Top node of the compiled script, without the prologue.
+	 * @param slots
+	 *            Number of variable slots the script needs.
+	 * @param eliminated
+	 *            Sources of the tags which were eliminated because they have no
+	 *            effect.
+	 * @param dependencies
+	 *            Parameters the script reads and changes.
+	 */
+	CompiledScript(Executable prologue, Executable root, int slots, List<String> eliminated,
+			ScriptDependencies dependencies) {
+		this.prologue = prologue;
+		this.root = root;
+		this.slots = slots;
+		this.eliminated = eliminated;
+		this.dependencies = dependencies;
+	}
+
+	/**
+	 * Method which executes the script with the given context. The method can be
+	 * called from many threads at the same time.
+	 * 
+	 * @param requestContext
+	 *            Context the script writes to.
+	 */
+	public void execute(RequestContext requestContext) {
+		execute(requestContext, false);
+	}
+
+	/**
+	 * Method which executes the script with the given context. With the early
+	 * flush the header and the static prologue are sent to the client as soon
+	 * as they are written, before the rest of the script runs.
+	 * 
+	 * @param requestContext
+	 *            Context the script writes to.
+	 * @param earlyFlush
+	 *            True if the static prologue should be flushed to the client.
+	 */
+	public void execute(RequestContext requestContext, boolean earlyFlush) {
+		ScriptFrame frame = FRAMES.get();
+		if (frame.isInUse()) {
+			// a script started from within another script on the same thread
+			frame = new ScriptFrame();
+		}
+		frame.bind(requestContext, slots);
+		try {
+			if (prologue != null) {
+				prologue.execute(frame);
+				if (earlyFlush) {
+					flush(requestContext);
+				}
+			}
+			root.execute(frame);
+		} finally {
+			frame.reset();
+		}
+	}
+
+	/**
+	 * Checks if the script starts with a static prologue, which is the same on
+	 * every execution.
+	 * 
+	 * @return True if the script has a static prologue, false otherwise.
+	 */
+	public boolean hasStaticPrologue() {
+		return prologue != null;
+	}
+
+	/**
+	 * Gets the parameters the script reads and changes, as found by the
+	 * {@link DependencyAnalyzer}.
+	 * 
+	 * @return Dependencies of the script.
+	 */
+	public ScriptDependencies getDependencies() {
+		return dependencies;
+	}
+
+	/**
+	 * Method which flushes the output written so far to the client.
+	 * 
+	 * @param requestContext
+	 *            Context the script writes to.
+	 */
+	private static void flush(RequestContext requestContext) {
+		try {
+			requestContext.flush();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Method which describes the optimized tree of the compiled script, one
+	 * node per line. Texts show the echo tags folded into them, echo tags show
+	 * their operations, with the evaluated constant parts as
+	 * <code>folded(...)</code>, and the tags which were eliminated, loops
+	 * which never run and echo tags which write nothing, are listed at the end.
+	 * The end of the static prologue is marked with a separate line.
+	 * 
+	 * @return Dump of the compiled script.
+	 */
+	public String dump() {
+		StringBuilder sb = new StringBuilder();
+		if (prologue != null) {
+			prologue.dump(sb, "");
+			sb.append("-- end of static prologue --").append(System.lineSeparator());
+		}
+		root.dump(sb, "");
+		for (String loop : eliminated) {
+			sb.append("eliminated ").append(loop).append(System.lineSeparator());
+		}
+		return sb.toString();
+	}
+}
@@ -0,0 +1,135 @@
+package hr.fer.zemris.java.custom.scripting.compiler;
+
+import hr.fer.zemris.java.custom.scripting.exec.ExecutionBudget;
+
+/**
+ * Class that represents a compiled for loop whose start, end and step
+ * expressions are all numeric constants. The loop counts on primitives with
+ * the rules of the {@link hr.fer.zemris.java.custom.scripting.exec.ValueWrapper}:
+ * the counter stays an integer while it and the step are integers, and it is
+ * compared with the end expression as an integer only if both are integers.
+ * Every iteration is counted against the {@link ExecutionBudget} of the
+ * context, if it has one.
+ * 
+ * @author Dinz
+ *
+ */
+class CountedLoopExecutable implements Executable {
+
+	/**
+	 * Name of the loop variable.
+	 */
+	private final String variable;
+
+	/**
+	 * Slot of the loop variable.
+	 */
+	private final int slot;
+
+	/**
+	 * Start expression.
+	 */
+	private final NumberLiteral start;
+
+	/**
+	 * End expression.
+	 */
+	private final NumberLiteral end;
+
+	/**
+	 * Step expression.
+	 */
+	private final NumberLiteral step;
+
+	/**
+	 * Body of the loop.
+	 */
+	private final Executable body;
+
+	/**
+	 * Constructs a new counted loop.
+	 * 
+	 * @param variable
+	 *            Name of the loop variable.
+	 * @param slot
+	 *            Slot of the loop variable.
+	 * @param start
+	 *            Start expression, a number.
+	 * @param end
+	 *            End expression, a number.
+	 * @param step
+	 *            Step expression, a number.
+	 * @param body
+	 *            Body of the loop.
+	 */
+	CountedLoopExecutable(String variable, int slot, NumberLiteral start, NumberLiteral end, NumberLiteral step,
+			Executable body) {
+		this.variable = variable;
+		this.slot = slot;
+		this.start = start;
+		this.end = end;
+		this.step = step;
+		this.body = body;
+	}
+
+	@Override
+	public void execute(ScriptFrame frame) {
+		LoopCounter counter = new LoopCounter(start);
+		frame.setVariable(slot, counter);
+		ExecutionBudget budget = frame.getRequestContext().getExecutionBudget();
+
+		if (start.isInteger() && end.isInteger() && step.isInteger()) {
+			int endValue = end.intValue;
+			int stepValue = step.intValue;
+			while (counter.intValue < endValue) {
+				if (budget != null) {
+					budget.iteration();
+				}
+				body.execute(frame);
+				counter.intValue += stepValue;
+				counter.doubleValue = counter.intValue;
+				counter.text = null;
+			}
+		} else {
+			while (compare(counter) < 0) {
+				if (budget != null) {
+					budget.iteration();
+				}
+				body.execute(frame);
+				if (counter.kind == OperandStack.INTEGER_TEXT && step.isInteger()) {
+					counter.intValue += step.intValue;
+					counter.doubleValue = counter.intValue;
+				} else {
+					counter.doubleValue += step.doubleValue;
+					counter.kind = OperandStack.DOUBLE_TEXT;
+				}
+				counter.text = null;
+			}
+		}
+
+		frame.setVariable(slot, null);
+	}
+
+	@Override
+	public void dump(StringBuilder sb, String indent) {
+		sb.append(indent).append("COUNTED FOR ").append(variable).append(' ').append(start.text).append(' ')
+				.append(end.text).append(' ').append(step.text).append(" in slot ").append(slot)
+				.append(System.lineSeparator());
+		body.dump(sb, indent + "  ");
+	}
+
+	/**
+	 * Method which compares the counter with the end expression.
+	 * 
+	 * @param counter
+	 *            Loop counter.
+	 * @return Negative number if the counter is smaller than the end expression,
+	 *         zero if they are equal, positive number otherwise.
+	 */
+	private int compare(LoopCounter counter) {
+		if (counter.kind == OperandStack.INTEGER_TEXT && end.isInteger()) {
+			return Integer.compare(counter.intValue, end.intValue);
+		}
+		return Double.compare(counter.doubleValue, end.doubleValue);
+	}
+}
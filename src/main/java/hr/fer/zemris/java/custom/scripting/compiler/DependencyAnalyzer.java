@@ -0,0 +1,278 @@
+package hr.fer.zemris.java.custom.scripting.compiler;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import hr.fer.zemris.java.custom.scripting.compiler.ScriptDependencies.Kind;
+import hr.fer.zemris.java.custom.scripting.elems.Element;
+import hr.fer.zemris.java.custom.scripting.elems.ElementConstantDouble;
+import hr.fer.zemris.java.custom.scripting.elems.ElementConstantInteger;
+import hr.fer.zemris.java.custom.scripting.elems.ElementFunction;
+import hr.fer.zemris.java.custom.scripting.elems.ElementOperator;
+import hr.fer.zemris.java.custom.scripting.elems.ElementString;
+import hr.fer.zemris.java.custom.scripting.nodes.DocumentNode;
+import hr.fer.zemris.java.custom.scripting.nodes.EchoNode;
+import hr.fer.zemris.java.custom.scripting.nodes.ForLoopNode;
+import hr.fer.zemris.java.custom.scripting.nodes.INodeVisitor;
+import hr.fer.zemris.java.custom.scripting.nodes.Node;
+import hr.fer.zemris.java.custom.scripting.nodes.TextNode;
+
+/**
+ * Class that finds which parameters a script reads and whether it changes
+ * them, without executing it. Every echo tag is followed on a stack which
+ * holds the text of the constants and marks every other value as unknown, so
+ * a <code>@paramGet</code>, <code>@pparamGet</code> or <code>@tparamGet</code>
+ * whose name is a constant, possibly moved by <code>@dup</code> and
+ * <code>@swap</code>, is recorded with that name. The body of every loop is
+ * analyzed once, as if the loop ran.
+ * <p>
+ * A script which calls <code>@pparamSet</code>, <code>@pparamDel</code>,
+ * <code>@tparamSet</code> or <code>@tparamDel</code> is side-effecting. The
+ * dependencies can't be determined if a parameter is read with a name which is
+ * not a constant, or if the script calls a native function which is not pure,
+ * since such a function may read or change anything.
+ * 
+ * @author Dinz
+ *
+ */
+public final class DependencyAnalyzer implements INodeVisitor {
+
+	/**
+	 * Functions which change the parameters.
+	 */
+	private static final Set<String> STATE_CHANGING_FUNCTIONS = Collections.unmodifiableSet(
+			new HashSet<>(Arrays.asList("@pparamSet", "@pparamDel", "@tparamSet", "@tparamDel")));
+
+	/**
+	 * Registry the functions are resolved from.
+	 */
+	private final FunctionRegistry functions;
+
+	/**
+	 * Names of the parameters the script reads.
+	 */
+	private final Set<String> parameters = new TreeSet<>();
+
+	/**
+	 * Names of the temporary parameters the script reads.
+	 */
+	private final Set<String> temporaryParameters = new TreeSet<>();
+
+	/**
+	 * Names of the persistent parameters the script reads.
+	 */
+	private final Set<String> persistentParameters = new TreeSet<>();
+
+	/**
+	 * Descriptions of the parts of the script which could not be analyzed.
+	 */
+	private final List<String> warnings = new ArrayList<>();
+
+	/**
+	 * Flag which notes that the script changes the parameters.
+	 */
+	private boolean sideEffects;
+
+	/**
+	 * Constructs a new analyzer.
+	 * 
+	 * @param functions
+	 *            Registry the functions are resolved from.
+	 */
+	private DependencyAnalyzer(FunctionRegistry functions) {
+		this.functions = functions;
+	}
+
+	/**
+	 * Method which analyzes the document with the functions of the default
+	 * registry.
+	 * 
+	 * @param document
+	 *            Document to be analyzed.
+	 * @return Dependencies of the script.
+	 * @throws IllegalArgumentException
+	 *             If the document is null.
+	 */
+	public static ScriptDependencies analyze(DocumentNode document) {
+		return analyze(document, FunctionRegistry.getDefault());
+	}
+
+	/**
+	 * Method which analyzes the document with the functions of the given
+	 * registry.
+	 * 
+	 * @param document
+	 *            Document to be analyzed.
+	 * @param functions
+	 *            Registry the functions are resolved from.
+	 * @return Dependencies of the script.
+	 * @throws IllegalArgumentException
+	 *             If the document or the registry is null.
+	 */
+	public static ScriptDependencies analyze(DocumentNode document, FunctionRegistry functions) {
+		if (document == null) {
+			throw new IllegalArgumentException("Document can't be null.");
+		}
+		if (functions == null) {
+			throw new IllegalArgumentException("Function registry can't be null.");
+		}
+		DependencyAnalyzer analyzer = new DependencyAnalyzer(functions);
+		document.accept(analyzer);
+
+		Kind kind;
+		if (analyzer.sideEffects) {
+			kind = Kind.SIDE_EFFECTING;
+		} else if (analyzer.parameters.isEmpty() && analyzer.temporaryParameters.isEmpty()
+				&& analyzer.persistentParameters.isEmpty()) {
+			kind = Kind.PURE;
+		} else {
+			kind = Kind.PARAMETER_DEPENDENT;
+		}
+		return new ScriptDependencies(kind, analyzer.parameters, analyzer.temporaryParameters,
+				analyzer.persistentParameters, analyzer.warnings);
+	}
+
+	@Override
+	public void visitTextNode(TextNode node) {
+	}
+
+	@Override
+	public void visitForLoopNode(ForLoopNode node) {
+		visitChildren(node);
+	}
+
+	@Override
+	public void visitEchoNode(EchoNode node) {
+		List<String> stack = new ArrayList<>();
+		for (Element element : node.getElements()) {
+			if (element instanceof ElementConstantDouble || element instanceof ElementConstantInteger
+					|| element instanceof ElementString) {
+				stack.add(element.asText());
+			} else if (element instanceof ElementOperator) {
+				if (stack.size() < 2) {
+					// the tag fails here when it is executed
+					return;
+				}
+				pop(stack);
+				pop(stack);
+				stack.add(null);
+			} else if (element instanceof ElementFunction) {
+				FunctionDescriptor function = functions.get(element.asText());
+				if (function == null) {
+					continue;
+				}
+				if (stack.size() < function.getArity()) {
+					return;
+				}
+				call(function, stack, node);
+			} else {
+				// a variable, whose value is not known
+				stack.add(null);
+			}
+		}
+	}
+
+	@Override
+	public void visitDocumentNode(DocumentNode node) {
+		visitChildren(node);
+	}
+
+	/**
+	 * Method which visits the children of the node.
+	 * 
+	 * @param node
+	 *            Node whose children are visited.
+	 */
+	private void visitChildren(Node node) {
+		for (int i = 0; i < node.numberOfChildren(); i++) {
+			node.getChild(i).accept(this);
+		}
+	}
+
+	/**
+	 * Method which follows a function call on the stack of the echo tag.
+	 * 
+	 * @param function
+	 *            Called function.
+	 * @param stack
+	 *            Values of the stack, null for the unknown ones.
+	 * @param node
+	 *            Echo node of the call.
+	 */
+	private void call(FunctionDescriptor function, List<String> stack, EchoNode node) {
+		String name = function.getName();
+		switch (name) {
+		case "@paramGet":
+			read(parameters, function, stack, node);
+			return;
+		case "@pparamGet":
+			read(persistentParameters, function, stack, node);
+			return;
+		case "@tparamGet":
+			read(temporaryParameters, function, stack, node);
+			return;
+		case "@dup":
+			stack.add(stack.get(stack.size() - 1));
+			return;
+		case "@swap":
+			String top = pop(stack);
+			stack.add(stack.size() - 1, top);
+			return;
+		default:
+			break;
+		}
+		if (STATE_CHANGING_FUNCTIONS.contains(name)) {
+			sideEffects = true;
+		} else if (!function.isPure() && !name.equals("@setMimeType")) {
+			warnings.add("Function " + name + " in " + ScriptCompiler.source(node)
+					+ " may read or change the parameters.");
+		}
+		for (int i = 0; i < function.getArity(); i++) {
+			pop(stack);
+		}
+		for (int i = 0; i < function.getResults(); i++) {
+			stack.add(null);
+		}
+	}
+
+	/**
+	 * Method which follows a function reading a parameter: the default value
+	 * is on the top of the stack and the name is below it.
+	 * 
+	 * @param names
+	 *            Names of the parameters of the kind the function reads.
+	 * @param function
+	 *            Called function.
+	 * @param stack
+	 *            Values of the stack, null for the unknown ones.
+	 * @param node
+	 *            Echo node of the call.
+	 */
+	private void read(Set<String> names, FunctionDescriptor function, List<String> stack, EchoNode node) {
+		pop(stack);
+		String name = pop(stack);
+		if (name == null) {
+			warnings.add("Function " + function.getName() + " in " + ScriptCompiler.source(node)
+					+ " reads a parameter whose name is not a constant.");
+		} else {
+			names.add(name);
+		}
+		stack.add(null);
+	}
+
+	/**
+	 * Method which removes the value from the top of the stack.
+	 * 
+	 * @param stack
+	 *            Values of the stack, null for the unknown ones.
+	 * @return Removed value.
+	 */
+	private static String pop(List<String> stack) {
+		return stack.remove(stack.size() - 1);
+	}
+}
@@ -0,0 +1,70 @@
+package hr.fer.zemris.java.custom.scripting.compiler;
+
+import java.io.IOException;
+
+/**
+ * Class that represents a compiled echo node. The operations of the node are
+ * applied to the operand stack of the frame, after which the stack is written
+ * to the context from the bottom to the top, in a single write, and emptied.
+ * 
+ * @author Dinz
+ *
+ */
+class EchoExecutable implements Executable {
+
+	/**
+	 * Operations of the echo node, in order of execution.
+	 */
+	private final EchoOperation[] operations;
+
+	/**
+	 * Constructs a new compiled echo node.
+	 * 
+	 * @param operations
+	 *            Operations of the echo node.
+	 */
+	EchoExecutable(EchoOperation[] operations) {
+		this.operations = operations;
+	}
+
+	/**
+	 * Gets the operations of the echo node.
+	 * 
+	 * @return Operations, in the order they are applied.
+	 */
+	EchoOperation[] getOperations() {
+		return operations;
+	}
+
+	@Override
+	public void execute(ScriptFrame frame) {
+		OperandStack stack = frame.getOperands();
+		stack.clear();
+		for (EchoOperation operation : operations) {
+			operation.apply(frame);
+		}
+		if (stack.size() == 0) {
+			return;
+		}
+
+		StringBuilder sb = frame.getOutput();
+		for (int i = 0, n = stack.size(); i < n; i++) {
+			stack.appendTo(i, sb);
+		}
+		stack.clear();
+		try {
+			frame.getRequestContext().write(sb.toString());
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder("ECHO");
+		for (EchoOperation operation : operations) {
+			sb.append(' ').append(operation);
+		}
+		return sb.toString();
+	}
+}
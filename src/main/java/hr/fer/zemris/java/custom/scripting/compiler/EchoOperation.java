@@ -0,0 +1,30 @@
+package hr.fer.zemris.java.custom.scripting.compiler;
+
+/**
+ * Interface which describes a single compiled element of an echo tag. Every
+ * operation works on the operand stack of the frame.
+ * 
+ * @author Dinz
+ *
+ */
+public interface EchoOperation {
+
+	/**
+	 * Method which applies the operation to the operand stack of the frame.
+	 * 
+	 * @param frame
+	 *            Frame of the current execution.
+	 */
+	public void apply(ScriptFrame frame);
+
+	/**
+	 * Checks if the operation depends only on the operand stack, so it can be
+	 * applied once when the script is compiled if all of its operands are
+	 * constants.
+	 * 
+	 * @return True if the operation can be folded, false otherwise.
+	 */
+	public default boolean isFoldable() {
+		return false;
+	}
+}
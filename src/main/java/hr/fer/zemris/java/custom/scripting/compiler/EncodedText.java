@@ -0,0 +1,102 @@
+package hr.fer.zemris.java.custom.scripting.compiler;
+
+import java.nio.charset.Charset;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Class that represents a static text of a compiled script together with its
+ * encodings. The text is encoded once for every charset it is written with,
+ * so writing it again is only a copy of the bytes. The bytes of the charset
+ * used last are kept aside, since a server almost always writes with the same
+ * charset.
+ * 
+ * @author Dinz
+ *
+ */
+final class EncodedText {
+
+	/**
+	 * The text.
+	 */
+	private final String text;
+
+	/**
+	 * Bytes of the text for every charset it was written with.
+	 */
+	private final Map<Charset, byte[]> encodings = new ConcurrentHashMap<>();
+
+	/**
+	 * Encoding used last.
+	 */
+	private volatile Encoding last;
+
+	/**
+	 * Constructs a new encoded text.
+	 * 
+	 * @param text
+	 *            The text.
+	 */
+	EncodedText(String text) {
+		this.text = text;
+	}
+
+	/**
+	 * Gets the text.
+	 * 
+	 * @return The text.
+	 */
+	String getText() {
+		return text;
+	}
+
+	/**
+	 * Gets the bytes of the text in the charset. The returned array is shared
+	 * and must not be modified.
+	 * 
+	 * @param charset
+	 *            Charset of the bytes.
+	 * @return Encoded text.
+	 */
+	byte[] getBytes(Charset charset) {
+		Encoding encoding = last;
+		if (encoding != null && encoding.charset.equals(charset)) {
+			return encoding.bytes;
+		}
+		byte[] bytes = encodings.computeIfAbsent(charset, text::getBytes);
+		last = new Encoding(charset, bytes);
+		return bytes;
+	}
+
+	/**
+	 * Class that represents the bytes of the text in a single charset.
+	 * 
+	 * @author Dinz
+	 *
+	 */
+	private static final class Encoding {
+
+		/**
+		 * Charset of the bytes.
+		 */
+		private final Charset charset;
+
+		/**
+		 * Encoded text.
+		 */
+		private final byte[] bytes;
+
+		/**
+		 * Constructs a new encoding.
+		 * 
+		 * @param charset
+		 *            Charset of the bytes.
+		 * @param bytes
+		 *            Encoded text.
+		 */
+		private Encoding(Charset charset, byte[] bytes) {
+			this.charset = charset;
+			this.bytes = bytes;
+		}
+	}
+}
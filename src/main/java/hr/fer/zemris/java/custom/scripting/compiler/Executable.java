@@ -0,0 +1,34 @@
+package hr.fer.zemris.java.custom.scripting.compiler;
+
+/**
+ * Interface which describes a node of a compiled script. Every node was
+ * resolved completely when the script was compiled, so executing it needs no
+ * type tests and no name comparisons.
+ * 
+ * @author Dinz
+ *
+ */
+public interface Executable {
+
+	/**
+	 * Method which executes the node.
+	 * 
+	 * @param frame
+	 *            Frame of the current execution.
+	 */
+	public void execute(ScriptFrame frame);
+
+	/**
+	 * Method which appends the description of the node, and of the nodes it
+	 * contains, to the dump of a compiled script. Every node takes one line
+	 * which starts with the indentation.
+	 * 
+	 * @param sb
+	 *            Builder the dump is appended to.
+	 * @param indent
+	 *            Indentation of the node.
+	 */
+	public default void dump(StringBuilder sb, String indent) {
+		sb.append(indent).append(this).append(System.lineSeparator());
+	}
+}
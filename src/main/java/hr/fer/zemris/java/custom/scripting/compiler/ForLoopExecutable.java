@@ -0,0 +1,97 @@
+package hr.fer.zemris.java.custom.scripting.compiler;
+
+import hr.fer.zemris.java.custom.scripting.exec.ExecutionBudget;
+import hr.fer.zemris.java.custom.scripting.exec.ValueWrapper;
+
+/**
+ * Class that represents a compiled for loop. The texts of the start, end and
+ * step expressions are read from the elements once, when the loop is
+ * compiled, and the variable lives in a slot of the frame. The loop runs while
+ * the variable is smaller than the end expression, exactly like in the
+ * interpreter, and every iteration is counted against the
+ * {@link ExecutionBudget} of the context, if it has one.
+ * 
+ * @author Dinz
+ *
+ */
+class ForLoopExecutable implements Executable {
+
+	/**
+	 * Name of the loop variable.
+	 */
+	private final String variable;
+
+	/**
+	 * Slot of the loop variable.
+	 */
+	private final int slot;
+
+	/**
+	 * Text of the start expression.
+	 */
+	private final String start;
+
+	/**
+	 * Text of the end expression.
+	 */
+	private final String end;
+
+	/**
+	 * Text of the step expression.
+	 */
+	private final String step;
+
+	/**
+	 * Body of the loop.
+	 */
+	private final Executable body;
+
+	/**
+	 * Constructs a new compiled for loop.
+	 * 
+	 * @param variable
+	 *            Name of the loop variable.
+	 * @param slot
+	 *            Slot of the loop variable.
+	 * @param start
+	 *            Text of the start expression.
+	 * @param end
+	 *            Text of the end expression.
+	 * @param step
+	 *            Text of the step expression.
+	 * @param body
+	 *            Body of the loop.
+	 */
+	ForLoopExecutable(String variable, int slot, String start, String end, String step, Executable body) {
+		this.variable = variable;
+		this.slot = slot;
+		this.start = start;
+		this.end = end;
+		this.step = step;
+		this.body = body;
+	}
+
+	@Override
+	public void execute(ScriptFrame frame) {
+		ValueWrapper value = new ValueWrapper(start);
+		frame.setVariable(slot, value);
+		ExecutionBudget budget = frame.getRequestContext().getExecutionBudget();
+
+		while (value.numCompare(end) < 0) {
+			if (budget != null) {
+				budget.iteration();
+			}
+			body.execute(frame);
+			value.add(step);
+		}
+
+		frame.setVariable(slot, null);
+	}
+
+	@Override
+	public void dump(StringBuilder sb, String indent) {
+		sb.append(indent).append("FOR ").append(variable).append(' ').append(start).append(' ').append(end)
+				.append(' ').append(step).append(" in slot ").append(slot).append(System.lineSeparator());
+		body.dump(sb, indent + "  ");
+	}
+}
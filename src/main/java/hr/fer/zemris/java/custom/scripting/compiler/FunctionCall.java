@@ -0,0 +1,56 @@
+package hr.fer.zemris.java.custom.scripting.compiler;
+
+/**
+ * Class that represents an echo operation which calls a function resolved
+ * when the script was compiled.
+ * 
+ * @author Dinz
+ *
+ */
+class FunctionCall implements EchoOperation {
+
+	/**
+	 * Descriptor of the function to be called.
+	 */
+	private final FunctionDescriptor descriptor;
+
+	/**
+	 * Function to be called.
+	 */
+	private final ScriptFunction function;
+
+	/**
+	 * Constructs a new function call.
+	 * 
+	 * @param descriptor
+	 *            Descriptor of the function to be called.
+	 */
+	FunctionCall(FunctionDescriptor descriptor) {
+		this.descriptor = descriptor;
+		this.function = descriptor.getFunction();
+	}
+
+	/**
+	 * Gets the descriptor of the called function.
+	 * 
+	 * @return Descriptor of the function.
+	 */
+	FunctionDescriptor getDescriptor() {
+		return descriptor;
+	}
+
+	@Override
+	public void apply(ScriptFrame frame) {
+		function.apply(frame);
+	}
+
+	@Override
+	public boolean isFoldable() {
+		return descriptor.isPure();
+	}
+
+	@Override
+	public String toString() {
+		return descriptor.getName();
+	}
+}
@@ -0,0 +1,109 @@
+package hr.fer.zemris.java.custom.scripting.compiler;
+
+/**
+ * Class that represents a function registered in a {@link FunctionRegistry}
+ * together with its stack effect: the number of values the function takes
+ * from the operand stack and the number of values it pushes back. The stack
+ * effect is used by the compiler to check the echo tags before the script is
+ * ever executed, so a function must honor it. A pure function works only with
+ * the values on the stack, so the compiler may call it once for constant
+ * arguments.
+ * 
+ * @author Dinz
+ *
+ */
+public class FunctionDescriptor {
+
+	/**
+	 * Name of the function, including the leading '@'.
+	 */
+	private final String name;
+
+	/**
+	 * Number of values taken from the stack.
+	 */
+	private final int arity;
+
+	/**
+	 * Number of values pushed to the stack.
+	 */
+	private final int results;
+
+	/**
+	 * Implementation of the function.
+	 */
+	private final ScriptFunction function;
+
+	/**
+	 * Flag which notes that the function works only with the values on the
+	 * stack.
+	 */
+	private final boolean pure;
+
+	/**
+	 * Constructs a new function descriptor.
+	 * 
+	 * @param name
+	 *            Name of the function, including the leading '@'.
+	 * @param arity
+	 *            Number of values taken from the stack.
+	 * @param results
+	 *            Number of values pushed to the stack.
+	 * @param function
+	 *            Implementation of the function.
+	 * @param pure
+	 *            True if the function works only with the values on the stack.
+	 */
+	FunctionDescriptor(String name, int arity, int results, ScriptFunction function, boolean pure) {
+		this.name = name;
+		this.arity = arity;
+		this.results = results;
+		this.function = function;
+		this.pure = pure;
+	}
+
+	/**
+	 * Gets the name of the function.
+	 * 
+	 * @return Name of the function, including the leading '@'.
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Gets the number of values the function takes from the stack.
+	 * 
+	 * @return Arity of the function.
+	 */
+	public int getArity() {
+		return arity;
+	}
+
+	/**
+	 * Gets the number of values the function pushes to the stack.
+	 * 
+	 * @return Number of results.
+	 */
+	public int getResults() {
+		return results;
+	}
+
+	/**
+	 * Gets the implementation of the function.
+	 * 
+	 * @return Implementation of the function.
+	 */
+	public ScriptFunction getFunction() {
+		return function;
+	}
+
+	/**
+	 * Checks if the function works only with the values on the stack.
+	 * 
+	 * @return True if the function is pure, false otherwise.
+	 */
+	public boolean isPure() {
+		return pure;
+	}
+}
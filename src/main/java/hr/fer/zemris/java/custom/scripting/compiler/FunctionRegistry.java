@@ -0,0 +1,152 @@
+package hr.fer.zemris.java.custom.scripting.compiler;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Class that represents a registry of the functions which can be called from
+ * the echo tags. Every new registry already contains the built-in functions
+ * of the language, and applications can register their own native functions
+ * or replace the built-in ones. Functions are resolved when a script is
+ * compiled, so a registration affects only the scripts compiled after it.
+ * <p>
+ * The registry can be used from many threads at the same time.
+ * 
+ * @author Dinz
+ *
+ */
+public class FunctionRegistry {
+
+	/**
+	 * Registry used when no other registry is given.
+	 */
+	private static final FunctionRegistry DEFAULT = new FunctionRegistry();
+
+	/**
+	 * Registered functions by their name, including the leading '@'.
+	 */
+	private final Map<String, FunctionDescriptor> functions = new ConcurrentHashMap<>();
+
+	/**
+	 * Constructs a new registry with the built-in functions.
+	 */
+	public FunctionRegistry() {
+		ScriptFunctions.registerBuiltins(this);
+	}
+
+	/**
+	 * Gets the registry used when no other registry is given.
+	 * 
+	 * @return Default registry.
+	 */
+	public static FunctionRegistry getDefault() {
+		return DEFAULT;
+	}
+
+	/**
+	 * Method which registers the function, replacing any function registered
+	 * under the same name.
+	 * 
+	 * @param name
+	 *            Name of the function, with or without the leading '@'.
+	 * @param arity
+	 *            Number of values the function takes from the stack.
+	 * @param results
+	 *            Number of values the function pushes to the stack.
+	 * @param function
+	 *            Implementation of the function.
+	 * @throws IllegalArgumentException
+	 *             If the name or the function is null, the name is empty or the
+	 *             stack effect is negative.
+	 */
+	public void register(String name, int arity, int results, ScriptFunction function) {
+		put(name, arity, results, function, false);
+	}
+
+	/**
+	 * Method which registers a pure function, replacing any function registered
+	 * under the same name. A pure function only takes values from the stack and
+	 * pushes values computed from them, without touching the request context
+	 * or any other state, so the compiler may call it once when all of its
+	 * arguments are constants.
+	 * 
+	 * @param name
+	 *            Name of the function, with or without the leading '@'.
+	 * @param arity
+	 *            Number of values the function takes from the stack.
+	 * @param results
+	 *            Number of values the function pushes to the stack.
+	 * @param function
+	 *            Implementation of the function.
+	 * @throws IllegalArgumentException
+	 *             If the name or the function is null, the name is empty or the
+	 *             stack effect is negative.
+	 */
+	public void registerPure(String name, int arity, int results, ScriptFunction function) {
+		put(name, arity, results, function, true);
+	}
+
+	/**
+	 * Method which checks the function and puts it to the registry.
+	 * 
+	 * @param name
+	 *            Name of the function, with or without the leading '@'.
+	 * @param arity
+	 *            Number of values the function takes from the stack.
+	 * @param results
+	 *            Number of values the function pushes to the stack.
+	 * @param function
+	 *            Implementation of the function.
+	 * @param pure
+	 *            True if the function works only with the values on the stack.
+	 * @throws IllegalArgumentException
+	 *             If the name or the function is null, the name is empty or the
+	 *             stack effect is negative.
+	 */
+	private void put(String name, int arity, int results, ScriptFunction function, boolean pure) {
+		if (name == null || name.isEmpty() || name.equals("@")) {
+			throw new IllegalArgumentException("Function name can't be empty.");
+		}
+		if (function == null) {
+			throw new IllegalArgumentException("Function can't be null.");
+		}
+		if (arity < 0 || results < 0) {
+			throw new IllegalArgumentException("Stack effect of a function can't be negative.");
+		}
+		String key = normalize(name);
+		functions.put(key, new FunctionDescriptor(key, arity, results, function, pure));
+	}
+
+	/**
+	 * Method which removes the function from the registry.
+	 * 
+	 * @param name
+	 *            Name of the function, with or without the leading '@'.
+	 * @return True if the function was registered, false otherwise.
+	 */
+	public boolean remove(String name) {
+		return functions.remove(normalize(name)) != null;
+	}
+
+	/**
+	 * Gets the function with the given name.
+	 * 
+	 * @param name
+	 *            Name of the function, with or without the leading '@'.
+	 * @return Function, or null if there is no function with the name.
+	 */
+	public FunctionDescriptor get(String name) {
+		return functions.get(normalize(name));
+	}
+
+	/**
+	 * Method which adds the leading '@' to the name if it is missing.
+	 * 
+	 * @param name
+	 *            Name of the function.
+	 * @return Name with the leading '@'.
+	 */
+	private static String normalize(String name) {
+		return name.startsWith("@") ? name : "@" + name;
+	}
+}
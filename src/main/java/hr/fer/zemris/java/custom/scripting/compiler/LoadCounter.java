@@ -0,0 +1,37 @@
+package hr.fer.zemris.java.custom.scripting.compiler;
+
+/**
+ * Class that represents an echo operation which pushes the current value of
+ * the variable of a counted loop to the operand stack.
+ * 
+ * @author Dinz
+ *
+ */
+class LoadCounter implements EchoOperation {
+
+	/**
+	 * Slot of the variable.
+	 */
+	private final int slot;
+
+	/**
+	 * Constructs a new counter load.
+	 * 
+	 * @param slot
+	 *            Slot of the variable.
+	 */
+	LoadCounter(int slot) {
+		this.slot = slot;
+	}
+
+	@Override
+	public void apply(ScriptFrame frame) {
+		LoopCounter counter = (LoopCounter) frame.getVariable(slot);
+		frame.getOperands().pushText(counter.kind, counter.intValue, counter.doubleValue, counter.text);
+	}
+
+	@Override
+	public String toString() {
+		return "slot " + slot;
+	}
+}
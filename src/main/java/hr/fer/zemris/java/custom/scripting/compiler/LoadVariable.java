@@ -0,0 +1,49 @@
+package hr.fer.zemris.java.custom.scripting.compiler;
+
+import hr.fer.zemris.java.custom.scripting.exec.ValueWrapper;
+
+/**
+ * Class that represents an echo operation which pushes the current value of a
+ * loop variable to the operand stack. The variable was resolved to its slot
+ * when the script was compiled. Like in the interpreter, the operand is the
+ * text of the value, but a number is pushed unboxed and its text is created
+ * only if it is needed.
+ * 
+ * @author Dinz
+ *
+ */
+class LoadVariable implements EchoOperation {
+
+	/**
+	 * Slot of the variable.
+	 */
+	private final int slot;
+
+	/**
+	 * Constructs a new variable load.
+	 * 
+	 * @param slot
+	 *            Slot of the variable.
+	 */
+	LoadVariable(int slot) {
+		this.slot = slot;
+	}
+
+	@Override
+	public void apply(ScriptFrame frame) {
+		Object value = ((ValueWrapper) frame.getVariable(slot)).getValue();
+		if (value instanceof Integer) {
+			int number = (Integer) value;
+			frame.getOperands().pushText(OperandStack.INTEGER_TEXT, number, number, null);
+		} else if (value instanceof Double) {
+			frame.getOperands().pushText(OperandStack.DOUBLE_TEXT, 0, (Double) value, null);
+		} else {
+			frame.push(value.toString());
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "slot " + slot;
+	}
+}
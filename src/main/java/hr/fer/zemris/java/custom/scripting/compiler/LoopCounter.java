@@ -0,0 +1,47 @@
+package hr.fer.zemris.java.custom.scripting.compiler;
+
+/**
+ * Class that represents the variable of a counted loop. The counter holds the
+ * value as a primitive; it is turned into an operand only when the body of
+ * the loop reads the variable. Until the first step the value is the text of
+ * the start expression, like in the interpreter.
+ * 
+ * @author Dinz
+ *
+ */
+final class LoopCounter {
+
+	/**
+	 * Kind of the value as an operand: {@link OperandStack#INTEGER_TEXT} or
+	 * {@link OperandStack#DOUBLE_TEXT}.
+	 */
+	byte kind;
+
+	/**
+	 * Value of the counter if it is an integer.
+	 */
+	int intValue;
+
+	/**
+	 * Value of the counter as a double.
+	 */
+	double doubleValue;
+
+	/**
+	 * Text of the start expression until the first step, null afterwards.
+	 */
+	String text;
+
+	/**
+	 * Constructs a new counter with the value of the start expression.
+	 * 
+	 * @param start
+	 *            Start expression.
+	 */
+	LoopCounter(NumberLiteral start) {
+		this.kind = start.kind;
+		this.intValue = start.intValue;
+		this.doubleValue = start.doubleValue;
+		this.text = start.text;
+	}
+}
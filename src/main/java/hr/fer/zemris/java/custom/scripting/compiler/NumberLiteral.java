@@ -0,0 +1,82 @@
+package hr.fer.zemris.java.custom.scripting.compiler;
+
+/**
+ * Class that represents the text of a constant classified the way the
+ * {@link hr.fer.zemris.java.custom.scripting.exec.ValueWrapper} would classify
+ * it: as an integer, as a double, or as a text which is not a number. The
+ * classification is done once, when a script is compiled.
+ * 
+ * @author Dinz
+ *
+ */
+final class NumberLiteral {
+
+	/**
+	 * Text of the constant.
+	 */
+	final String text;
+
+	/**
+	 * Kind of the constant as an operand: {@link OperandStack#INTEGER_TEXT},
+	 * {@link OperandStack#DOUBLE_TEXT} or {@link OperandStack#REFERENCE}.
+	 */
+	final byte kind;
+
+	/**
+	 * Value of the constant if it is an integer.
+	 */
+	final int intValue;
+
+	/**
+	 * Value of the constant as read by {@link Double#parseDouble(String)}, if it
+	 * is a number.
+	 */
+	final double doubleValue;
+
+	/**
+	 * Constructs a new classified constant.
+	 * 
+	 * @param text
+	 *            Text of the constant.
+	 */
+	NumberLiteral(String text) {
+		this.text = text;
+
+		byte kind = OperandStack.REFERENCE;
+		int intValue = 0;
+		double doubleValue = 0;
+		try {
+			intValue = Integer.parseInt(text);
+			doubleValue = Double.parseDouble(text);
+			kind = OperandStack.INTEGER_TEXT;
+		} catch (NumberFormatException | NullPointerException e) {
+			try {
+				doubleValue = Double.parseDouble(text);
+				kind = OperandStack.DOUBLE_TEXT;
+			} catch (NumberFormatException | NullPointerException ex) {
+				// not a number, the operators will treat it as a string
+			}
+		}
+		this.kind = kind;
+		this.intValue = intValue;
+		this.doubleValue = doubleValue;
+	}
+
+	/**
+	 * Checks if the constant is a number.
+	 * 
+	 * @return True if the constant is an integer or a double, false otherwise.
+	 */
+	boolean isNumber() {
+		return kind != OperandStack.REFERENCE;
+	}
+
+	/**
+	 * Checks if the constant is an integer.
+	 * 
+	 * @return True if the constant is an integer, false otherwise.
+	 */
+	boolean isInteger() {
+		return kind == OperandStack.INTEGER_TEXT;
+	}
+}
@@ -0,0 +1,313 @@
+package hr.fer.zemris.java.custom.scripting.compiler;
+
+import java.util.Arrays;
+import java.util.EmptyStackException;
+
+/**
+ * Class that represents the operand stack of the echo tags. Besides references
+ * the stack holds integers and doubles unboxed, so operators can work on
+ * primitives. Every operand has a kind which keeps the meaning it has in the
+ * interpreter:
+ * <ul>
+ * <li>{@link #INTEGER} and {@link #DOUBLE} are numbers, like the results of
+ * the operators,</li>
+ * <li>{@link #INTEGER_TEXT} and {@link #DOUBLE_TEXT} are strings which spell a
+ * number, like constants and loop variables; functions see them as strings,
+ * which are created only when needed,</li>
+ * <li>{@link #REFERENCE} is any other object.</li>
+ * </ul>
+ * The stack is not synchronized and is reused for every echo tag of an
+ * execution.
+ * 
+ * @author Dinz
+ *
+ */
+class OperandStack {
+
+	/**
+	 * Kind of an operand which is an arbitrary object.
+	 */
+	static final byte REFERENCE = 0;
+
+	/**
+	 * Kind of an operand which is an integer.
+	 */
+	static final byte INTEGER = 1;
+
+	/**
+	 * Kind of an operand which is a double.
+	 */
+	static final byte DOUBLE = 2;
+
+	/**
+	 * Kind of an operand which is a string spelling an integer.
+	 */
+	static final byte INTEGER_TEXT = 3;
+
+	/**
+	 * Kind of an operand which is a string spelling a double.
+	 */
+	static final byte DOUBLE_TEXT = 4;
+
+	/**
+	 * Initial capacity of the stack.
+	 */
+	private static final int INITIAL_CAPACITY = 16;
+
+	/**
+	 * Kinds of the operands.
+	 */
+	private byte[] kinds = new byte[INITIAL_CAPACITY];
+
+	/**
+	 * Integer values of the operands.
+	 */
+	private int[] ints = new int[INITIAL_CAPACITY];
+
+	/**
+	 * Double values of the operands. Integer operands keep their value here as
+	 * well.
+	 */
+	private double[] doubles = new double[INITIAL_CAPACITY];
+
+	/**
+	 * Objects of the operands. For numbers and number texts this is the boxed
+	 * number or the text, if it was already created.
+	 */
+	private Object[] references = new Object[INITIAL_CAPACITY];
+
+	/**
+	 * Number of operands on the stack.
+	 */
+	private int size;
+
+	/**
+	 * Pushes the object to the stack. Integers and doubles are kept as numbers.
+	 * 
+	 * @param value
+	 *            Object to be pushed.
+	 */
+	void push(Object value) {
+		int index = grow();
+		references[index] = value;
+		if (value instanceof Integer) {
+			kinds[index] = INTEGER;
+			ints[index] = (Integer) value;
+			doubles[index] = ints[index];
+		} else if (value instanceof Double) {
+			kinds[index] = DOUBLE;
+			doubles[index] = (Double) value;
+		} else {
+			kinds[index] = REFERENCE;
+		}
+	}
+
+	/**
+	 * Pushes the integer to the stack.
+	 * 
+	 * @param value
+	 *            Integer to be pushed.
+	 */
+	void pushInt(int value) {
+		int index = grow();
+		kinds[index] = INTEGER;
+		ints[index] = value;
+		doubles[index] = value;
+	}
+
+	/**
+	 * Pushes the double to the stack.
+	 * 
+	 * @param value
+	 *            Double to be pushed.
+	 */
+	void pushDouble(double value) {
+		int index = grow();
+		kinds[index] = DOUBLE;
+		doubles[index] = value;
+	}
+
+	/**
+	 * Pushes a string which spells a number.
+	 * 
+	 * @param kind
+	 *            {@link #INTEGER_TEXT} or {@link #DOUBLE_TEXT}.
+	 * @param intValue
+	 *            Value of the number if it is an integer.
+	 * @param doubleValue
+	 *            Value of the number as read by
+	 *            {@link Double#parseDouble(String)}.
+	 * @param text
+	 *            The string, or null if it is the canonical spelling of the
+	 *            number and can be created when needed.
+	 */
+	void pushText(byte kind, int intValue, double doubleValue, String text) {
+		pushOperand(kind, intValue, doubleValue, text);
+	}
+
+	/**
+	 * Pushes an operand of any kind, as it was read from another stack.
+	 * 
+	 * @param kind
+	 *            Kind of the operand.
+	 * @param intValue
+	 *            Integer value of the operand.
+	 * @param doubleValue
+	 *            Double value of the operand.
+	 * @param value
+	 *            Operand as an object, or null if it can be created when needed.
+	 */
+	void pushOperand(byte kind, int intValue, double doubleValue, Object value) {
+		int index = grow();
+		kinds[index] = kind;
+		ints[index] = intValue;
+		doubles[index] = doubleValue;
+		references[index] = value;
+	}
+
+	/**
+	 * Pops the operand from the stack.
+	 * 
+	 * @return Operand as the object the interpreter would hold.
+	 * @throws EmptyStackException
+	 *             If the stack is empty.
+	 */
+	Object pop() {
+		if (size == 0) {
+			throw new EmptyStackException();
+		}
+		Object value = valueAt(size - 1);
+		drop(1);
+		return value;
+	}
+
+	/**
+	 * Gets the number of operands on the stack.
+	 * 
+	 * @return Number of operands.
+	 */
+	int size() {
+		return size;
+	}
+
+	/**
+	 * Gets the kind of the operand at the given position, counted from the
+	 * bottom of the stack.
+	 * 
+	 * @param index
+	 *            Position of the operand.
+	 * @return Kind of the operand.
+	 */
+	byte kindAt(int index) {
+		return kinds[index];
+	}
+
+	/**
+	 * Gets the integer value of the operand at the given position.
+	 * 
+	 * @param index
+	 *            Position of the operand.
+	 * @return Integer value.
+	 */
+	int intAt(int index) {
+		return ints[index];
+	}
+
+	/**
+	 * Gets the double value of the operand at the given position.
+	 * 
+	 * @param index
+	 *            Position of the operand.
+	 * @return Double value.
+	 */
+	double doubleAt(int index) {
+		return doubles[index];
+	}
+
+	/**
+	 * Gets the operand at the given position as the object the interpreter
+	 * would hold: a boxed number or a string.
+	 * 
+	 * @param index
+	 *            Position of the operand.
+	 * @return Operand as an object.
+	 */
+	Object valueAt(int index) {
+		Object value = references[index];
+		if (value == null) {
+			switch (kinds[index]) {
+			case INTEGER:
+				value = Integer.valueOf(ints[index]);
+				break;
+			case DOUBLE:
+				value = Double.valueOf(doubles[index]);
+				break;
+			case INTEGER_TEXT:
+				value = Integer.toString(ints[index]);
+				break;
+			case DOUBLE_TEXT:
+				value = Double.toString(doubles[index]);
+				break;
+			default:
+				break;
+			}
+			references[index] = value;
+		}
+		return value;
+	}
+
+	/**
+	 * Appends the text of the operand at the given position, without creating
+	 * a string for the numbers.
+	 * 
+	 * @param index
+	 *            Position of the operand.
+	 * @param sb
+	 *            Builder the text is appended to.
+	 */
+	void appendTo(int index, StringBuilder sb) {
+		Object value = references[index];
+		if (value != null || kinds[index] == REFERENCE) {
+			sb.append(value.toString());
+		} else if (kinds[index] == INTEGER || kinds[index] == INTEGER_TEXT) {
+			sb.append(ints[index]);
+		} else {
+			sb.append(doubles[index]);
+		}
+	}
+
+	/**
+	 * Removes the operands from the top of the stack.
+	 * 
+	 * @param count
+	 *            Number of operands to be removed.
+	 */
+	void drop(int count) {
+		for (int i = 0; i < count; i++) {
+			references[--size] = null;
+		}
+	}
+
+	/**
+	 * Removes all the operands from the stack.
+	 */
+	void clear() {
+		drop(size);
+	}
+
+	/**
+	 * Makes room for a new operand on the top of the stack.
+	 * 
+	 * @return Position of the new operand.
+	 */
+	private int grow() {
+		if (size == kinds.length) {
+			int capacity = size * 2;
+			kinds = Arrays.copyOf(kinds, capacity);
+			ints = Arrays.copyOf(ints, capacity);
+			doubles = Arrays.copyOf(doubles, capacity);
+			references = Arrays.copyOf(references, capacity);
+		}
+		return size++;
+	}
+}
@@ -0,0 +1,71 @@
+package hr.fer.zemris.java.custom.scripting.compiler;
+
+/**
+ * Class that represents an echo operation which pushes the operands left by
+ * the constant part of an echo tag. The part was evaluated once, when the
+ * script was compiled, and its operands keep their kinds, so the rest of the
+ * tag sees exactly the values it would have computed itself.
+ * 
+ * @author Dinz
+ *
+ */
+class PushConstants implements EchoOperation {
+
+	/**
+	 * Kinds of the operands.
+	 */
+	private final byte[] kinds;
+
+	/**
+	 * Integer values of the operands.
+	 */
+	private final int[] ints;
+
+	/**
+	 * Double values of the operands.
+	 */
+	private final double[] doubles;
+
+	/**
+	 * Operands as objects.
+	 */
+	private final Object[] values;
+
+	/**
+	 * Constructs a new push of the operands which are on the stack.
+	 * 
+	 * @param stack
+	 *            Stack with the evaluated operands.
+	 */
+	PushConstants(OperandStack stack) {
+		int size = stack.size();
+		kinds = new byte[size];
+		ints = new int[size];
+		doubles = new double[size];
+		values = new Object[size];
+		for (int i = 0; i < size; i++) {
+			kinds[i] = stack.kindAt(i);
+			ints[i] = stack.intAt(i);
+			doubles[i] = stack.doubleAt(i);
+			values[i] = stack.valueAt(i);
+		}
+	}
+
+	@Override
+	public void apply(ScriptFrame frame) {
+		OperandStack stack = frame.getOperands();
+		for (int i = 0; i < kinds.length; i++) {
+			stack.pushOperand(kinds[i], ints[i], doubles[i], values[i]);
+		}
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder("folded(");
+		for (int i = 0; i < values.length; i++) {
+			sb.append(i == 0 ? "" : " ");
+			sb.append(values[i] instanceof String ? ScriptCompiler.quote((String) values[i]) : values[i]);
+		}
+		return sb.append(')').toString();
+	}
+}
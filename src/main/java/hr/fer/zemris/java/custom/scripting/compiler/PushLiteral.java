@@ -0,0 +1,47 @@
+package hr.fer.zemris.java.custom.scripting.compiler;
+
+/**
+ * Class that represents an echo operation which pushes a constant to the
+ * operand stack. Constants are pushed as their text, like in the interpreter,
+ * but a text which spells a number is classified when the script is compiled,
+ * so operators can use the number directly.
+ * 
+ * @author Dinz
+ *
+ */
+class PushLiteral implements EchoOperation {
+
+	/**
+	 * Classified constant.
+	 */
+	private final NumberLiteral literal;
+
+	/**
+	 * Constructs a new literal push.
+	 * 
+	 * @param value
+	 *            Text of the constant.
+	 */
+	PushLiteral(String value) {
+		this.literal = new NumberLiteral(value);
+	}
+
+	@Override
+	public void apply(ScriptFrame frame) {
+		if (literal.isNumber()) {
+			frame.getOperands().pushText(literal.kind, literal.intValue, literal.doubleValue, literal.text);
+		} else {
+			frame.push(literal.text);
+		}
+	}
+
+	@Override
+	public boolean isFoldable() {
+		return true;
+	}
+
+	@Override
+	public String toString() {
+		return literal.isNumber() ? literal.text : ScriptCompiler.quote(literal.text);
+	}
+}
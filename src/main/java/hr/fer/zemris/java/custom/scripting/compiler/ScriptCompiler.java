@@ -0,0 +1,498 @@
+package hr.fer.zemris.java.custom.scripting.compiler;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import hr.fer.zemris.java.custom.scripting.elems.Element;
+import hr.fer.zemris.java.custom.scripting.elems.ElementConstantDouble;
+import hr.fer.zemris.java.custom.scripting.elems.ElementConstantInteger;
+import hr.fer.zemris.java.custom.scripting.elems.ElementFunction;
+import hr.fer.zemris.java.custom.scripting.elems.ElementOperator;
+import hr.fer.zemris.java.custom.scripting.elems.ElementString;
+import hr.fer.zemris.java.custom.scripting.elems.ElementVariable;
+import hr.fer.zemris.java.custom.scripting.exec.ValueWrapper;
+import hr.fer.zemris.java.custom.scripting.nodes.DocumentNode;
+import hr.fer.zemris.java.custom.scripting.nodes.EchoNode;
+import hr.fer.zemris.java.custom.scripting.nodes.ForLoopNode;
+import hr.fer.zemris.java.custom.scripting.nodes.Node;
+import hr.fer.zemris.java.custom.scripting.nodes.TextNode;
+
+/**
+ * Class that represents a compiler of the smart scripts. The compiler turns a
+ * document tree into a tree of executable nodes in which every element is
+ * already resolved: constants are pushed as prepared text, operators and
+ * functions are bound to their implementations and the loop expressions are
+ * read once. Functions are resolved through a {@link FunctionRegistry}, and
+ * the stack effect of every echo tag is checked while it is compiled.
+ * <p>
+ * Loop variables are resolved to slots of the execution frame. Every loop gets
+ * the slot of its nesting depth, and a variable refers to the innermost
+ * enclosing loop with the same name, which is the value the multistack of the
+ * interpreter would have on its top. Loops over numeric constants count on
+ * primitives, and their variable is turned into an operand only when an echo
+ * tag reads it.
+ * <p>
+ * The compiler also optimizes the tree. The constant part at the start of an
+ * echo tag, made of constants, operators and pure functions, is evaluated
+ * once; an echo tag which is constant as a whole becomes text, and adjacent
+ * texts are merged into a single block. Loops whose constant bounds give no
+ * iterations are eliminated. A constant part which fails is left to fail when
+ * the script is executed, but a loop without a step expression is rejected,
+ * since it could only fail after its first iteration had written its output. The text at the start of the document, possibly
+ * after a constant mime type, is kept apart as the static prologue of the
+ * script.
+ * <p>
+ * The compiled script produces exactly the same output as the
+ * {@link hr.fer.zemris.java.custom.scripting.exec.SmartScriptEngine}, which
+ * stays the reference implementation of the language.
+ * 
+ * @author Dinz
+ *
+ */
+public final class ScriptCompiler {
+
+	/**
+	 * Registry the functions are resolved from.
+	 */
+	private final FunctionRegistry functions;
+
+	/**
+	 * Names of the variables of the enclosing loops, indexed by their slots.
+	 */
+	private final List<String> scope = new ArrayList<>();
+
+	/**
+	 * Flags which note that the enclosing loop in the slot is a counted loop.
+	 */
+	private final List<Boolean> counted = new ArrayList<>();
+
+	/**
+	 * Number of slots needed by the compiled script.
+	 */
+	private int slots;
+
+	/**
+	 * Sources of the tags which were eliminated because they have no effect.
+	 */
+	private final List<String> eliminated = new ArrayList<>();
+
+	/**
+	 * Constructs a new compiler.
+	 * 
+	 * @param functions
+	 *            Registry the functions are resolved from.
+	 */
+	private ScriptCompiler(FunctionRegistry functions) {
+		this.functions = functions;
+	}
+
+	/**
+	 * Method which compiles the document tree with the functions of the default
+	 * registry.
+	 * 
+	 * @param document
+	 *            Document to be compiled.
+	 * @return Compiled script.
+	 * @throws IllegalArgumentException
+	 *             If the document is null.
+	 * @throws ScriptCompilerException
+	 *             If an echo tag takes more values from the stack than it has
+	 *             pushed.
+	 */
+	public static CompiledScript compile(DocumentNode document) {
+		return compile(document, FunctionRegistry.getDefault());
+	}
+
+	/**
+	 * Method which compiles the document tree with the functions of the given
+	 * registry.
+	 * 
+	 * @param document
+	 *            Document to be compiled.
+	 * @param functions
+	 *            Registry the functions are resolved from.
+	 * @return Compiled script.
+	 * @throws IllegalArgumentException
+	 *             If the document or the registry is null.
+	 * @throws ScriptCompilerException
+	 *             If an echo tag takes more values from the stack than it has
+	 *             pushed.
+	 */
+	public static CompiledScript compile(DocumentNode document, FunctionRegistry functions) {
+		if (document == null) {
+			throw new IllegalArgumentException("Document can't be null.");
+		}
+		if (functions == null) {
+			throw new IllegalArgumentException("Function registry can't be null.");
+		}
+		ScriptCompiler compiler = new ScriptCompiler(functions);
+		List<Executable> children = compiler.compileList(document);
+		int prologue = staticPrologue(children);
+		return new CompiledScript(prologue == 0 ? null : block(children.subList(0, prologue)),
+				block(children.subList(prologue, children.size())), compiler.slots, compiler.eliminated,
+				DependencyAnalyzer.analyze(document, functions));
+	}
+
+	/**
+	 * Method which finds the static prologue of the script: the text at the
+	 * start of the document, possibly preceded by echo tags which only set a
+	 * constant mime type. The prologue writes the same bytes on every
+	 * execution, so it can be sent to the client before the rest of the script
+	 * runs.
+	 * 
+	 * @param children
+	 *            Compiled children of the document.
+	 * @return Number of children in the prologue, 0 if there is none.
+	 */
+	private static int staticPrologue(List<Executable> children) {
+		for (int i = 0; i < children.size(); i++) {
+			Executable child = children.get(i);
+			if (child instanceof TextExecutable) {
+				return i + 1;
+			}
+			if (!isConstantMimeType(child)) {
+				return 0;
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * Checks if the node is an echo tag which only sets a constant mime type.
+	 * 
+	 * @param node
+	 *            Compiled node.
+	 * @return True if the node sets a constant mime type, false otherwise.
+	 */
+	private static boolean isConstantMimeType(Executable node) {
+		if (!(node instanceof EchoExecutable)) {
+			return false;
+		}
+		EchoOperation[] operations = ((EchoExecutable) node).getOperations();
+		return operations.length == 2
+				&& (operations[0] instanceof PushLiteral || operations[0] instanceof PushConstants)
+				&& operations[1] instanceof FunctionCall
+				&& ((FunctionCall) operations[1]).getDescriptor().getName().equals("@setMimeType");
+	}
+
+	/**
+	 * Method which compiles the children of the node into a block. Eliminated
+	 * children are left out and adjacent texts are merged.
+	 * 
+	 * @param node
+	 *            Node whose children are compiled.
+	 * @return Compiled block.
+	 */
+	private Executable compileChildren(Node node) {
+		return block(compileList(node));
+	}
+
+	/**
+	 * Method which creates a block of the compiled nodes.
+	 * 
+	 * @param children
+	 *            Compiled nodes.
+	 * @return Compiled block.
+	 */
+	private static Executable block(List<Executable> children) {
+		return new BlockExecutable(children.toArray(new Executable[children.size()]));
+	}
+
+	/**
+	 * Method which compiles the children of the node. Eliminated children are
+	 * left out and adjacent texts are merged.
+	 * 
+	 * @param node
+	 *            Node whose children are compiled.
+	 * @return Compiled children.
+	 */
+	private List<Executable> compileList(Node node) {
+		List<Executable> children = new ArrayList<>();
+		for (int i = 0, n = node.numberOfChildren(); i < n; i++) {
+			Executable child = compileNode(node.getChild(i));
+			if (child == null) {
+				continue;
+			}
+			int last = children.size() - 1;
+			if (child instanceof TextExecutable && last >= 0 && children.get(last) instanceof TextExecutable) {
+				children.set(last, ((TextExecutable) children.get(last)).merge((TextExecutable) child));
+			} else {
+				children.add(child);
+			}
+		}
+		return children;
+	}
+
+	/**
+	 * Method which compiles a single node.
+	 * 
+	 * @param node
+	 *            Node to be compiled.
+	 * @return Compiled node, or null if the node was eliminated.
+	 * @throws IllegalArgumentException
+	 *             If the node is of an unknown type.
+	 */
+	private Executable compileNode(Node node) {
+		if (node instanceof TextNode) {
+			return new TextExecutable(((TextNode) node).getText());
+		} else if (node instanceof EchoNode) {
+			return compileEcho((EchoNode) node);
+		} else if (node instanceof ForLoopNode) {
+			return compileLoop((ForLoopNode) node);
+		}
+		throw new IllegalArgumentException("Unknown node type: " + node.getClass().getSimpleName());
+	}
+
+	/**
+	 * Method which compiles a for loop. The loop variable gets the slot of the
+	 * loop depth while the body is compiled. A loop whose start, end and step
+	 * expressions are all numbers is compiled into a counted loop; any other
+	 * loop keeps the generic form. A loop whose start is not smaller than its
+	 * end never runs its body, so it is eliminated.
+	 * 
+	 * @param loop
+	 *            Loop to be compiled.
+	 * @return Compiled loop, or null if the loop was eliminated.
+	 * @throws ScriptCompilerException
+	 *             If the loop has no step expression.
+	 */
+	private Executable compileLoop(ForLoopNode loop) {
+		Element step = loop.getStepExpression();
+		if (step == null) {
+			throw new ScriptCompilerException(
+					"For loop over '" + loop.getVariable().getName() + "' has no step expression.");
+		}
+		NumberLiteral startNumber = new NumberLiteral(loop.getStartExpression().asText());
+		NumberLiteral endNumber = new NumberLiteral(loop.getEndExpression().asText());
+		NumberLiteral stepNumber = new NumberLiteral(step.asText());
+		if (startNumber.isNumber() && endNumber.isNumber()
+				&& new ValueWrapper(startNumber.text).numCompare(endNumber.text) >= 0) {
+			eliminated.add(source(loop));
+			return null;
+		}
+		boolean isCounted = startNumber.isNumber() && endNumber.isNumber() && stepNumber.isNumber();
+
+		int slot = scope.size();
+		String variable = loop.getVariable().getName();
+		scope.add(variable);
+		counted.add(isCounted);
+		slots = Math.max(slots, scope.size());
+		Executable body = compileChildren(loop);
+		scope.remove(slot);
+		counted.remove(slot);
+
+		if (isCounted) {
+			return new CountedLoopExecutable(variable, slot, startNumber, endNumber, stepNumber, body);
+		}
+		return new ForLoopExecutable(variable, slot, startNumber.text, endNumber.text, stepNumber.text, body);
+	}
+
+	/**
+	 * Method which resolves the variable to the slot of the innermost enclosing
+	 * loop with the same name.
+	 * 
+	 * @param name
+	 *            Name of the variable.
+	 * @return Operation which loads the variable.
+	 */
+	private EchoOperation resolveVariable(String name) {
+		int slot = scope.lastIndexOf(name);
+		if (slot < 0) {
+			return new UnboundVariable();
+		}
+		return counted.get(slot) ? new LoadCounter(slot) : new LoadVariable(slot);
+	}
+
+	/**
+	 * Method which compiles the elements of an echo node into operations while
+	 * tracking the depth of the operand stack. Unknown functions are skipped,
+	 * like in the interpreter.
+	 * 
+	 * @param node
+	 *            Echo node to be compiled.
+	 * @return Compiled echo node, or null if the node was eliminated.
+	 * @throws ScriptCompilerException
+	 *             If an operator or a function takes more values from the stack
+	 *             than there are on it.
+	 */
+	private Executable compileEcho(EchoNode node) {
+		Element[] elements = node.getElements();
+		EchoOperation[] operations = new EchoOperation[elements.length];
+		int count = 0;
+		int depth = 0;
+		for (Element element : elements) {
+			if (element instanceof ElementConstantDouble || element instanceof ElementConstantInteger
+					|| element instanceof ElementString) {
+				operations[count++] = new PushLiteral(element.asText());
+				depth++;
+			} else if (element instanceof ElementVariable) {
+				operations[count++] = resolveVariable(element.asText());
+				depth++;
+			} else if (element instanceof ElementOperator) {
+				checkDepth(depth, 2, "Operator " + element.asText());
+				operations[count++] = BinaryOperation.forSymbol(element.asText());
+				depth--;
+			} else if (element instanceof ElementFunction) {
+				FunctionDescriptor function = functions.get(element.asText());
+				if (function != null) {
+					checkDepth(depth, function.getArity(), "Function " + function.getName());
+					operations[count++] = new FunctionCall(function);
+					depth += function.getResults() - function.getArity();
+				}
+			}
+		}
+		EchoOperation[] compiled = new EchoOperation[count];
+		System.arraycopy(operations, 0, compiled, 0, count);
+		return fold(node, compiled);
+	}
+
+	/**
+	 * Method which evaluates the constant part at the start of an echo tag.
+	 * The part is replaced by the operands it leaves on the stack, and a tag
+	 * which is constant as a whole is replaced by its text.
+	 * 
+	 * @param node
+	 *            Echo node which is compiled.
+	 * @param operations
+	 *            Operations of the echo node.
+	 * @return Compiled echo node, or null if the node writes nothing.
+	 */
+	private Executable fold(EchoNode node, EchoOperation[] operations) {
+		int constant = 0;
+		while (constant < operations.length && operations[constant].isFoldable()) {
+			constant++;
+		}
+		if (constant < operations.length && constant < 2) {
+			return new EchoExecutable(operations);
+		}
+
+		ScriptFrame frame = new ScriptFrame();
+		OperandStack stack = frame.getOperands();
+		StringBuilder sb = new StringBuilder();
+		try {
+			for (int i = 0; i < constant; i++) {
+				operations[i].apply(frame);
+			}
+			if (constant == operations.length) {
+				for (int i = 0, n = stack.size(); i < n; i++) {
+					stack.appendTo(i, sb);
+				}
+			}
+		} catch (RuntimeException e) {
+			// the tag fails when it is executed, after the output written before it
+			return new EchoExecutable(operations);
+		}
+
+		if (constant == operations.length) {
+			if (stack.size() == 0) {
+				eliminated.add(source(node));
+				return null;
+			}
+			return new TextExecutable(sb.toString(), Collections.singletonList(source(node)));
+		}
+		EchoOperation[] rest = new EchoOperation[operations.length - constant + 1];
+		rest[0] = new PushConstants(stack);
+		System.arraycopy(operations, constant, rest, 1, operations.length - constant);
+		return new EchoExecutable(rest);
+	}
+
+	/**
+	 * Method which checks that the stack holds enough values for an operation.
+	 * 
+	 * @param depth
+	 *            Number of values on the stack.
+	 * @param needed
+	 *            Number of values the operation takes.
+	 * @param operation
+	 *            Description of the operation, used in the message.
+	 * @throws ScriptCompilerException
+	 *             If there are not enough values on the stack.
+	 */
+	private static void checkDepth(int depth, int needed, String operation) {
+		if (depth < needed) {
+			throw new ScriptCompilerException(operation + " takes " + needed + " value(s), but the echo tag has only "
+					+ depth + " on the stack.");
+		}
+	}
+
+	/**
+	 * Method which quotes the text the way a string is written in a script.
+	 * 
+	 * @param text
+	 *            Text to be quoted.
+	 * @return Quoted text.
+	 */
+	static String quote(String text) {
+		StringBuilder sb = new StringBuilder("\"");
+		for (char c : text.toCharArray()) {
+			switch (c) {
+			case '\\':
+			case '"':
+				sb.append('\\').append(c);
+				break;
+			case '\n':
+				sb.append("\\n");
+				break;
+			case '\r':
+				sb.append("\\r");
+				break;
+			case '\t':
+				sb.append("\\t");
+				break;
+			default:
+				sb.append(c);
+			}
+		}
+		return sb.append('"').toString();
+	}
+
+	/**
+	 * Method which writes the source of the echo node, used in the dump and
+	 * in the warnings of the {@link DependencyAnalyzer}.
+	 * 
+	 * @param node
+	 *            Echo node.
+	 * @return Source of the node.
+	 */
+	static String source(EchoNode node) {
+		StringBuilder sb = new StringBuilder("{$=");
+		for (Element element : node.getElements()) {
+			sb.append(' ').append(source(element));
+		}
+		return sb.append(" $}").toString();
+	}
+
+	/**
+	 * Method which writes the source of the loop tag, used in the dump.
+	 * 
+	 * @param loop
+	 *            Loop node.
+	 * @return Source of the loop tag.
+	 */
+	private static String source(ForLoopNode loop) {
+		StringBuilder sb = new StringBuilder("{$ FOR ");
+		sb.append(loop.getVariable().getName()).append(' ').append(source(loop.getStartExpression())).append(' ')
+				.append(source(loop.getEndExpression()));
+		if (loop.getStepExpression() != null) {
+			sb.append(' ').append(source(loop.getStepExpression()));
+		}
+		return sb.append(" $}").toString();
+	}
+
+	/**
+	 * Method which writes the source of a single element.
+	 * 
+	 * @param element
+	 *            Element of a tag.
+	 * @return Source of the element.
+	 */
+	private static String source(Element element) {
+		if (element instanceof ElementString) {
+			return quote(element.asText());
+		} else if (element instanceof ElementFunction && !element.asText().startsWith("@")) {
+			return "@" + element.asText();
+		}
+		return element.asText();
+	}
+}
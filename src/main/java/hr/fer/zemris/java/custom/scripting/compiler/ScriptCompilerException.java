@@ -0,0 +1,31 @@
+package hr.fer.zemris.java.custom.scripting.compiler;
+
+/**
+ * Class that represents an exception that is being thrown if a script can't be
+ * compiled, for example because a function would take more values from the
+ * stack than the echo tag has put on it.
+ * 
+ * @author Dinz
+ *
+ */
+public class ScriptCompilerException extends RuntimeException {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Constructs a new ScriptCompilerException.
+	 */
+	public ScriptCompilerException() {
+		super();
+	}
+
+	/**
+	 * Constructs a new ScriptCompilerException with the appropriate message.
+	 * 
+	 * @param message
+	 *            Message that describes the problem.
+	 */
+	public ScriptCompilerException(String message) {
+		super(message);
+	}
+}
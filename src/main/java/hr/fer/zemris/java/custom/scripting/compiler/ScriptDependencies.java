@@ -0,0 +1,158 @@
+package hr.fer.zemris.java.custom.scripting.compiler;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Class that represents the result of the {@link DependencyAnalyzer}: the
+ * parameters a script reads and whether it changes any. The names are found
+ * statically, so they are complete only if the analysis is
+ * {@link #isDetermined() determined}; otherwise the warnings tell which parts
+ * of the script could not be followed.
+ * 
+ * @author Dinz
+ *
+ */
+public final class ScriptDependencies {
+
+	/**
+	 * Enumeration of the kinds of scripts.
+	 * 
+	 * @author Dinz
+	 *
+	 */
+	public enum Kind {
+		/**
+		 * The output doesn't depend on the request.
+		 */
+		PURE,
+		/**
+		 * The output depends on the parameters of the request.
+		 */
+		PARAMETER_DEPENDENT,
+		/**
+		 * The script changes the parameters.
+		 */
+		SIDE_EFFECTING
+	}
+
+	/**
+	 * Kind of the script.
+	 */
+	private final Kind kind;
+
+	/**
+	 * Names of the parameters the script reads.
+	 */
+	private final Set<String> parameters;
+
+	/**
+	 * Names of the temporary parameters the script reads.
+	 */
+	private final Set<String> temporaryParameters;
+
+	/**
+	 * Names of the persistent parameters the script reads.
+	 */
+	private final Set<String> persistentParameters;
+
+	/**
+	 * Descriptions of the parts of the script which could not be analyzed.
+	 */
+	private final List<String> warnings;
+
+	/**
+	 * Constructs new dependencies.
+	 * 
+	 * @param kind
+	 *            Kind of the script.
+	 * @param parameters
+	 *            Names of the parameters the script reads.
+	 * @param temporaryParameters
+	 *            Names of the temporary parameters the script reads.
+	 * @param persistentParameters
+	 *            Names of the persistent parameters the script reads.
+	 * @param warnings
+	 *            Descriptions of the parts of the script which could not be
+	 *            analyzed.
+	 */
+	ScriptDependencies(Kind kind, Set<String> parameters, Set<String> temporaryParameters,
+			Set<String> persistentParameters, List<String> warnings) {
+		this.kind = kind;
+		this.parameters = Collections.unmodifiableSet(parameters);
+		this.temporaryParameters = Collections.unmodifiableSet(temporaryParameters);
+		this.persistentParameters = Collections.unmodifiableSet(persistentParameters);
+		this.warnings = Collections.unmodifiableList(warnings);
+	}
+
+	/**
+	 * Gets the kind of the script.
+	 * 
+	 * @return Kind of the script.
+	 */
+	public Kind getKind() {
+		return kind;
+	}
+
+	/**
+	 * Gets the names of the parameters the script reads, sorted.
+	 * 
+	 * @return Unmodifiable set of the names.
+	 */
+	public Set<String> getParameters() {
+		return parameters;
+	}
+
+	/**
+	 * Gets the names of the temporary parameters the script reads, sorted.
+	 * 
+	 * @return Unmodifiable set of the names.
+	 */
+	public Set<String> getTemporaryParameters() {
+		return temporaryParameters;
+	}
+
+	/**
+	 * Gets the names of the persistent parameters the script reads, sorted.
+	 * 
+	 * @return Unmodifiable set of the names.
+	 */
+	public Set<String> getPersistentParameters() {
+		return persistentParameters;
+	}
+
+	/**
+	 * Checks if the dependencies were determined statically, so the script
+	 * reads no parameters besides the found ones and changes them only if it
+	 * is {@link Kind#SIDE_EFFECTING}.
+	 * 
+	 * @return True if the dependencies are complete, false otherwise.
+	 */
+	public boolean isDetermined() {
+		return warnings.isEmpty();
+	}
+
+	/**
+	 * Gets the descriptions of the parts of the script which could not be
+	 * analyzed.
+	 * 
+	 * @return Unmodifiable list of the warnings, empty if the dependencies are
+	 *         determined.
+	 */
+	public List<String> getWarnings() {
+		return warnings;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder(kind.toString());
+		sb.append(" params=").append(parameters);
+		sb.append(" tparams=").append(temporaryParameters);
+		sb.append(" pparams=").append(persistentParameters);
+		if (!warnings.isEmpty()) {
+			sb.append(" undetermined=").append(warnings);
+		}
+		return sb.toString();
+	}
+}
@@ -0,0 +1,156 @@
+package hr.fer.zemris.java.custom.scripting.compiler;
+
+import java.util.Arrays;
+import java.util.EmptyStackException;
+
+import hr.fer.zemris.java.custom.scripting.exec.ValueWrapper;
+import hr.fer.zemris.java.webserver.RequestContext;
+
+/**
+ * Class that represents the state of a single execution of a compiled script:
+ * the context the script writes to, the slots of its loop variables and the
+ * operand stack used by the echo tags. A frame is used by one thread at a
+ * time and is reset after every execution, so it can be reused for the next
+ * one.
+ * 
+ * @author Dinz
+ *
+ */
+public class ScriptFrame {
+
+	/**
+	 * Context of the current execution.
+	 */
+	private RequestContext requestContext;
+
+	/**
+	 * Loop variables, indexed by the slots assigned by the compiler. A slot
+	 * holds a {@link ValueWrapper} for a generic loop and a
+	 * {@link LoopCounter} for a counted one.
+	 */
+	private Object[] variables = new Object[0];
+
+	/**
+	 * Operand stack.
+	 */
+	private final OperandStack operands = new OperandStack();
+
+	/**
+	 * Builder of the text written by an echo tag.
+	 */
+	private final StringBuilder output = new StringBuilder();
+
+	/**
+	 * Flag which notes that the frame is bound to an execution.
+	 */
+	private boolean inUse;
+
+	/**
+	 * Binds the frame to the context of a new execution.
+	 * 
+	 * @param requestContext
+	 *            Context the script writes to.
+	 * @param slots
+	 *            Number of variable slots the script needs.
+	 */
+	void bind(RequestContext requestContext, int slots) {
+		this.requestContext = requestContext;
+		this.inUse = true;
+		if (variables.length < slots) {
+			variables = new Object[slots];
+		}
+	}
+
+	/**
+	 * Releases the frame after an execution so it can be reused.
+	 */
+	void reset() {
+		requestContext = null;
+		Arrays.fill(variables, null);
+		operands.clear();
+		inUse = false;
+	}
+
+	/**
+	 * Checks if the frame is bound to an execution.
+	 * 
+	 * @return True if the frame is in use, false otherwise.
+	 */
+	boolean isInUse() {
+		return inUse;
+	}
+
+	/**
+	 * Gets the context of the current execution.
+	 * 
+	 * @return Request context.
+	 */
+	public RequestContext getRequestContext() {
+		return requestContext;
+	}
+
+	/**
+	 * Gets the loop variable in the slot.
+	 * 
+	 * @param slot
+	 *            Slot of the variable.
+	 * @return Value of the variable.
+	 */
+	Object getVariable(int slot) {
+		return variables[slot];
+	}
+
+	/**
+	 * Sets the loop variable in the slot.
+	 * 
+	 * @param slot
+	 *            Slot of the variable.
+	 * @param value
+	 *            Value of the variable, null when the loop ends.
+	 */
+	void setVariable(int slot, Object value) {
+		variables[slot] = value;
+	}
+
+	/**
+	 * Pushes the operand to the operand stack.
+	 * 
+	 * @param value
+	 *            Operand to be pushed.
+	 */
+	public void push(Object value) {
+		operands.push(value);
+	}
+
+	/**
+	 * Pops the operand from the operand stack. Numbers are returned boxed and
+	 * constants and loop variables as strings, like in the interpreter.
+	 * 
+	 * @return Operand from the top of the stack.
+	 * @throws EmptyStackException
+	 *             If the stack is empty.
+	 */
+	public Object pop() {
+		return operands.pop();
+	}
+
+	/**
+	 * Gets the operand stack.
+	 * 
+	 * @return Operand stack.
+	 */
+	OperandStack getOperands() {
+		return operands;
+	}
+
+	/**
+	 * Gets the builder of the text written by an echo tag. The builder is
+	 * empty when it is returned.
+	 * 
+	 * @return Empty builder.
+	 */
+	StringBuilder getOutput() {
+		output.setLength(0);
+		return output;
+	}
+}
@@ -0,0 +1,21 @@
+package hr.fer.zemris.java.custom.scripting.compiler;
+
+/**
+ * Interface which describes a function which can be called from an echo tag
+ * with the <code>@name</code> syntax. The function takes its arguments from the
+ * operand stack of the frame and pushes its results back.
+ * 
+ * @author Dinz
+ *
+ */
+@FunctionalInterface
+public interface ScriptFunction {
+
+	/**
+	 * Method which applies the function to the frame.
+	 * 
+	 * @param frame
+	 *            Frame of the current execution.
+	 */
+	public void apply(ScriptFrame frame);
+}
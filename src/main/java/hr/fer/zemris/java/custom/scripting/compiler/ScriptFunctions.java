@@ -0,0 +1,125 @@
+package hr.fer.zemris.java.custom.scripting.compiler;
+
+import hr.fer.zemris.java.custom.scripting.exec.DecimalFormatCache;
+
+/**
+ * Class that holds the built-in functions of the smart scripts. The functions
+ * behave exactly like the ones of the
+ * {@link hr.fer.zemris.java.custom.scripting.exec.SmartScriptEngine}; they are
+ * registered to every new {@link FunctionRegistry}.
+ * 
+ * @author Dinz
+ *
+ */
+final class ScriptFunctions {
+
+	/**
+	 * Method which registers the built-in functions to the registry.
+	 * 
+	 * @param registry
+	 *            Registry to be filled.
+	 */
+	static void registerBuiltins(FunctionRegistry registry) {
+		registry.registerPure("@sin", 1, 1, ScriptFunctions::sin);
+		registry.registerPure("@decfmt", 2, 1, ScriptFunctions::decfmt);
+		registry.registerPure("@dup", 1, 2, ScriptFunctions::dup);
+		registry.registerPure("@swap", 2, 2, ScriptFunctions::swap);
+		registry.register("@setMimeType", 1, 0,
+				frame -> frame.getRequestContext().setMimeType(frame.pop().toString()));
+		registry.register("@paramGet", 2, 1, frame -> {
+			String defaultValue = frame.pop().toString();
+			String name = frame.pop().toString();
+			String value = frame.getRequestContext().getParameter(name);
+			frame.push(value == null ? defaultValue : value);
+		});
+		registry.register("@pparamGet", 2, 1, frame -> {
+			String defaultValue = frame.pop().toString();
+			String name = frame.pop().toString();
+			String value = frame.getRequestContext().getPersistentParameter(name);
+			frame.push(value == null ? defaultValue : value);
+		});
+		registry.register("@pparamSet", 2, 0, frame -> {
+			String name = frame.pop().toString();
+			String value = frame.pop().toString();
+			frame.getRequestContext().setPersistentParameter(name, value);
+		});
+		registry.register("@pparamDel", 1, 0,
+				frame -> frame.getRequestContext().removePersistentParameter(frame.pop().toString()));
+		registry.register("@tparamGet", 2, 1, frame -> {
+			String defaultValue = frame.pop().toString();
+			String name = frame.pop().toString();
+			String value = frame.getRequestContext().getTemporaryParameter(name);
+			frame.push(value == null ? defaultValue : value);
+		});
+		registry.register("@tparamSet", 2, 0, frame -> {
+			String name = frame.pop().toString();
+			String value = frame.pop().toString();
+			frame.getRequestContext().setTemporaryParameter(name, value);
+		});
+		registry.register("@tparamDel", 1, 0,
+				frame -> frame.getRequestContext().removeTemporaryParameter(frame.pop().toString()));
+	}
+
+	/**
+	 * Private constructor, the class only has static members.
+	 */
+	private ScriptFunctions() {
+	}
+
+	/**
+	 * Function which replaces the number on the top of the stack with its sine.
+	 * 
+	 * @param frame
+	 *            Frame of the current execution.
+	 */
+	private static void sin(ScriptFrame frame) {
+		Object num = frame.pop();
+		double arg;
+		if (num instanceof Integer) {
+			arg = Double.parseDouble(num.toString());
+		} else {
+			arg = (double) num;
+		}
+		frame.push(Math.sin(arg));
+	}
+
+	/**
+	 * Function which formats the number below the top of the stack with the
+	 * {@link java.text.DecimalFormat} pattern from the top of the stack. The
+	 * formats are cached by the {@link DecimalFormatCache}.
+	 * 
+	 * @param frame
+	 *            Frame of the current execution.
+	 */
+	private static void decfmt(ScriptFrame frame) {
+		String formatString = frame.pop().toString();
+		DecimalFormatCache.CachedFormat format = DecimalFormatCache.get(formatString);
+		Object num = frame.pop();
+		frame.push(format.format(num));
+	}
+
+	/**
+	 * Function which duplicates the top of the stack.
+	 * 
+	 * @param frame
+	 *            Frame of the current execution.
+	 */
+	private static void dup(ScriptFrame frame) {
+		Object x = frame.pop();
+		frame.push(x);
+		frame.push(x);
+	}
+
+	/**
+	 * Function which swaps the two values on the top of the stack.
+	 * 
+	 * @param frame
+	 *            Frame of the current execution.
+	 */
+	private static void swap(ScriptFrame frame) {
+		Object x = frame.pop();
+		Object y = frame.pop();
+		frame.push(x);
+		frame.push(y);
+	}
+}
@@ -0,0 +1,83 @@
+package hr.fer.zemris.java.custom.scripting.compiler;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import hr.fer.zemris.java.webserver.RequestContext;
+
+/**
+ * Class that represents a compiled text node, which writes its text to the
+ * context. The text may also hold the output of echo tags which were evaluated
+ * when the script was compiled, merged with the neighboring text nodes. The
+ * text is written as bytes encoded once per charset.
+ * 
+ * @author Dinz
+ *
+ */
+class TextExecutable implements Executable {
+
+	/**
+	 * Text to be written.
+	 */
+	private final EncodedText text;
+
+	/**
+	 * Sources of the echo tags folded into the text.
+	 */
+	private final List<String> folded;
+
+	/**
+	 * Constructs a new compiled text node.
+	 * 
+	 * @param text
+	 *            Text to be written.
+	 */
+	TextExecutable(String text) {
+		this(text, Collections.emptyList());
+	}
+
+	/**
+	 * Constructs a new compiled text node which holds the output of folded echo
+	 * tags.
+	 * 
+	 * @param text
+	 *            Text to be written.
+	 * @param folded
+	 *            Sources of the echo tags folded into the text.
+	 */
+	TextExecutable(String text, List<String> folded) {
+		this.text = new EncodedText(text);
+		this.folded = folded;
+	}
+
+	/**
+	 * Method which merges the text with the text which follows it.
+	 * 
+	 * @param next
+	 *            Text which follows this one.
+	 * @return Text node which writes both texts at once.
+	 */
+	TextExecutable merge(TextExecutable next) {
+		List<String> sources = new ArrayList<>(folded);
+		sources.addAll(next.folded);
+		return new TextExecutable(text.getText() + next.text.getText(), sources);
+	}
+
+	@Override
+	public void execute(ScriptFrame frame) {
+		RequestContext context = frame.getRequestContext();
+		try {
+			context.write(text.getBytes(context.getCharset()));
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	@Override
+	public String toString() {
+		String description = "TEXT " + ScriptCompiler.quote(text.getText());
+		return folded.isEmpty() ? description : description + " <- folded " + String.join(", ", folded);
+	}
+}
@@ -0,0 +1,24 @@
+package hr.fer.zemris.java.custom.scripting.compiler;
+
+import hr.fer.zemris.java.custom.scripting.exec.EmptyStackException;
+
+/**
+ * Class that represents an echo operation which reads a variable that no
+ * enclosing loop defines. The operation fails when it is executed, like the
+ * lookup in the empty multistack of the interpreter.
+ * 
+ * @author Dinz
+ *
+ */
+class UnboundVariable implements EchoOperation {
+
+	@Override
+	public void apply(ScriptFrame frame) {
+		throw new EmptyStackException("Stack is empty.");
+	}
+
+	@Override
+	public String toString() {
+		return "unbound";
+	}
+}
@@ -0,0 +1,139 @@
+package hr.fer.zemris.java.custom.scripting.demo;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import hr.fer.zemris.java.custom.scripting.compiler.ScriptCompiler;
+import hr.fer.zemris.java.custom.scripting.compiler.ScriptCompilerException;
+import hr.fer.zemris.java.custom.scripting.nodes.CompactDocument;
+import hr.fer.zemris.java.custom.scripting.nodes.DocumentNode;
+import hr.fer.zemris.java.custom.scripting.parser.SmartScriptParser;
+
+/**
+ * Program which compares the {@link CompactDocument} with the tree made by the
+ * parser. For every script found in the given directories (default: webroot)
+ * it checks that both give the same document body and the same compiled
+ * script, and then it measures how much memory the parsed scripts keep in
+ * either form.
+ * 
+ * @author Dinz
+ *
+ */
+public class CompactDocumentDemo {
+
+	/**
+	 * Number of copies of every script kept while the memory is measured.
+	 */
+	private static final int COPIES = 200;
+
+	/**
+	 * Main method that runs the program.
+	 * 
+	 * @param args
+	 *            Directories with the scripts.
+	 * @throws IOException
+	 *             If a script can't be read.
+	 */
+	public static void main(String[] args) throws IOException {
+		List<String> roots = args.length > 0 ? Arrays.asList(args) : Arrays.asList("webroot");
+		List<String> bodies = new ArrayList<>();
+		int differences = 0;
+		for (String root : roots) {
+			List<Path> scripts;
+			try (Stream<Path> files = Files.walk(Paths.get(root))) {
+				scripts = files.filter(p -> p.toString().endsWith(".smscr")).sorted().collect(Collectors.toList());
+			}
+			for (Path script : scripts) {
+				String documentBody = new String(Files.readAllBytes(script), StandardCharsets.UTF_8);
+				SmartScriptParser parser;
+				try {
+					parser = new SmartScriptParser(documentBody);
+				} catch (RuntimeException e) {
+					continue;
+				}
+				DocumentNode tree = parser.getDocumentNode();
+				DocumentNode compact = CompactDocument.of(tree).getDocumentNode();
+				boolean same = parser.createOriginalDocumentBody(tree).equals(parser.createOriginalDocumentBody(compact))
+						&& compile(tree).equals(compile(compact));
+				if (!same) {
+					differences++;
+				}
+				System.out.println((same ? "SAME      " : "DIFFERENT ") + script);
+				bodies.add(documentBody);
+			}
+		}
+
+		long treeBytes = retained(bodies, false);
+		long compactBytes = retained(bodies, true);
+		System.out.println(String.format(Locale.ROOT, "%d scripts kept %d times: trees %.1f KB, compact %.1f KB",
+				bodies.size(), COPIES, treeBytes / 1e3, compactBytes / 1e3));
+		if (differences > 0) {
+			System.out.println(differences + " script(s) differ in the compact form.");
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Method which compiles the document and describes the result.
+	 * 
+	 * @param document
+	 *            Document to be compiled.
+	 * @return Dump of the compiled script, or the message of the compiler.
+	 */
+	private static String compile(DocumentNode document) {
+		try {
+			return ScriptCompiler.compile(document).dump();
+		} catch (ScriptCompilerException e) {
+			return "REJECTED " + e.getMessage();
+		}
+	}
+
+	/**
+	 * Method which measures the memory kept by the parsed scripts.
+	 * 
+	 * @param bodies
+	 *            Bodies of the scripts.
+	 * @param compact
+	 *            True if the scripts are kept as compact documents, false if as
+	 *            trees.
+	 * @return Number of bytes.
+	 */
+	private static long retained(List<String> bodies, boolean compact) {
+		long before = usedMemory();
+		List<Object> documents = new ArrayList<>();
+		for (int i = 0; i < COPIES; i++) {
+			for (String body : bodies) {
+				DocumentNode tree = new SmartScriptParser(body).getDocumentNode();
+				documents.add(compact ? CompactDocument.of(tree) : tree);
+			}
+		}
+		long used = usedMemory() - before;
+		// the documents must stay reachable until the memory is measured
+		if (documents.isEmpty()) {
+			return 0;
+		}
+		return used / COPIES;
+	}
+
+	/**
+	 * Method which gets the memory in use after a garbage collection.
+	 * 
+	 * @return Number of bytes.
+	 */
+	private static long usedMemory() {
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+}
@@ -0,0 +1,181 @@
+package hr.fer.zemris.java.custom.scripting.demo;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import hr.fer.zemris.java.custom.scripting.compiler.CompiledScript;
+import hr.fer.zemris.java.custom.scripting.compiler.ScriptCompiler;
+import hr.fer.zemris.java.custom.scripting.compiler.ScriptCompilerException;
+import hr.fer.zemris.java.custom.scripting.exec.SmartScriptEngine;
+import hr.fer.zemris.java.custom.scripting.nodes.DocumentNode;
+import hr.fer.zemris.java.custom.scripting.parser.SmartScriptParser;
+import hr.fer.zemris.java.webserver.RequestContext;
+import hr.fer.zemris.java.webserver.RequestContext.RCCookie;
+
+/**
+ * Program which checks that the compiled scripts behave exactly like the
+ * interpreted ones. Every script found in the given files and directories
+ * (default: webroot/scripts and src/main/resources) is executed by the
+ * {@link SmartScriptEngine} and as a {@link CompiledScript} with the same
+ * parameters, and the written bytes, the class of the thrown exception and the
+ * parameters left behind are compared. A script rejected by the compiler
+ * either fails in the interpreter as well or never reaches the rejected echo
+ * tag, so rejections are only reported. The program exits with status 1 if
+ * any script behaves differently.
+ * 
+ * @author Dinz
+ *
+ */
+public class CompilerDifferentialDemo {
+
+	/**
+	 * Main method that runs the program.
+	 * 
+	 * @param args
+	 *            Files or directories with the scripts.
+	 * @throws IOException
+	 *             If a script can't be read.
+	 */
+	public static void main(String[] args) throws IOException {
+		List<String> roots = args.length > 0 ? Arrays.asList(args)
+				: Arrays.asList("webroot/scripts", "src/main/resources");
+		int differences = 0;
+		for (String root : roots) {
+			for (Path script : findScripts(Paths.get(root))) {
+				if (!compare(script)) {
+					differences++;
+				}
+			}
+		}
+		if (differences > 0) {
+			System.out.println(differences + " script(s) behave differently when compiled.");
+			System.exit(1);
+		}
+		System.out.println("All compiled scripts behave like the interpreted ones.");
+	}
+
+	/**
+	 * Method which finds the scripts in the file or directory.
+	 * 
+	 * @param root
+	 *            File or directory.
+	 * @return Scripts, sorted by path.
+	 * @throws IOException
+	 *             If the directory can't be read.
+	 */
+	private static List<Path> findScripts(Path root) throws IOException {
+		if (!Files.isDirectory(root)) {
+			return Files.exists(root) ? Arrays.asList(root) : new ArrayList<>();
+		}
+		try (Stream<Path> files = Files.walk(root)) {
+			return files.filter(p -> p.toString().endsWith(".smscr")).sorted().collect(Collectors.toList());
+		}
+	}
+
+	/**
+	 * Method which runs the script with both engines and compares the results.
+	 * 
+	 * @param script
+	 *            Path of the script.
+	 * @return True if both runs behaved the same, false otherwise.
+	 * @throws IOException
+	 *             If the script can't be read.
+	 */
+	private static boolean compare(Path script) throws IOException {
+		DocumentNode document;
+		try {
+			document = new SmartScriptParser(new String(Files.readAllBytes(script), StandardCharsets.UTF_8))
+					.getDocumentNode();
+		} catch (RuntimeException e) {
+			System.out.println("SKIPPED   " + script + " (" + e.getMessage() + ")");
+			return true;
+		}
+		SmartScriptEngine engine = new SmartScriptEngine(document);
+		Run interpreted = new Run();
+		interpreted.run(() -> engine.execute(interpreted.context));
+
+		CompiledScript compiled;
+		try {
+			compiled = ScriptCompiler.compile(document);
+		} catch (ScriptCompilerException e) {
+			System.out.println("REJECTED  " + script + " (" + e.getMessage() + ")");
+			return true;
+		}
+		Run compiledRun = new Run();
+		compiledRun.run(() -> compiled.execute(compiledRun.context));
+
+		boolean same = Arrays.equals(interpreted.output.toByteArray(), compiledRun.output.toByteArray())
+				&& String.valueOf(interpreted.failure).equals(String.valueOf(compiledRun.failure))
+				&& interpreted.persistent.equals(compiledRun.persistent)
+				&& interpreted.temporary.equals(compiledRun.temporary);
+		System.out.println((same ? "SAME      " : "DIFFERENT ") + script);
+		return same;
+	}
+
+	/**
+	 * Class that represents a single run of a script with fixed parameters.
+	 * 
+	 * @author Dinz
+	 *
+	 */
+	private static class Run {
+		/**
+		 * Written bytes.
+		 */
+		private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+		/**
+		 * Persistent parameters.
+		 */
+		private final Map<String, String> persistent = new HashMap<>();
+		/**
+		 * Temporary parameters.
+		 */
+		private final Map<String, String> temporary = new HashMap<>();
+		/**
+		 * Context of the run.
+		 */
+		private final RequestContext context;
+		/**
+		 * Class of the exception thrown by the script, null if there was none.
+		 */
+		private String failure;
+
+		/**
+		 * Constructs a new run with the fixed parameters.
+		 */
+		public Run() {
+			Map<String, String> parameters = new HashMap<>();
+			parameters.put("a", "4");
+			parameters.put("b", "7");
+			persistent.put("brojPoziva", "3");
+			temporary.put("background", "FF0000");
+			context = new RequestContext(output, parameters, persistent, new ArrayList<RCCookie>(), temporary,
+					null);
+		}
+
+		/**
+		 * Method which runs the script and records the thrown exception.
+		 * 
+		 * @param execution
+		 *            Execution of the script.
+		 */
+		public void run(Runnable execution) {
+			try {
+				execution.run();
+			} catch (RuntimeException e) {
+				failure = e.getClass().getName();
+			}
+		}
+	}
+}
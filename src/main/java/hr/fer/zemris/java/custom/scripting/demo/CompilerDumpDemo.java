@@ -0,0 +1,43 @@
+package hr.fer.zemris.java.custom.scripting.demo;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import hr.fer.zemris.java.custom.scripting.compiler.CompiledScript;
+import hr.fer.zemris.java.custom.scripting.compiler.ScriptCompiler;
+import hr.fer.zemris.java.custom.scripting.parser.SmartScriptParser;
+
+/**
+ * Class that demonstrates the optimizations of the {@link ScriptCompiler} by
+ * printing the dump of a compiled script. Without arguments a small script
+ * with constant echo tags and a loop which never runs is compiled, otherwise
+ * the script from the given file.
+ * 
+ * @author Dinz
+ *
+ */
+public class CompilerDumpDemo {
+
+	/**
+	 * Main method that runs the program.
+	 * 
+	 * @param args
+	 *            Path of the script, optional.
+	 * @throws IOException
+	 *             If the script can't be read.
+	 */
+	public static void main(String[] args) throws IOException {
+		String documentBody;
+		if (args.length > 0) {
+			documentBody = new String(Files.readAllBytes(Paths.get(args[0])), StandardCharsets.UTF_8);
+		} else {
+			documentBody = "Total: {$= 2 3 * 1 + $} items, {$= \"a\" \"b\" @swap $}.\r\n"
+					+ "{$ FOR i 1 4 1 $}{$= 10 2 / i * $} {$= 0.5 @sin \"0.00\" @decfmt $}{$END$}\r\n"
+					+ "{$ FOR j 5 1 1 $}never{$END$}done\r\n";
+		}
+		CompiledScript script = ScriptCompiler.compile(new SmartScriptParser(documentBody).getDocumentNode());
+		System.out.print(script.dump());
+	}
+}
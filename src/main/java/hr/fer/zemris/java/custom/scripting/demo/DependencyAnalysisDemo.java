@@ -0,0 +1,52 @@
+package hr.fer.zemris.java.custom.scripting.demo;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import hr.fer.zemris.java.custom.scripting.compiler.DependencyAnalyzer;
+import hr.fer.zemris.java.custom.scripting.parser.SmartScriptParser;
+
+/**
+ * Class that demonstrates the {@link DependencyAnalyzer} by printing the kind
+ * and the dependencies of every script found in the given directories
+ * (default: webroot).
+ *
+ * @author Dinz
+ *
+ */
+public class DependencyAnalysisDemo {
+
+	/**
+	 * Main method that runs the program.
+	 *
+	 * @param args
+	 *            Directories with the scripts.
+	 * @throws IOException
+	 *             If a script can't be read.
+	 */
+	public static void main(String[] args) throws IOException {
+		List<String> roots = args.length > 0 ? Arrays.asList(args) : Arrays.asList("webroot");
+		for (String root : roots) {
+			List<Path> scripts;
+			try (Stream<Path> files = Files.walk(Paths.get(root))) {
+				scripts = files.filter(p -> p.toString().endsWith(".smscr")).sorted().collect(Collectors.toList());
+			}
+			for (Path script : scripts) {
+				String documentBody = new String(Files.readAllBytes(script), StandardCharsets.UTF_8);
+				try {
+					System.out.println(script + ": "
+							+ DependencyAnalyzer.analyze(new SmartScriptParser(documentBody).getDocumentNode()));
+				} catch (RuntimeException e) {
+					System.out.println(script + ": not parsed (" + e.getMessage() + ")");
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,42 @@
+package hr.fer.zemris.java.custom.scripting.demo;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import hr.fer.zemris.java.custom.scripting.compiler.CompiledScript;
+import hr.fer.zemris.java.custom.scripting.compiler.FunctionRegistry;
+import hr.fer.zemris.java.custom.scripting.compiler.ScriptCompiler;
+import hr.fer.zemris.java.custom.scripting.parser.SmartScriptParser;
+import hr.fer.zemris.java.webserver.RequestContext;
+import hr.fer.zemris.java.webserver.RequestContext.RCCookie;
+
+/**
+ * Class that demonstrates registering a native function which is then called
+ * from a script. The function <code>@sumTo</code> replaces a script loop which
+ * would add the numbers from 1 to n one by one.
+ * 
+ * @author Dinz
+ *
+ */
+public class NativeFunctionDemo {
+
+	/**
+	 * Main method that runs the program.
+	 * 
+	 * @param args
+	 *            Arguments from the command line, not used.
+	 */
+	public static void main(String[] args) {
+		FunctionRegistry functions = new FunctionRegistry();
+		functions.register("@sumTo", 1, 1, frame -> {
+			long n = Long.parseLong(frame.pop().toString());
+			frame.push(n * (n + 1) / 2);
+		});
+
+		String body = "Sum of the numbers from 1 to 100 is {$= 100 @sumTo $}.\r\n";
+		CompiledScript script = ScriptCompiler.compile(new SmartScriptParser(body).getDocumentNode(), functions);
+		RequestContext rc = new RequestContext(System.out, new HashMap<String, String>(),
+				new HashMap<String, String>(), new ArrayList<RCCookie>());
+		script.execute(rc);
+	}
+}
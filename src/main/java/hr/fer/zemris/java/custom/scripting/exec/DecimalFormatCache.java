@@ -0,0 +1,233 @@
+package hr.fer.zemris.java.custom.scripting.exec;
+
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Class that formats numbers for the <code>@decfmt</code> function. Creating a
+ * {@link DecimalFormat} parses its pattern and loads the symbols of the locale,
+ * which is expensive inside loops, so the formats are cached by their pattern.
+ * A {@link DecimalFormat} is not thread safe, so every thread has its own
+ * cache, which keeps only the patterns used last.
+ * <p>
+ * The most common patterns, a zero followed by an optional fixed number of
+ * decimal zeros such as <code>"0.000"</code>, are formatted directly from the
+ * digits of the number. The result is the same as the one of the
+ * {@link DecimalFormat}; numbers which are too large or too close to a rounding
+ * tie are still left to the {@link DecimalFormat}. Like the formats
+ * themselves, the cached formats keep the symbols of the locale which was the
+ * default when they were created.
+ * 
+ * @author Dinz
+ *
+ */
+public final class DecimalFormatCache {
+
+	/**
+	 * Number of patterns kept by every thread.
+	 */
+	private static final int CAPACITY = 32;
+
+	/**
+	 * Patterns which are formatted directly: a zero followed by up to nine
+	 * decimal zeros.
+	 */
+	private static final Pattern FIXED_PATTERN = Pattern.compile("0(\\.0{1,9})?");
+
+	/**
+	 * Powers of ten used to scale the fractions.
+	 */
+	private static final long[] POWERS_OF_TEN = { 1L, 10L, 100L, 1_000L, 10_000L, 100_000L, 1_000_000L,
+			10_000_000L, 100_000_000L, 1_000_000_000L };
+
+	/**
+	 * Largest scaled number which is formatted directly. Below it a double has
+	 * enough fraction bits to tell the rounding direction.
+	 */
+	private static final double MAX_SCALED = 1e12;
+
+	/**
+	 * Distance from a half within which the rounding is left to the
+	 * {@link DecimalFormat}.
+	 */
+	private static final double TIE_MARGIN = 1e-3;
+
+	/**
+	 * Formats of the current thread, ordered from the least recently used.
+	 */
+	private static final ThreadLocal<Map<String, CachedFormat>> FORMATS = ThreadLocal
+			.withInitial(() -> new LinkedHashMap<String, CachedFormat>(16, 0.75f, true) {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<String, CachedFormat> eldest) {
+					return size() > CAPACITY;
+				}
+			});
+
+	/**
+	 * Private constructor, the class only has static members.
+	 */
+	private DecimalFormatCache() {
+	}
+
+	/**
+	 * Method which gets the format of the pattern from the cache of the current
+	 * thread, creating it if needed. The format must be used only by the
+	 * current thread.
+	 * 
+	 * @param pattern
+	 *            Pattern of the format.
+	 * @return Cached format.
+	 * @throws IllegalArgumentException
+	 *             If the pattern is invalid.
+	 */
+	public static CachedFormat get(String pattern) {
+		Map<String, CachedFormat> formats = FORMATS.get();
+		CachedFormat format = formats.get(pattern);
+		if (format == null) {
+			format = new CachedFormat(pattern);
+			formats.put(pattern, format);
+		}
+		return format;
+	}
+
+	/**
+	 * Class that represents a cached format of a single pattern.
+	 * 
+	 * @author Dinz
+	 *
+	 */
+	public static final class CachedFormat {
+
+		/**
+		 * The format.
+		 */
+		private final DecimalFormat format;
+
+		/**
+		 * Number of decimals of a fixed pattern, -1 if the pattern is not fixed.
+		 */
+		private final int decimals;
+
+		/**
+		 * Zero digit of the locale.
+		 */
+		private final char zeroDigit;
+
+		/**
+		 * Decimal separator of the locale.
+		 */
+		private final char decimalSeparator;
+
+		/**
+		 * Prefix of the negative numbers.
+		 */
+		private final String negativePrefix;
+
+		/**
+		 * Suffix of the negative numbers.
+		 */
+		private final String negativeSuffix;
+
+		/**
+		 * Constructs a new cached format.
+		 * 
+		 * @param pattern
+		 *            Pattern of the format.
+		 * @throws IllegalArgumentException
+		 *             If the pattern is invalid.
+		 */
+		private CachedFormat(String pattern) {
+			format = new DecimalFormat(pattern);
+			DecimalFormatSymbols symbols = format.getDecimalFormatSymbols();
+			zeroDigit = symbols.getZeroDigit();
+			decimalSeparator = symbols.getDecimalSeparator();
+			negativePrefix = format.getNegativePrefix();
+			negativeSuffix = format.getNegativeSuffix();
+			boolean fixed = FIXED_PATTERN.matcher(pattern).matches() && format.getPositivePrefix().isEmpty()
+					&& format.getPositiveSuffix().isEmpty();
+			decimals = fixed ? Math.max(pattern.length() - 2, 0) : -1;
+		}
+
+		/**
+		 * Method which formats the number, exactly like
+		 * <code>new DecimalFormat(pattern).format(number)</code>.
+		 * 
+		 * @param number
+		 *            Number to be formatted.
+		 * @return Formatted number.
+		 * @throws IllegalArgumentException
+		 *             If the object is not a number.
+		 */
+		public String format(Object number) {
+			if (decimals >= 0) {
+				if (number instanceof Integer) {
+					int value = (Integer) number;
+					return fixed(value < 0, Math.abs((long) value) * POWERS_OF_TEN[decimals]);
+				} else if (number instanceof Double) {
+					double value = (Double) number;
+					double scaled = Math.abs(value) * POWERS_OF_TEN[decimals];
+					if (scaled < MAX_SCALED) {
+						double whole = Math.floor(scaled);
+						double fraction = scaled - whole;
+						if (Math.abs(fraction - 0.5) > TIE_MARGIN) {
+							long units = (long) whole + (fraction > 0.5 ? 1 : 0);
+							return fixed(Double.doubleToRawLongBits(value) < 0, units);
+						}
+					}
+				}
+			}
+			return format.format(number);
+		}
+
+		/**
+		 * Method which writes the number in the fixed pattern.
+		 * 
+		 * @param negative
+		 *            True if the number is negative.
+		 * @param units
+		 *            Absolute value of the number, rounded and scaled by the
+		 *            number of decimals.
+		 * @return Formatted number.
+		 */
+		private String fixed(boolean negative, long units) {
+			long scale = POWERS_OF_TEN[decimals];
+			StringBuilder sb = new StringBuilder(24);
+			if (negative) {
+				sb.append(negativePrefix);
+			}
+			appendDigits(sb, Long.toString(units / scale), 0);
+			if (decimals > 0) {
+				sb.append(decimalSeparator);
+				appendDigits(sb, Long.toString(units % scale), decimals);
+			}
+			if (negative) {
+				sb.append(negativeSuffix);
+			}
+			return sb.toString();
+		}
+
+		/**
+		 * Method which appends the digits in the digits of the locale.
+		 * 
+		 * @param sb
+		 *            Builder the digits are appended to.
+		 * @param digits
+		 *            ASCII digits.
+		 * @param width
+		 *            Minimal number of digits, filled with leading zeros.
+		 */
+		private void appendDigits(StringBuilder sb, String digits, int width) {
+			for (int i = digits.length(); i < width; i++) {
+				sb.append(zeroDigit);
+			}
+			for (int i = 0; i < digits.length(); i++) {
+				sb.append((char) (zeroDigit + digits.charAt(i) - '0'));
+			}
+		}
+	}
+}
@@ -0,0 +1,154 @@
+package hr.fer.zemris.java.custom.scripting.exec;
+
+/**
+ * Class that represents the limits of a single script execution: the number
+ * of loop iterations, the number of written bytes and the time the execution
+ * may take. The loops report every iteration and the context reports every
+ * write, and the first limit which is exceeded stops the execution with an
+ * {@link ExecutionBudgetExceededException}.
+ * <p>
+ * The checks are cheap: an iteration only increments a counter, and the clock
+ * is read once every {@link #CLOCK_INTERVAL} iterations. A budget is used by
+ * one thread, the one which executes the script.
+ * 
+ * @author Dinz
+ *
+ */
+public class ExecutionBudget {
+
+	/**
+	 * Number of iterations between two readings of the clock.
+	 */
+	private static final int CLOCK_INTERVAL = 1024;
+
+	/**
+	 * Limits of the budget.
+	 * 
+	 * @author Dinz
+	 *
+	 */
+	public enum Limit {
+		/**
+		 * Number of loop iterations.
+		 */
+		ITERATIONS,
+		/**
+		 * Number of written bytes.
+		 */
+		OUTPUT,
+		/**
+		 * Time of the execution.
+		 */
+		DEADLINE
+	}
+
+	/**
+	 * Maximal number of iterations, 0 if there is no limit.
+	 */
+	private final long maxIterations;
+
+	/**
+	 * Maximal number of written bytes, 0 if there is no limit.
+	 */
+	private final long maxOutputBytes;
+
+	/**
+	 * Time in nanoseconds when the execution has to be done, 0 if there is no
+	 * limit.
+	 */
+	private final long deadlineNanos;
+
+	/**
+	 * Number of iterations so far.
+	 */
+	private long iterations;
+
+	/**
+	 * Number of written bytes so far.
+	 */
+	private long outputBytes;
+
+	/**
+	 * Constructs a new budget which starts now.
+	 * 
+	 * @param maxIterations
+	 *            Maximal number of loop iterations, 0 if there is no limit.
+	 * @param maxOutputBytes
+	 *            Maximal number of written bytes, 0 if there is no limit.
+	 * @param timeoutMillis
+	 *            Time of the execution in milliseconds, 0 if there is no limit.
+	 * @throws IllegalArgumentException
+	 *             If a limit is negative.
+	 */
+	public ExecutionBudget(long maxIterations, long maxOutputBytes, long timeoutMillis) {
+		if (maxIterations < 0 || maxOutputBytes < 0 || timeoutMillis < 0) {
+			throw new IllegalArgumentException("Limits of the execution can't be negative.");
+		}
+		this.maxIterations = maxIterations;
+		this.maxOutputBytes = maxOutputBytes;
+		this.deadlineNanos = timeoutMillis == 0 ? 0 : System.nanoTime() + timeoutMillis * 1_000_000;
+	}
+
+	/**
+	 * Method which counts a loop iteration.
+	 * 
+	 * @throws ExecutionBudgetExceededException
+	 *             If there are too many iterations or the time is up.
+	 */
+	public void iteration() {
+		iterations++;
+		if (maxIterations != 0 && iterations > maxIterations) {
+			throw new ExecutionBudgetExceededException(Limit.ITERATIONS,
+					"Script exceeded " + maxIterations + " loop iterations.");
+		}
+		if (deadlineNanos != 0 && iterations % CLOCK_INTERVAL == 0) {
+			checkDeadline();
+		}
+	}
+
+	/**
+	 * Method which counts the written bytes.
+	 * 
+	 * @param bytes
+	 *            Number of written bytes.
+	 * @throws ExecutionBudgetExceededException
+	 *             If too many bytes are written.
+	 */
+	public void output(int bytes) {
+		outputBytes += bytes;
+		if (maxOutputBytes != 0 && outputBytes > maxOutputBytes) {
+			throw new ExecutionBudgetExceededException(Limit.OUTPUT,
+					"Script exceeded " + maxOutputBytes + " bytes of output.");
+		}
+	}
+
+	/**
+	 * Method which checks that the time of the execution is not up.
+	 * 
+	 * @throws ExecutionBudgetExceededException
+	 *             If the time is up.
+	 */
+	public void checkDeadline() {
+		if (deadlineNanos != 0 && System.nanoTime() - deadlineNanos > 0) {
+			throw new ExecutionBudgetExceededException(Limit.DEADLINE, "Script exceeded its time limit.");
+		}
+	}
+
+	/**
+	 * Gets the number of iterations so far.
+	 * 
+	 * @return Number of iterations.
+	 */
+	public long getIterations() {
+		return iterations;
+	}
+
+	/**
+	 * Gets the number of written bytes so far.
+	 * 
+	 * @return Number of bytes.
+	 */
+	public long getOutputBytes() {
+		return outputBytes;
+	}
+}
@@ -0,0 +1,44 @@
+package hr.fer.zemris.java.custom.scripting.exec;
+
+/**
+ * Class that represents an exception that is being thrown when a script
+ * exceeds a limit of its {@link ExecutionBudget}. The execution is stopped at
+ * once, so the output written so far may be incomplete.
+ * 
+ * @author Dinz
+ *
+ */
+public class ExecutionBudgetExceededException extends RuntimeException {
+
+	/**
+	 * Serial version.
+	 */
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Exceeded limit.
+	 */
+	private final ExecutionBudget.Limit limit;
+
+	/**
+	 * Constructs a new ExecutionBudgetExceededException.
+	 * 
+	 * @param limit
+	 *            Exceeded limit.
+	 * @param message
+	 *            Message that describes the problem.
+	 */
+	public ExecutionBudgetExceededException(ExecutionBudget.Limit limit, String message) {
+		super(message);
+		this.limit = limit;
+	}
+
+	/**
+	 * Gets the exceeded limit.
+	 * 
+	 * @return Limit.
+	 */
+	public ExecutionBudget.Limit getLimit() {
+		return limit;
+	}
+}
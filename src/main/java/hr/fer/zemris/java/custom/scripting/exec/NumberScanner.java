@@ -0,0 +1,136 @@
+package hr.fer.zemris.java.custom.scripting.exec;
+
+/**
+ * Class that classifies strings as numbers without throwing exceptions. The
+ * scanner recognizes the plain ASCII spellings of integers and decimal numbers,
+ * which are the ones produced by the scripts and by the arithmetic itself. Any
+ * other string, including valid but unusual spellings such as
+ * <code>"NaN"</code>, hexadecimal numbers or numbers surrounded by whitespace,
+ * is reported as {@link ObjectType#STRING} and left to the general parsing in
+ * {@link ValueWrapper}.
+ * 
+ * @author Dinz
+ *
+ */
+final class NumberScanner {
+
+	/**
+	 * Private constructor, the class only has static members.
+	 */
+	private NumberScanner() {
+	}
+
+	/**
+	 * Method which classifies the string the same way
+	 * {@link Integer#parseInt(String)} and {@link Double#parseDouble(String)}
+	 * would.
+	 * 
+	 * @param s
+	 *            String to be classified.
+	 * @return {@link ObjectType#INTEGER} if the string is an integer in the
+	 *         range of int, {@link ObjectType#DOUBLE} if it is a decimal number
+	 *         and {@link ObjectType#STRING} if the scanner doesn't recognize it.
+	 */
+	static ObjectType classify(String s) {
+		int length = s.length();
+		int i = 0;
+		boolean negative = false;
+		if (i < length && (s.charAt(i) == '+' || s.charAt(i) == '-')) {
+			negative = s.charAt(i) == '-';
+			i++;
+		}
+
+		int digits = 0;
+		long magnitude = 0;
+		while (i < length && isDigit(s.charAt(i))) {
+			if (magnitude <= Integer.MAX_VALUE) {
+				magnitude = magnitude * 10 + (s.charAt(i) - '0');
+			}
+			digits++;
+			i++;
+		}
+		if (i == length) {
+			if (digits == 0) {
+				return ObjectType.STRING;
+			}
+			long limit = negative ? -(long) Integer.MIN_VALUE : Integer.MAX_VALUE;
+			return magnitude <= limit ? ObjectType.INTEGER : ObjectType.DOUBLE;
+		}
+
+		if (s.charAt(i) == '.') {
+			i++;
+			while (i < length && isDigit(s.charAt(i))) {
+				digits++;
+				i++;
+			}
+		}
+		if (digits == 0) {
+			return ObjectType.STRING;
+		}
+		if (i < length && (s.charAt(i) == 'e' || s.charAt(i) == 'E')) {
+			i++;
+			if (i < length && (s.charAt(i) == '+' || s.charAt(i) == '-')) {
+				i++;
+			}
+			int exponentDigits = 0;
+			while (i < length && isDigit(s.charAt(i))) {
+				exponentDigits++;
+				i++;
+			}
+			if (exponentDigits == 0) {
+				return ObjectType.STRING;
+			}
+		}
+		if (i < length && "fFdD".indexOf(s.charAt(i)) >= 0) {
+			i++;
+		}
+		return i == length ? ObjectType.DOUBLE : ObjectType.STRING;
+	}
+
+	/**
+	 * Method which parses a string classified as {@link ObjectType#INTEGER}.
+	 * 
+	 * @param s
+	 *            String classified as an integer.
+	 * @return Value of the integer.
+	 */
+	static int parseInt(String s) {
+		int i = 0;
+		boolean negative = false;
+		if (s.charAt(0) == '+' || s.charAt(0) == '-') {
+			negative = s.charAt(0) == '-';
+			i++;
+		}
+		int result = 0;
+		for (; i < s.length(); i++) {
+			result = result * 10 - (s.charAt(i) - '0');
+		}
+		return negative ? result : -result;
+	}
+
+	/**
+	 * Method which gets the value {@link Double#parseDouble(String)} would
+	 * return for a string classified as {@link ObjectType#INTEGER}. The only
+	 * difference from the integer value is the negative zero.
+	 * 
+	 * @param value
+	 *            Value of the integer.
+	 * @param s
+	 *            String classified as an integer.
+	 * @return Value of the integer as a double.
+	 */
+	static double toDouble(int value, String s) {
+		return value == 0 && s.charAt(0) == '-' ? -0.0 : value;
+	}
+
+	/**
+	 * Checks if the character is an ASCII digit.
+	 * 
+	 * @param c
+	 *            Character to be checked.
+	 * @return True if the character is a digit, false otherwise.
+	 */
+	private static boolean isDigit(char c) {
+		return c >= '0' && c <= '9';
+	}
+}
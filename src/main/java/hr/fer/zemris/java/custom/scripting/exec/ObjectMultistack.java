@@ -1,5 +1,6 @@
 package hr.fer.zemris.java.custom.scripting.exec;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -9,6 +10,10 @@ import java.util.Map;
  * multistack by wrapping them into the ValueWrapper class. Key of the elements
  * and the ValueWrapper reference must not be null, as opposed to objects before
  * wrapping.
+ * <p>
+ * Every key maps to its own array-backed stack, so push, pop and peek take a
+ * single map lookup and constant time no matter how deep the stack is. Stacks
+ * of keys that become empty are kept for the next push.
  * 
  * @author Dinz
  *
@@ -38,15 +43,12 @@ public class ObjectMultistack {
 		if (valueWrapper == null) {
 			throw new IllegalArgumentException("Element to push must not be null.");
 		}
-		if (!elements.containsKey(name)) {
-			elements.put(name, new MultistackEntry(valueWrapper, null));
-		} else {
-			MultistackEntry entry = elements.get(name);
-			while (entry.next != null) {
-				entry = entry.next;
-			}
-			entry.next = new MultistackEntry(valueWrapper, null);
+		MultistackEntry entry = elements.get(name);
+		if (entry == null) {
+			entry = new MultistackEntry();
+			elements.put(name, entry);
 		}
+		entry.push(valueWrapper);
 	}
 
 	/**
@@ -61,32 +63,7 @@ public class ObjectMultistack {
 	 *             If the stack with the given key is empty.
 	 */
 	public ValueWrapper pop(String name) {
-		if (name == null) {
-			throw new NullPointerException("Key of the multistack cannot be null.");
-		}
-		if (this.isEmpty(name)) {
-			throw new EmptyStackException("Stack is empty.");
-		}
-		if (elements.containsKey(name)) {
-			MultistackEntry entry = elements.get(name);
-			if (entry.next == null) {
-				ValueWrapper object = entry.getObject();
-				elements.remove(name);
-				return object;
-			}
-			MultistackEntry reference = entry;
-			while (entry.next != null) {
-				reference = entry;
-				entry = entry.next;
-			}
-
-			ValueWrapper object = entry.getObject();
-			reference.next = null;
-
-			return object;
-		}
-
-		return null;
+		return nonEmptyEntry(name).pop();
 	}
 
 	/**
@@ -101,22 +78,7 @@ public class ObjectMultistack {
 	 *             If the stack with the given key is empty.
 	 */
 	public ValueWrapper peek(String name) {
-		if (name == null) {
-			throw new NullPointerException("Key of the multistack cannot be null.");
-		}
-		if (this.isEmpty(name)) {
-			throw new EmptyStackException("Stack is empty.");
-		}
-		if (elements.containsKey(name)) {
-			MultistackEntry entry = elements.get(name);
-			while (entry.next != null) {
-				entry = entry.next;
-			}
-
-			return entry.getObject();
-		}
-
-		return null;
+		return nonEmptyEntry(name).peek();
 	}
 
 	/**
@@ -127,58 +89,93 @@ public class ObjectMultistack {
 	 * @return True if the stack is empty, false otherwise.
 	 */
 	public boolean isEmpty(String name) {
-		return !elements.containsKey(name);
+		MultistackEntry entry = elements.get(name);
+		return entry == null || entry.size == 0;
+	}
+
+	/**
+	 * Removes all the elements from all the stacks.
+	 */
+	public void clear() {
+		elements.clear();
 	}
 
 	/**
-	 * Class that represents a node that stores elements into the ObjectMultistack
-	 * collection. Every node is consisted of a ValueWrapper instance which holds an
-	 * object and a reference to the next MultistackEntry in the stack.
+	 * Gets the stack with the given key, checking that it has elements.
+	 * 
+	 * @param name
+	 *            Key of the stack.
+	 * @return Stack with the given key.
+	 * @throws NullPointerException
+	 *             If null is given as a key.
+	 * @throws EmptyStackException
+	 *             If the stack with the given key is empty.
+	 */
+	private MultistackEntry nonEmptyEntry(String name) {
+		if (name == null) {
+			throw new NullPointerException("Key of the multistack cannot be null.");
+		}
+		MultistackEntry entry = elements.get(name);
+		if (entry == null || entry.size == 0) {
+			throw new EmptyStackException("Stack is empty.");
+		}
+		return entry;
+	}
+
+	/**
+	 * Class that represents the stack of a single key in the ObjectMultistack
+	 * collection. The elements are kept in an array which grows when it is
+	 * full, with the top of the stack at the end.
 	 * 
 	 * @author Dinz
 	 *
 	 */
 	static class MultistackEntry {
 		/**
-		 * ValueWrapper that holds an object.
+		 * Initial capacity of the stack.
+		 */
+		private static final int INITIAL_CAPACITY = 4;
+		/**
+		 * Elements of the stack, from the bottom to the top.
 		 */
-		ValueWrapper object;
+		ValueWrapper[] objects = new ValueWrapper[INITIAL_CAPACITY];
 		/**
-		 * Reference to the next entry in stack.
+		 * Number of elements in the stack.
 		 */
-		MultistackEntry next;
+		int size;
 
 		/**
-		 * Constructs a new MultistackEntry.
+		 * Pushes the element to the top of the stack.
 		 * 
 		 * @param object
-		 *            ValueWrapper instance.
-		 * @param next
-		 *            Reference to the next entry.
+		 *            Element to be pushed.
 		 */
-		public MultistackEntry(ValueWrapper object, MultistackEntry next) {
-			this.object = object;
-			this.next = next;
+		void push(ValueWrapper object) {
+			if (size == objects.length) {
+				objects = Arrays.copyOf(objects, size * 2);
+			}
+			objects[size++] = object;
 		}
 
 		/**
-		 * Returns the object from the entry.
+		 * Removes the element from the top of the stack.
 		 * 
-		 * @return Object wrapped as a ValueWrapper instance.
+		 * @return Removed element.
 		 */
-		public ValueWrapper getObject() {
+		ValueWrapper pop() {
+			ValueWrapper object = objects[--size];
+			objects[size] = null;
 			return object;
 		}
 
 		/**
-		 * Returns the next entry in the stack.
+		 * Returns the element from the top of the stack.
 		 * 
-		 * @return Next entry in the stack.
+		 * @return Element from the top of the stack.
 		 */
-		public MultistackEntry getNext() {
-			return next;
+		ValueWrapper peek() {
+			return objects[size - 1];
 		}
-
 	}
 
 }
@@ -0,0 +1,64 @@
+package hr.fer.zemris.java.custom.scripting.exec;
+
+import java.util.Locale;
+
+/**
+ * Class that measures the push, peek and pop operations of the
+ * ObjectMultistack class at growing stack depths. The time per operation
+ * should stay the same for every depth, as it does when nested loops reuse the
+ * name of a variable.
+ * 
+ * @author Dinz
+ *
+ */
+public class ObjectMultistackBenchmark {
+
+	/**
+	 * Number of measured push, peek and pop cycles per depth.
+	 */
+	private static final int CYCLES = 2_000_000;
+
+	/**
+	 * Method that executes the class.
+	 * 
+	 * @param args
+	 *            Arguments from the command line, not used.
+	 */
+	public static void main(String[] args) {
+		int[] depths = { 1, 10, 100, 1_000, 10_000, 100_000 };
+		ValueWrapper value = new ValueWrapper(Integer.valueOf(1));
+
+		// warm-up, so the first depths are not measured before compilation
+		for (int i = 0; i < 5; i++) {
+			measure(1_000, value);
+		}
+		for (int depth : depths) {
+			double nanos = measure(depth, value);
+			System.out.println(String.format(Locale.ROOT, "depth %7d: %6.1f ns per push, peek and pop", depth, nanos));
+		}
+	}
+
+	/**
+	 * Method which fills a stack to the given depth and measures the cycles on
+	 * top of it.
+	 * 
+	 * @param depth
+	 *            Depth of the stack.
+	 * @param value
+	 *            Value which is pushed.
+	 * @return Average time of a cycle in nanoseconds.
+	 */
+	private static double measure(int depth, ValueWrapper value) {
+		ObjectMultistack multistack = new ObjectMultistack();
+		for (int i = 0; i < depth; i++) {
+			multistack.push("i", value);
+		}
+		long start = System.nanoTime();
+		for (int i = 0; i < CYCLES; i++) {
+			multistack.push("i", value);
+			multistack.peek("i");
+			multistack.pop("i");
+		}
+		return (System.nanoTime() - start) / (double) CYCLES;
+	}
+}
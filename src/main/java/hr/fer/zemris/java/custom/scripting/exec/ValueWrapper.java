@@ -4,6 +4,13 @@ package hr.fer.zemris.java.custom.scripting.exec;
  * Class that represents a value wrapper which acts as a wrapper for any type of
  * the object. This class is allowed to perform certain mathematical operation
  * on the wrapped number after checking the object data.
+ * <p>
+ * Numbers are classified once, with the {@link NumberScanner}, and the wrapper
+ * keeps the classified value as a primitive, so a loop variable is not parsed
+ * again on every step. Results of the arithmetic are kept as primitives as
+ * well and are boxed only when {@link #getValue()} is called. Strings the
+ * scanner doesn't recognize go through the general parsing, which gives the
+ * same results and errors as before.
  * 
  * @author Dinz
  *
@@ -14,6 +21,24 @@ public class ValueWrapper {
 	 */
 	private Object value;
 
+	/**
+	 * Type of the number held by the wrapper, null if the value is not
+	 * classified. If the type is set and the value is null, the value is the
+	 * unboxed result of an operation.
+	 */
+	private ObjectType type;
+
+	/**
+	 * Value of the number if its type is integer.
+	 */
+	private int intValue;
+
+	/**
+	 * Value of the number as a double, as {@link Double#parseDouble(String)}
+	 * would read the value.
+	 */
+	private double doubleValue;
+
 	/**
 	 * Wraps a new object and constructs a new ValueWrapper instance.
 	 * 
@@ -30,6 +55,11 @@ public class ValueWrapper {
 	 * @return Value of the object.
 	 */
 	public Object getValue() {
+		if (value == null && type == ObjectType.INTEGER) {
+			value = Integer.valueOf(intValue);
+		} else if (value == null && type == ObjectType.DOUBLE) {
+			value = Double.valueOf(doubleValue);
+		}
 		return value;
 	}
 
@@ -41,6 +71,7 @@ public class ValueWrapper {
 	 */
 	public void setValue(Object value) {
 		this.value = value;
+		this.type = null;
 	}
 
 	/**
@@ -53,11 +84,7 @@ public class ValueWrapper {
 	 *             if the object is neither a number nor null.
 	 */
 	public void add(Object incValue) {
-		if (!checkArguments(this.value, incValue)) {
-			throw new RuntimeException("Invalid operation for the given objects.");
-		}
-		this.value = processOperation(this.value, incValue, OperationType.ADD);
-
+		operate(incValue, OperationType.ADD);
 	}
 
 	/**
@@ -70,11 +97,7 @@ public class ValueWrapper {
 	 *             if the object is neither a number nor null.
 	 */
 	public void multiply(Object mulValue) {
-		if (!checkArguments(this.value, mulValue)) {
-			throw new RuntimeException("Invalid operation for the given objects.");
-		}
-		this.value = processOperation(this.value, mulValue, OperationType.MULTIPLY);
-
+		operate(mulValue, OperationType.MULTIPLY);
 	}
 
 	/**
@@ -87,10 +110,7 @@ public class ValueWrapper {
 	 *             if the object is neither a number nor null.
 	 */
 	public void subtract(Object decValue) {
-		if (!checkArguments(this.value, decValue)) {
-			throw new RuntimeException("Invalid operation for the given objects.");
-		}
-		this.value = processOperation(this.value, decValue, OperationType.SUBTRACT);
+		operate(decValue, OperationType.SUBTRACT);
 	}
 
 	/**
@@ -103,11 +123,7 @@ public class ValueWrapper {
 	 *             if the object is neither a number nor null.
 	 */
 	public void divide(Object divValue) {
-		if (!checkArguments(this.value, divValue)) {
-			throw new RuntimeException("Invalid operation for the given objects.");
-		}
-		this.value = processOperation(this.value, divValue, OperationType.DIVIDE);
-
+		operate(divValue, OperationType.DIVIDE);
 	}
 
 	/**
@@ -122,39 +138,139 @@ public class ValueWrapper {
 	 *             if the object is neither a number nor null.
 	 */
 	public int numCompare(Object withValue) {
-		if (!checkArguments(this.value, withValue)) {
+		return operate(withValue, OperationType.NUMCOMPARE);
+	}
+
+	/**
+	 * Performs the operation on the object and the argument. Operands which are
+	 * integers, doubles or strings recognized by the {@link NumberScanner} are
+	 * processed on primitives; all the others go through the general parsing.
+	 * 
+	 * @param argument
+	 *            Argument of the operation.
+	 * @param operation
+	 *            Type of the operation.
+	 * @return Result of the comparison if the operation is a comparison, 0
+	 *         otherwise.
+	 * @throws RuntimeException
+	 *             if the object is neither a number nor null.
+	 */
+	private int operate(Object argument, OperationType operation) {
+		if (!(type != null || isSupported(value)) || !isSupported(argument)) {
 			throw new RuntimeException("Invalid operation for the given objects.");
 		}
 
-		Object result = processOperation(this.value, withValue, OperationType.NUMCOMPARE);
-
-		if (getObjectType(result) == ObjectType.DOUBLE) {
-			double d = (Double) result;
-			int resultInt = (int) d;
-			return resultInt;
+		ObjectType argumentType;
+		int argumentInt = 0;
+		double argumentDouble = 0;
+		if (argument == null) {
+			argumentType = ObjectType.INTEGER;
+		} else if (argument instanceof Integer) {
+			argumentType = ObjectType.INTEGER;
+			argumentInt = (Integer) argument;
+			argumentDouble = argumentInt;
+		} else if (argument instanceof Double) {
+			argumentType = ObjectType.DOUBLE;
+			argumentDouble = (Double) argument;
+		} else {
+			String s = (String) argument;
+			argumentType = NumberScanner.classify(s);
+			if (argumentType == ObjectType.INTEGER) {
+				argumentInt = NumberScanner.parseInt(s);
+				argumentDouble = NumberScanner.toDouble(argumentInt, s);
+			} else if (argumentType == ObjectType.DOUBLE) {
+				argumentDouble = Double.parseDouble(s);
+			}
+		}
+		if (argumentType == ObjectType.STRING || !classify()) {
+			return generalOperation(argument, operation);
 		}
 
-		return Integer.parseInt(processOperation(this.value, withValue, OperationType.NUMCOMPARE).toString());
+		if (type == ObjectType.INTEGER && argumentType == ObjectType.INTEGER) {
+			if (operation == OperationType.NUMCOMPARE) {
+				return Integer.compare(intValue, argumentInt);
+			}
+			int result = intOperation(intValue, argumentInt, operation);
+			value = null;
+			intValue = result;
+			doubleValue = result;
+		} else {
+			if (operation == OperationType.NUMCOMPARE) {
+				return Double.compare(doubleValue, argumentDouble);
+			}
+			double result = doubleOperation(doubleValue, argumentDouble, operation);
+			value = null;
+			type = ObjectType.DOUBLE;
+			doubleValue = result;
+		}
+		return 0;
+	}
 
+	/**
+	 * Classifies the wrapped value with the {@link NumberScanner} and keeps the
+	 * result. A null value is not classified, so it is still returned as null.
+	 * 
+	 * @return True if the value is classified, false if it needs the general
+	 *         parsing.
+	 */
+	private boolean classify() {
+		if (type != null) {
+			return true;
+		}
+		if (value instanceof Integer) {
+			intValue = (Integer) value;
+			doubleValue = intValue;
+			type = ObjectType.INTEGER;
+		} else if (value instanceof Double) {
+			doubleValue = (Double) value;
+			type = ObjectType.DOUBLE;
+		} else if (value instanceof String) {
+			String s = (String) value;
+			ObjectType scanned = NumberScanner.classify(s);
+			if (scanned == ObjectType.INTEGER) {
+				intValue = NumberScanner.parseInt(s);
+				doubleValue = NumberScanner.toDouble(intValue, s);
+			} else if (scanned == ObjectType.DOUBLE) {
+				doubleValue = Double.parseDouble(s);
+			} else {
+				return false;
+			}
+			type = scanned;
+		} else {
+			return false;
+		}
+		return true;
 	}
 
 	/**
-	 * Checks the argument for arithmetic operations.
+	 * Performs the operation through the general parsing of the operands.
 	 * 
-	 * @param current
-	 *            Current object we process with the operation.
 	 * @param argument
-	 *            Argument object.
-	 * @return True if both arguments are fine, false otherwise.
+	 *            Argument of the operation.
+	 * @param operation
+	 *            Type of the operation.
+	 * @return Result of the comparison if the operation is a comparison, 0
+	 *         otherwise.
 	 */
-	private boolean checkArguments(Object current, Object argument) {
-		if (current instanceof Integer || current instanceof Double || current instanceof String || current == null) {
-			if (argument instanceof Integer || argument instanceof Double || argument instanceof String
-					|| argument == null) {
-				return true;
-			}
+	private int generalOperation(Object argument, OperationType operation) {
+		Object result = processOperation(getValue(), argument, operation);
+		if (operation == OperationType.NUMCOMPARE) {
+			return result instanceof Double ? (int) (double) (Double) result : (Integer) result;
 		}
-		return false;
+		setValue(result);
+		return 0;
+	}
+
+	/**
+	 * Checks if the object can be used in arithmetic operations.
+	 * 
+	 * @param object
+	 *            Object to be checked.
+	 * @return True if the object is an integer, a double, a string or null,
+	 *         false otherwise.
+	 */
+	private static boolean isSupported(Object object) {
+		return object instanceof Integer || object instanceof Double || object instanceof String || object == null;
 	}
 
 	/**
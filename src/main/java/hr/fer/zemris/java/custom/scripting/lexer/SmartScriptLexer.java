@@ -1,30 +1,169 @@
 package hr.fer.zemris.java.custom.scripting.lexer;
 
+import java.io.IOException;
+import java.io.Reader;
+
 /**
  * Class that represents the lexer that provides a lexical analysis based on a
- * given text. The class uses a character field to store each character from a
- * text, SmartScriptToken as a representation of each token that our language
- * accepts, integer that stores the currentIndex of an unanalyzed character and
- * state of the lexer. In the end parser takes the stored tokens from the Lexer
- * and creates a document body. The class should be optimized by adding more
- * methods that prevent code redundancy.
+ * given text. The text is read through a small buffer, either from a
+ * {@link CharSequence} or from a {@link Reader}, so the lexer never holds more
+ * than a window of the document besides the token it is building. Each call
+ * of {@link #nextToken()} reads a single token in one pass over its
+ * characters, and the state of the lexer tells whether the characters are text
+ * or the inside of a tag.
+ * <p>
+ * Characters are classified through a table for ASCII; other characters are
+ * letters or digits as told by {@link Character}. Inside a tag, names and
+ * numbers end at whitespace or at a <code>$</code>. Tokens without a value of
+ * their own, such as the tag delimiters, keywords and operators, are shared
+ * instances.
  * 
  * @author Dinz
  *
  */
 public class SmartScriptLexer {
+
 	/**
-	 * Character field that stores character from an input.
+	 * Size of the buffer the text is read into.
 	 */
-	private char[] data; // ulazni tekst
+	private static final int BUFFER_SIZE = 8192;
+
 	/**
-	 * Current analyzed token.
+	 * Class of the whitespace characters, which separate the elements of a tag.
+	 */
+	private static final byte WHITESPACE = 1;
+
+	/**
+	 * Class of the characters which can be a part of a name.
+	 */
+	private static final byte NAME = 2;
+
+	/**
+	 * Class of the digits.
+	 */
+	private static final byte DIGIT = 4;
+
+	/**
+	 * Class of the letters.
+	 */
+	private static final byte LETTER = 8;
+
+	/**
+	 * Class of the operators.
 	 */
-	private SmartScriptToken token; // trenutni token
+	private static final byte OPERATOR = 16;
+
 	/**
-	 * Index of a token next in line for analysis.
+	 * Classes of the ASCII characters.
 	 */
-	private int currentIndex; // indeks prvog neobrađenog znaka
+	private static final byte[] CLASSES = new byte[128];
+
+	static {
+		CLASSES[' '] = CLASSES['\t'] = CLASSES['\r'] = CLASSES['\n'] = WHITESPACE;
+		for (char c = '0'; c <= '9'; c++) {
+			CLASSES[c] = NAME | DIGIT;
+		}
+		for (char c = 'a'; c <= 'z'; c++) {
+			CLASSES[c] = NAME | LETTER;
+			CLASSES[Character.toUpperCase(c)] = NAME | LETTER;
+		}
+		CLASSES['_'] = NAME;
+		CLASSES['+'] = CLASSES['-'] = CLASSES['*'] = CLASSES['/'] = CLASSES['^'] = OPERATOR;
+	}
+
+	/**
+	 * Shared token which starts a tag.
+	 */
+	private static final SmartScriptToken START_TAG = new SmartScriptToken(SmartScriptTokenType.STARTTAG, "{$");
+
+	/**
+	 * Shared token which ends a tag.
+	 */
+	private static final SmartScriptToken END_TAG = new SmartScriptToken(SmartScriptTokenType.ENDTAG, "$}");
+
+	/**
+	 * Shared token of the FOR keyword.
+	 */
+	private static final SmartScriptToken FOR = new SmartScriptToken(SmartScriptTokenType.FOR, "FOR");
+
+	/**
+	 * Shared token of the END keyword.
+	 */
+	private static final SmartScriptToken END = new SmartScriptToken(SmartScriptTokenType.END, "END");
+
+	/**
+	 * Shared token of the echo tag name.
+	 */
+	private static final SmartScriptToken ECHO = new SmartScriptToken(SmartScriptTokenType.TAGNAME, "=");
+
+	/**
+	 * Shared token of the end of the text.
+	 */
+	private static final SmartScriptToken EOF = new SmartScriptToken(SmartScriptTokenType.EOF, null);
+
+	/**
+	 * Shared tokens of the operators, indexed by their characters.
+	 */
+	private static final SmartScriptToken[] OPERATORS = new SmartScriptToken[128];
+
+	static {
+		for (char c : new char[] { '+', '-', '*', '/', '^' }) {
+			OPERATORS[c] = new SmartScriptToken(SmartScriptTokenType.OPERATOR, Character.toString(c));
+		}
+	}
+
+	/**
+	 * Text which is read, null if the text is read from a reader.
+	 */
+	private final CharSequence text;
+
+	/**
+	 * Index of the first character of the text which wasn't read into the
+	 * buffer.
+	 */
+	private int textIndex;
+
+	/**
+	 * Reader the text is read from, null if the text is a character sequence.
+	 */
+	private final Reader reader;
+
+	/**
+	 * Buffer with the characters which were read and not yet analyzed.
+	 */
+	private final char[] buffer = new char[BUFFER_SIZE];
+
+	/**
+	 * Index of the first unanalyzed character in the buffer.
+	 */
+	private int position;
+
+	/**
+	 * Number of characters in the buffer.
+	 */
+	private int limit;
+
+	/**
+	 * Flag which notes that all the characters of the text were read into the
+	 * buffer.
+	 */
+	private boolean exhausted;
+
+	/**
+	 * Flag which notes that the EOF token was returned.
+	 */
+	private boolean finished;
+
+	/**
+	 * Builder of the token values, reused for every token.
+	 */
+	private final StringBuilder builder = new StringBuilder();
+
+	/**
+	 * Current analyzed token.
+	 */
+	private SmartScriptToken token;
+
 	/**
 	 * State of a lexer.
 	 */
@@ -35,220 +174,357 @@ public class SmartScriptLexer {
 	 * 
 	 * @param text
 	 *            Input text.
+	 * @throws IllegalArgumentException
+	 *             if the text is null.
 	 */
-	public SmartScriptLexer(String text) {
+	public SmartScriptLexer(CharSequence text) {
 		if (text == null) {
 			throw new IllegalArgumentException("String must not be null");
 		}
-		this.data = text.toCharArray();
+		this.text = text;
+		this.reader = null;
+		this.state = SmartScriptLexerState.TEXT;
+	}
+
+	/**
+	 * Constructs a new SmartScriptLexer that analyze the text read from the
+	 * reader. The reader is not closed by the lexer.
+	 * 
+	 * @param reader
+	 *            Reader of the input text.
+	 * @throws IllegalArgumentException
+	 *             if the reader is null.
+	 */
+	public SmartScriptLexer(Reader reader) {
+		if (reader == null) {
+			throw new IllegalArgumentException("Reader must not be null");
+		}
+		this.text = null;
+		this.reader = reader;
 		this.state = SmartScriptLexerState.TEXT;
 	}
 
 	/**
 	 * Method that processes the next token from a text. Key method of the class
-	 * which iterates the input characters, creates tokens and stores them for a
-	 * parser to process. Also switches the state of a lexer when it's needed.
-	 * Returns an analyzed token.
+	 * which reads the characters of a single token and switches the state of
+	 * the lexer when a tag starts or ends. Whitespace inside a tag is skipped.
 	 * 
 	 * @return Analyzed SmartScriptToken.
 	 * @throws SmartScriptLexerException
-	 *             if the input is invalid.
+	 *             if the input is invalid or can't be read.
 	 */
 	public SmartScriptToken nextToken() {
-		if (currentIndex > data.length) {
+		if (finished) {
 			throw new SmartScriptLexerException("No more tokens available.");
 		}
-		if (currentIndex == data.length) {
-			currentIndex++;
-			SmartScriptToken newToken = new SmartScriptToken(SmartScriptTokenType.EOF, null);
-			this.token = newToken;
-			return newToken;
+		while (true) {
+			int c = peek(0);
+			if (c < 0) {
+				finished = true;
+				return token = EOF;
+			}
+			if (c == '{' && peek(1) == '$') {
+				state = SmartScriptLexerState.TAG;
+			}
+			if (state == SmartScriptLexerState.TEXT) {
+				return token = readText();
+			}
+			if (isClass(c, WHITESPACE)) {
+				position++;
+				continue;
+			}
+			return token = readTagToken(c);
 		}
-		if (Character.toString(data[currentIndex]).equals("{")
-				&& Character.toString(data[currentIndex + 1]).equals("$")) {
-			state = SmartScriptLexerState.TAG;
+	}
+
+	/**
+	 * Method which reads a token inside a tag.
+	 * 
+	 * @param c
+	 *            First character of the token.
+	 * @return Read token.
+	 * @throws SmartScriptLexerException
+	 *             if the token is invalid.
+	 */
+	private SmartScriptToken readTagToken(int c) {
+		int next = peek(1);
+		if (c == '{' && next == '$') {
+			position += 2;
+			return START_TAG;
+		} else if (c == '$' && next == '}') {
+			position += 2;
+			state = SmartScriptLexerState.TEXT;
+			return END_TAG;
+		} else if (c == 'F' && next == 'O' && peek(2) == 'R') {
+			position += 3;
+			return FOR;
+		} else if (c == 'E' && next == 'N' && peek(2) == 'D') {
+			position += 3;
+			return END;
+		} else if (c == '=') {
+			position++;
+			return ECHO;
+		} else if (isClass(c, OPERATOR)) {
+			if (c == '-' && next >= 0 && isDigit(next)) {
+				return readNumber();
+			}
+			position++;
+			return OPERATORS[c];
+		} else if (c == '@') {
+			position++;
+			builder.setLength(0);
+			builder.append('@');
+			return new SmartScriptToken(SmartScriptTokenType.FUNCTION, readName("function"));
+		} else if (c == '"') {
+			return readString();
+		} else if (isDigit(c)) {
+			return readNumber();
+		} else if (isLetter(c)) {
+			builder.setLength(0);
+			return new SmartScriptToken(SmartScriptTokenType.VARIABLE, readName("variable"));
 		}
+		throw new SmartScriptLexerException("Invalid character '" + (char) c + "' in a tag.");
+	}
 
-		if (state == SmartScriptLexerState.TAG) {
-			if (Character.toString(data[currentIndex]).equals("{")
-					&& Character.toString(data[currentIndex + 1]).equals("$")) {
-				currentIndex += 2;
-				SmartScriptToken newToken = new SmartScriptToken(SmartScriptTokenType.STARTTAG, "{$");
-				this.token = newToken;
-				return newToken;
+	/**
+	 * Method which reads the text up to the next tag. A backslash followed by
+	 * <code>{</code> keeps both characters and the character after them in the
+	 * text, so they never start a tag.
+	 * 
+	 * @return Text token.
+	 */
+	private SmartScriptToken readText() {
+		builder.setLength(0);
+		while (true) {
+			int start = position;
+			while (position < limit && buffer[position] != '{' && buffer[position] != '\\') {
+				position++;
 			}
+			builder.append(buffer, start, position - start);
 
-			else if (Character.toString(data[currentIndex]).equals("$")
-					&& Character.toString(data[currentIndex + 1]).equals("}")) {
-				currentIndex += 2;
-				this.setState(SmartScriptLexerState.TEXT);
-				SmartScriptToken newToken = new SmartScriptToken(SmartScriptTokenType.ENDTAG, "$}");
-				this.token = newToken;
-				return newToken;
-			} else if ((currentIndex < data.length - 2) && Character.toString(data[currentIndex]).equals("F")
-					&& Character.toString(data[currentIndex + 1]).equals("O")
-					&& Character.toString(data[currentIndex + 2]).equals("R")) {
-				currentIndex += 3;
-				SmartScriptToken newToken = new SmartScriptToken(SmartScriptTokenType.FOR, "FOR");
-				this.token = newToken;
-				return newToken;
-
-			} else if ((currentIndex < data.length - 2) && Character.toString(data[currentIndex]).equals("E")
-					&& Character.toString(data[currentIndex + 1]).equals("N")
-					&& Character.toString(data[currentIndex + 2]).equals("D")) {
-				currentIndex += 3;
-				SmartScriptToken newToken = new SmartScriptToken(SmartScriptTokenType.END, "END");
-				this.token = newToken;
-				return newToken;
-			} else if (Character.toString(data[currentIndex]).equals("=")) {
-				currentIndex++;
-				SmartScriptToken newToken = new SmartScriptToken(SmartScriptTokenType.TAGNAME, "=");
-				this.token = newToken;
-				return newToken;
-			} else if (Character.toString(data[currentIndex]).equals("+")
-					|| Character.toString(data[currentIndex]).equals("-")
-					|| Character.toString(data[currentIndex]).equals("*")
-					|| Character.toString(data[currentIndex]).equals("/")
-					|| Character.toString(data[currentIndex]).equals("^")) {
-				if (Character.toString(data[currentIndex]).equals("-") && Character.isDigit(data[currentIndex + 1])) {
-					StringBuilder tokenBuilder = new StringBuilder();
-					tokenBuilder.append(data[currentIndex]);
-					currentIndex++;
-					while (!Character.toString(data[currentIndex]).equals(" ")) {
-						tokenBuilder.append(data[currentIndex]);
-						currentIndex++;
-					}
-					if (isInteger(tokenBuilder.toString())) {
-						SmartScriptToken newToken = new SmartScriptToken(SmartScriptTokenType.INTEGER,
-								Integer.parseInt(tokenBuilder.toString()));
-						this.token = newToken;
-						return newToken;
-					} else if (isDouble(tokenBuilder.toString())) {
-						SmartScriptToken newToken = new SmartScriptToken(SmartScriptTokenType.DOUBLE,
-								Double.parseDouble(tokenBuilder.toString()));
-						this.token = newToken;
-						return newToken;
-					} else {
-						throw new SmartScriptLexerException("Wrong number format");
-					}
-				} else {
-					SmartScriptToken newToken = new SmartScriptToken(SmartScriptTokenType.OPERATOR,
-							Character.toString(data[currentIndex]));
-					this.token = newToken;
-					currentIndex++;
-					return newToken;
+			int c = peek(0);
+			if (c < 0 || (c == '{' && peek(1) == '$')) {
+				break;
+			}
+			if (c == '\\' && peek(1) == '{') {
+				builder.append("\\{");
+				position += 2;
+				c = peek(0);
+				if (c < 0) {
+					break;
 				}
+			}
+			builder.append((char) c);
+			position++;
+		}
+		return new SmartScriptToken(SmartScriptTokenType.TEXT, builder.toString());
+	}
 
-			} else if (Character.toString(data[currentIndex]).equals("@")) {
-				StringBuilder tokenBuilder = new StringBuilder();
-				tokenBuilder.append(data[currentIndex]);
-				currentIndex++;
-				while (!Character.toString(data[currentIndex]).equals(" ") && !Character.toString(data[currentIndex]).equals("\r")) {
-					if (Character.isLetter(data[currentIndex]) || Character.isDigit(data[currentIndex])
-							|| Character.toString(data[currentIndex]).equals("_")) {
-						tokenBuilder.append(data[currentIndex]);
-						currentIndex++;
-					} else {
-						System.out.println(data[currentIndex-2]);
-						System.out.println(data[currentIndex-1]);
-						System.out.println(data[currentIndex]);
-						System.out.println(data[currentIndex+1]);
-						throw new SmartScriptLexerException();
-					}
-				}
-				SmartScriptToken newToken = new SmartScriptToken(SmartScriptTokenType.FUNCTION,
-						tokenBuilder.toString());
-				this.token = newToken;
-				return newToken;
-
-			} else if (Character.toString(data[currentIndex]).equals("\"")) { 
-				StringBuilder tokenBuilder = new StringBuilder();
-				tokenBuilder.append(data[currentIndex]);
-				currentIndex++;
-				while (!Character.toString(data[currentIndex]).equals("\"")) {
-					tokenBuilder.append(data[currentIndex]);
-					currentIndex++;
-				}
-				if (Character.toString(data[currentIndex]).equals("\"")) {
-					tokenBuilder.append(data[currentIndex]);
-					currentIndex++;
-				}
-				SmartScriptToken newToken = new SmartScriptToken(SmartScriptTokenType.STRING, tokenBuilder.toString().replaceAll("\"", "").replaceAll("\\\\r\\\\n", "\r\n"));
-				this.token = newToken;
-				return newToken;
-
-			} else if (Character.isDigit(data[currentIndex])) {
-				StringBuilder tokenBuilder = new StringBuilder();
-				while ((currentIndex < data.length) && !(Character.toString(data[currentIndex]).equals(" ")
-						|| Character.toString(data[currentIndex]).equals("$") || Character.toString(data[currentIndex]).equals("\n"))) {
-					tokenBuilder.append(data[currentIndex]);
-					currentIndex++;
-				}
-				if (isInteger(tokenBuilder.toString())) {
-					SmartScriptToken newToken = new SmartScriptToken(SmartScriptTokenType.INTEGER,
-							Integer.parseInt(tokenBuilder.toString()));
-					this.token = newToken;
-					return newToken;
-				} else if (isDouble(tokenBuilder.toString())) {
-					SmartScriptToken newToken = new SmartScriptToken(SmartScriptTokenType.DOUBLE,
-							Double.parseDouble(tokenBuilder.toString()));
-					this.token = newToken;
-					return newToken;
+	/**
+	 * Method which reads the rest of a function or a variable name into the
+	 * builder. The name ends at whitespace, at a <code>$</code> or at the end
+	 * of the text.
+	 * 
+	 * @param kind
+	 *            Kind of the name, used in the message of the exception.
+	 * @return The name.
+	 * @throws SmartScriptLexerException
+	 *             if the name contains a character which is not a letter, a
+	 *             digit or an underscore.
+	 */
+	private String readName(String kind) {
+		while (true) {
+			int c = peek(0);
+			if (c < 0 || c == '$' || isClass(c, WHITESPACE)) {
+				return builder.toString();
+			}
+			if (!isNamePart(c)) {
+				throw new SmartScriptLexerException("Invalid character '" + (char) c + "' in a " + kind + " name.");
+			}
+			builder.append((char) c);
+			position++;
+		}
+	}
+
+	/**
+	 * Method which reads a number, which ends at whitespace, at a
+	 * <code>$</code> or at the end of the text. The number is an integer if
+	 * {@link Integer#parseInt(String)} accepts it and a double if
+	 * {@link Double#parseDouble(String)} does.
+	 * 
+	 * @return Integer or double token.
+	 * @throws SmartScriptLexerException
+	 *             if the number is in a wrong format.
+	 */
+	private SmartScriptToken readNumber() {
+		builder.setLength(0);
+		boolean plain = true;
+		while (true) {
+			int c = peek(0);
+			if (c < 0 || c == '$' || isClass(c, WHITESPACE)) {
+				break;
+			}
+			if (!isDigit(c) && !(c == '-' && builder.length() == 0)) {
+				plain = false;
+			}
+			builder.append((char) c);
+			position++;
+		}
+		String number = builder.toString();
+		if (plain) {
+			try {
+				return new SmartScriptToken(SmartScriptTokenType.INTEGER, Integer.parseInt(number));
+			} catch (NumberFormatException e) {
+				// too large for an integer
+			}
+		}
+		try {
+			return new SmartScriptToken(SmartScriptTokenType.DOUBLE, Double.parseDouble(number));
+		} catch (NumberFormatException e) {
+			throw new SmartScriptLexerException("Wrong number format");
+		}
+	}
+
+	/**
+	 * Method which reads a string up to the closing quote. The sequence
+	 * <code>\r\n</code> in the string is turned into a line break.
+	 * 
+	 * @return String token.
+	 * @throws SmartScriptLexerException
+	 *             if the string is not closed.
+	 */
+	private SmartScriptToken readString() {
+		position++;
+		builder.setLength(0);
+		while (true) {
+			int c = peek(0);
+			if (c < 0) {
+				throw new SmartScriptLexerException("String is not closed.");
+			}
+			position++;
+			if (c == '"') {
+				break;
+			}
+			builder.append((char) c);
+		}
+		String value = builder.toString();
+		if (value.indexOf('\\') >= 0) {
+			value = value.replace("\\r\\n", "\r\n");
+		}
+		return new SmartScriptToken(SmartScriptTokenType.STRING, value);
+	}
+
+	/**
+	 * Gets the character at the given offset from the first unanalyzed
+	 * character, reading more of the text if needed.
+	 * 
+	 * @param offset
+	 *            Offset of the character.
+	 * @return The character, or -1 if the text ends before it.
+	 * @throws SmartScriptLexerException
+	 *             if the text can't be read.
+	 */
+	private int peek(int offset) {
+		if (position + offset >= limit && !fill(offset)) {
+			return -1;
+		}
+		return buffer[position + offset];
+	}
+
+	/**
+	 * Method which reads more of the text into the buffer, after moving the
+	 * unanalyzed characters to its start.
+	 * 
+	 * @param offset
+	 *            Offset of the character which is needed.
+	 * @return True if the buffer holds the needed character, false if the text
+	 *         ends before it.
+	 * @throws SmartScriptLexerException
+	 *             if the text can't be read.
+	 */
+	private boolean fill(int offset) {
+		if (position > 0) {
+			System.arraycopy(buffer, position, buffer, 0, limit - position);
+			limit -= position;
+			position = 0;
+		}
+		while (limit <= offset && !exhausted) {
+			int space = buffer.length - limit;
+			if (text != null) {
+				int count = Math.min(space, text.length() - textIndex);
+				if (count == 0) {
+					exhausted = true;
+				} else if (text instanceof String) {
+					((String) text).getChars(textIndex, textIndex + count, buffer, limit);
 				} else {
-					throw new SmartScriptLexerException("Wrong number format");
+					for (int i = 0; i < count; i++) {
+						buffer[limit + i] = text.charAt(textIndex + i);
+					}
 				}
-
-			} else if (Character.isLetter(data[currentIndex])) {
-				StringBuilder tokenBuilder = new StringBuilder();
-				while (!(Character.toString(data[currentIndex]).equals(" ")
-						|| Character.toString(data[currentIndex]).equals("$"))) {
-					if (Character.isLetter(data[currentIndex]) || Character.isDigit(data[currentIndex])
-							|| Character.toString(data[currentIndex]).equals("_")) {
-						tokenBuilder.append(data[currentIndex]);
-						currentIndex++;
+				textIndex += count;
+				limit += count;
+			} else {
+				try {
+					int count = reader.read(buffer, limit, space);
+					if (count < 0) {
+						exhausted = true;
 					} else {
-						throw new SmartScriptLexerException();
+						limit += count;
 					}
+				} catch (IOException e) {
+					throw new SmartScriptLexerException("Unable to read the text.", e);
 				}
-				SmartScriptToken newToken = new SmartScriptToken(SmartScriptTokenType.VARIABLE,
-						tokenBuilder.toString());
-				this.token = newToken;
-				return newToken;
-			} else if (Character.toString(data[currentIndex]).equals(" ")
-					|| Character.toString(data[currentIndex]).equals("\r")
-					|| Character.toString(data[currentIndex]).equals("\n")
-					|| Character.toString(data[currentIndex]).equals("\t")) {
-				currentIndex++;
-				return this.nextToken();
-			} else {
-				throw new SmartScriptLexerException();
 			}
-
 		}
+		return position + offset < limit;
+	}
 
-		else {
-			StringBuilder textBuilder = new StringBuilder();
-			while ((currentIndex < data.length)
-					&& !((currentIndex < (data.length - 1)) && Character.toString(data[currentIndex]).equals("{")
-							&& Character.toString(data[currentIndex + 1]).equals("$"))) {
-				if ((currentIndex < data.length - 1) && Character.toString(data[currentIndex]).equals("\\")
-						&& Character.toString(data[currentIndex + 1]).equals("{")) {
-					textBuilder.append(data[currentIndex]);
-					currentIndex++;
-					textBuilder.append(data[currentIndex]);
-					currentIndex++;
-				}
-
-				textBuilder.append(data[currentIndex]);
-				currentIndex++;
-			}
+	/**
+	 * Checks if the character belongs to the class. Only ASCII characters have
+	 * a class.
+	 * 
+	 * @param c
+	 *            The character.
+	 * @param characterClass
+	 *            The class.
+	 * @return True if the character belongs to the class, false otherwise.
+	 */
+	private static boolean isClass(int c, byte characterClass) {
+		return c < CLASSES.length && (CLASSES[c] & characterClass) != 0;
+	}
 
-			SmartScriptToken newToken = new SmartScriptToken(SmartScriptTokenType.TEXT, textBuilder.toString());
-			this.token = newToken;
-			return newToken;
+	/**
+	 * Checks if the character is a digit.
+	 * 
+	 * @param c
+	 *            The character.
+	 * @return True if the character is a digit, false otherwise.
+	 */
+	private static boolean isDigit(int c) {
+		return c < CLASSES.length ? (CLASSES[c] & DIGIT) != 0 : Character.isDigit(c);
+	}
 
-		}
+	/**
+	 * Checks if the character is a letter.
+	 * 
+	 * @param c
+	 *            The character.
+	 * @return True if the character is a letter, false otherwise.
+	 */
+	private static boolean isLetter(int c) {
+		return c < CLASSES.length ? (CLASSES[c] & LETTER) != 0 : Character.isLetter(c);
+	}
 
+	/**
+	 * Checks if the character can be a part of a name: a letter, a digit or an
+	 * underscore.
+	 * 
+	 * @param c
+	 *            The character.
+	 * @return True if the character can be a part of a name, false otherwise.
+	 */
+	private static boolean isNamePart(int c) {
+		return c < CLASSES.length ? (CLASSES[c] & NAME) != 0 : Character.isLetterOrDigit(c);
 	}
 
 	/**
@@ -0,0 +1,69 @@
+package hr.fer.zemris.java.custom.scripting.lexer;
+
+import java.util.Locale;
+
+/**
+ * Class that measures the throughput of the SmartScriptLexer on a generated
+ * document which mixes text, echo tags with every kind of element and loops.
+ * 
+ * @author Dinz
+ *
+ */
+public class SmartScriptLexerBenchmark {
+
+	/**
+	 * Number of times the document is repeated.
+	 */
+	private static final int REPETITIONS = 20_000;
+
+	/**
+	 * Number of measured passes over the document.
+	 */
+	private static final int PASSES = 20;
+
+	/**
+	 * Method that executes the class.
+	 * 
+	 * @param args
+	 *            Arguments from the command line, not used.
+	 */
+	public static void main(String[] args) {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < REPETITIONS; i++) {
+			sb.append("<p>Row ").append(i).append(" of the table, with some text around the tags.</p>\r\n");
+			sb.append("{$= \"a=\" \"a\" 0 @paramGet \", b=\" \"b\" 0 @paramGet \" sum=\" \"a\" 0 @paramGet ");
+			sb.append("\"b\" 0 @paramGet + $}\r\n");
+			sb.append("{$ FOR i -1 10.5 2 $}{$= i i * @sin \"0.000\" @decfmt $}\\{ {$END$}\r\n");
+		}
+		String document = sb.toString();
+
+		// warm-up, so the measured passes run compiled code
+		for (int i = 0; i < 5; i++) {
+			lex(document);
+		}
+		long tokens = 0;
+		long start = System.nanoTime();
+		for (int i = 0; i < PASSES; i++) {
+			tokens += lex(document);
+		}
+		double seconds = (System.nanoTime() - start) / 1e9;
+		System.out.println(String.format(Locale.ROOT, "%.1f million characters/s, %.1f million tokens/s",
+				document.length() * (double) PASSES / seconds / 1e6, tokens / seconds / 1e6));
+	}
+
+	/**
+	 * Method which reads all the tokens of the document.
+	 * 
+	 * @param document
+	 *            Document to be read.
+	 * @return Number of tokens.
+	 */
+	private static int lex(String document) {
+		SmartScriptLexer lexer = new SmartScriptLexer(document);
+		int count = 0;
+		while (lexer.nextToken().getType() != SmartScriptTokenType.EOF) {
+			count++;
+		}
+		return count;
+	}
+}
@@ -27,4 +27,17 @@ public class SmartScriptLexerException extends RuntimeException {
 	public SmartScriptLexerException(String message) {
 		super(message);
 	}
+
+	/**
+	 * Constructs a new SmartScriptLexerException with an appropriate message and
+	 * the exception which caused it.
+	 * 
+	 * @param message
+	 *            Message of the exception.
+	 * @param cause
+	 *            Cause of the exception.
+	 */
+	public SmartScriptLexerException(String message, Throwable cause) {
+		super(message, cause);
+	}
 }
@@ -0,0 +1,615 @@
+package hr.fer.zemris.java.custom.scripting.nodes;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import hr.fer.zemris.java.custom.scripting.elems.Element;
+import hr.fer.zemris.java.custom.scripting.elems.ElementConstantDouble;
+import hr.fer.zemris.java.custom.scripting.elems.ElementConstantInteger;
+import hr.fer.zemris.java.custom.scripting.elems.ElementFunction;
+import hr.fer.zemris.java.custom.scripting.elems.ElementOperator;
+import hr.fer.zemris.java.custom.scripting.elems.ElementString;
+import hr.fer.zemris.java.custom.scripting.elems.ElementVariable;
+
+/**
+ * Class that represents an immutable parsed document stored in a few flat
+ * arrays instead of a tree of objects. The nodes are stored level by level, so
+ * the children of every node occupy a continuous range; every node takes
+ * {@value #NODE_SIZE} ints and every element two, while the texts, names and
+ * decimal constants are kept in pools, with equal strings stored once.
+ * <p>
+ * The document is read through {@link #getDocumentNode()} or
+ * {@link #accept(INodeVisitor)}, which give the visitors nodes created on
+ * demand from the arrays, so every {@link INodeVisitor} works with it as with
+ * a tree made by the parser. The nodes which are given can't be changed.
+ * <p>
+ * Since the document is only arrays, it is written to a stream by
+ * {@link #writeTo(DataOutput)} as the arrays themselves and read back from a
+ * buffer by {@link #readFrom(ByteBuffer)}.
+ * 
+ * @author Dinz
+ *
+ */
+public final class CompactDocument {
+
+	/**
+	 * Kind of the document node.
+	 */
+	private static final int DOCUMENT = 0;
+	/**
+	 * Kind of the text node.
+	 */
+	private static final int TEXT = 1;
+	/**
+	 * Kind of the echo node.
+	 */
+	private static final int ECHO = 2;
+	/**
+	 * Kind of the for loop node.
+	 */
+	private static final int FOR = 3;
+
+	/**
+	 * Kind of the variable element.
+	 */
+	private static final int VARIABLE = 0;
+	/**
+	 * Kind of the integer constant element.
+	 */
+	private static final int INTEGER = 1;
+	/**
+	 * Kind of the decimal constant element.
+	 */
+	private static final int DOUBLE = 2;
+	/**
+	 * Kind of the string element.
+	 */
+	private static final int STRING = 3;
+	/**
+	 * Kind of the function element.
+	 */
+	private static final int FUNCTION = 4;
+	/**
+	 * Kind of the operator element.
+	 */
+	private static final int OPERATOR = 5;
+
+	/**
+	 * Number of ints of a node: the kind, the index of the first child, the
+	 * number of children, the index of the first element (or of the text) and
+	 * the number of elements.
+	 */
+	private static final int NODE_SIZE = 5;
+
+	/**
+	 * Nodes of the document, the document node first.
+	 */
+	private final int[] nodes;
+	/**
+	 * Elements of the nodes, each one a kind and a value: the integer, or the
+	 * index in the pool of the strings or of the decimals.
+	 */
+	private final int[] elements;
+	/**
+	 * Pool of the texts, names, strings, functions and operators.
+	 */
+	private final String[] strings;
+	/**
+	 * Pool of the decimal constants.
+	 */
+	private final double[] doubles;
+
+	/**
+	 * Constructs a new compact document.
+	 * 
+	 * @param nodes
+	 *            Nodes of the document.
+	 * @param elements
+	 *            Elements of the nodes.
+	 * @param strings
+	 *            Pool of the strings.
+	 * @param doubles
+	 *            Pool of the decimal constants.
+	 */
+	private CompactDocument(int[] nodes, int[] elements, String[] strings, double[] doubles) {
+		this.nodes = nodes;
+		this.elements = elements;
+		this.strings = strings;
+		this.doubles = doubles;
+	}
+
+	/**
+	 * Method which creates the compact form of the document.
+	 * 
+	 * @param document
+	 *            Document node made by the parser.
+	 * @return Compact document.
+	 * @throws IllegalArgumentException
+	 *             If the document is null or contains an unknown node or
+	 *             element.
+	 */
+	public static CompactDocument of(DocumentNode document) {
+		if (document == null) {
+			throw new IllegalArgumentException("Document can't be null.");
+		}
+		// the order of the nodes, in which the children of a node follow each other
+		List<Node> order = new ArrayList<>();
+		order.add(document);
+		int elementCount = 0;
+		for (int i = 0; i < order.size(); i++) {
+			Node node = order.get(i);
+			for (int j = 0; j < node.numberOfChildren(); j++) {
+				order.add(node.getChild(j));
+			}
+			if (node instanceof EchoNode) {
+				elementCount += ((EchoNode) node).getElements().length;
+			} else if (node instanceof ForLoopNode) {
+				elementCount += ((ForLoopNode) node).getStepExpression() == null ? 3 : 4;
+			}
+		}
+
+		int[] nodes = new int[order.size() * NODE_SIZE];
+		int[] elements = new int[elementCount * 2];
+		Map<String, Integer> stringIndices = new HashMap<>();
+		List<String> strings = new ArrayList<>();
+		List<Double> doubles = new ArrayList<>();
+		int nextChild = 1;
+		int nextElement = 0;
+		for (int i = 0; i < order.size(); i++) {
+			Node node = order.get(i);
+			int base = i * NODE_SIZE;
+			nodes[base + 1] = nextChild;
+			nodes[base + 2] = node.numberOfChildren();
+			nextChild += node.numberOfChildren();
+
+			Element[] nodeElements;
+			if (node instanceof TextNode) {
+				nodes[base] = TEXT;
+				nodes[base + 3] = pool(((TextNode) node).getText(), stringIndices, strings);
+				continue;
+			} else if (node instanceof EchoNode) {
+				nodes[base] = ECHO;
+				nodeElements = ((EchoNode) node).getElements();
+			} else if (node instanceof ForLoopNode) {
+				nodes[base] = FOR;
+				ForLoopNode forLoop = (ForLoopNode) node;
+				nodeElements = forLoop.getStepExpression() == null
+						? new Element[] { forLoop.getVariable(), forLoop.getStartExpression(),
+								forLoop.getEndExpression() }
+						: new Element[] { forLoop.getVariable(), forLoop.getStartExpression(),
+								forLoop.getEndExpression(), forLoop.getStepExpression() };
+			} else if (node instanceof DocumentNode) {
+				nodes[base] = DOCUMENT;
+				continue;
+			} else {
+				throw new IllegalArgumentException("Unknown node " + node.getClass().getName() + ".");
+			}
+			nodes[base + 3] = nextElement;
+			nodes[base + 4] = nodeElements.length;
+			for (Element element : nodeElements) {
+				int index = nextElement * 2;
+				if (element instanceof ElementVariable) {
+					elements[index] = VARIABLE;
+					elements[index + 1] = pool(((ElementVariable) element).getName(), stringIndices, strings);
+				} else if (element instanceof ElementConstantInteger) {
+					elements[index] = INTEGER;
+					elements[index + 1] = ((ElementConstantInteger) element).getValue();
+				} else if (element instanceof ElementConstantDouble) {
+					elements[index] = DOUBLE;
+					elements[index + 1] = doubles.size();
+					doubles.add(((ElementConstantDouble) element).getValue());
+				} else if (element instanceof ElementString) {
+					elements[index] = STRING;
+					elements[index + 1] = pool(((ElementString) element).getValue(), stringIndices, strings);
+				} else if (element instanceof ElementFunction) {
+					elements[index] = FUNCTION;
+					elements[index + 1] = pool(((ElementFunction) element).getName(), stringIndices, strings);
+				} else if (element instanceof ElementOperator) {
+					elements[index] = OPERATOR;
+					elements[index + 1] = pool(((ElementOperator) element).getSymbol(), stringIndices, strings);
+				} else {
+					throw new IllegalArgumentException("Unknown element "
+							+ (element == null ? "null" : element.getClass().getName()) + ".");
+				}
+				nextElement++;
+			}
+		}
+
+		double[] doubleArray = new double[doubles.size()];
+		for (int i = 0; i < doubleArray.length; i++) {
+			doubleArray[i] = doubles.get(i);
+		}
+		return new CompactDocument(nodes, elements, strings.toArray(new String[strings.size()]), doubleArray);
+	}
+
+	/**
+	 * Method which gets the index of the string in the pool, adding it if it
+	 * isn't there.
+	 * 
+	 * @param value
+	 *            String to be found.
+	 * @param indices
+	 *            Indices of the strings in the pool.
+	 * @param pool
+	 *            Pool of the strings.
+	 * @return Index of the string.
+	 */
+	private static int pool(String value, Map<String, Integer> indices, List<String> pool) {
+		Integer index = indices.get(value);
+		if (index == null) {
+			index = pool.size();
+			indices.put(value, index);
+			pool.add(value);
+		}
+		return index;
+	}
+
+	/**
+	 * Method which writes the document to the output: every array as its
+	 * length followed by its values, and the strings in UTF-8.
+	 * 
+	 * @param output
+	 *            Output the document is written to.
+	 * @throws IOException
+	 *             If the document can't be written.
+	 */
+	public void writeTo(DataOutput output) throws IOException {
+		writeInts(output, nodes);
+		writeInts(output, elements);
+		output.writeInt(strings.length);
+		for (String string : strings) {
+			byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+			output.writeInt(bytes.length);
+			output.write(bytes);
+		}
+		output.writeInt(doubles.length);
+		for (double value : doubles) {
+			output.writeDouble(value);
+		}
+	}
+
+	/**
+	 * Method which reads a document written by {@link #writeTo(DataOutput)}
+	 * from the buffer, starting at its position. The document is checked, so a
+	 * damaged one is rejected instead of giving wrong nodes.
+	 * 
+	 * @param buffer
+	 *            Buffer the document is read from.
+	 * @return Read document.
+	 * @throws IllegalArgumentException
+	 *             If the buffer doesn't contain a valid document.
+	 */
+	public static CompactDocument readFrom(ByteBuffer buffer) {
+		CompactDocument document;
+		try {
+			int[] nodes = readInts(buffer);
+			int[] elements = readInts(buffer);
+			String[] strings = new String[readLength(buffer, 4)];
+			for (int i = 0; i < strings.length; i++) {
+				byte[] bytes = new byte[readLength(buffer, 1)];
+				buffer.get(bytes);
+				strings[i] = new String(bytes, StandardCharsets.UTF_8);
+			}
+			double[] doubles = new double[readLength(buffer, 8)];
+			for (int i = 0; i < doubles.length; i++) {
+				doubles[i] = buffer.getDouble();
+			}
+			document = new CompactDocument(nodes, elements, strings, doubles);
+		} catch (BufferUnderflowException e) {
+			throw new IllegalArgumentException("Document is truncated.", e);
+		}
+		document.check();
+		return document;
+	}
+
+	/**
+	 * Method which writes the array as its length followed by its values.
+	 * 
+	 * @param output
+	 *            Output the array is written to.
+	 * @param values
+	 *            Array to be written.
+	 * @throws IOException
+	 *             If the array can't be written.
+	 */
+	private static void writeInts(DataOutput output, int[] values) throws IOException {
+		output.writeInt(values.length);
+		for (int value : values) {
+			output.writeInt(value);
+		}
+	}
+
+	/**
+	 * Method which reads an array written by
+	 * {@link #writeInts(DataOutput, int[])}.
+	 * 
+	 * @param buffer
+	 *            Buffer the array is read from.
+	 * @return Read array.
+	 */
+	private static int[] readInts(ByteBuffer buffer) {
+		int[] values = new int[readLength(buffer, 4)];
+		buffer.asIntBuffer().get(values);
+		buffer.position(buffer.position() + values.length * 4);
+		return values;
+	}
+
+	/**
+	 * Method which reads the length of an array and checks that the buffer can
+	 * hold it.
+	 * 
+	 * @param buffer
+	 *            Buffer the length is read from.
+	 * @param size
+	 *            Number of bytes of a value of the array.
+	 * @return Read length.
+	 * @throws IllegalArgumentException
+	 *             If the length is invalid.
+	 */
+	private static int readLength(ByteBuffer buffer, int size) {
+		int length = buffer.getInt();
+		if (length < 0 || (long) length * size > buffer.remaining()) {
+			throw new IllegalArgumentException("Invalid length " + length + ".");
+		}
+		return length;
+	}
+
+	/**
+	 * Method which checks that the arrays form a valid document: the document
+	 * node comes first, the children of every node come after it and every
+	 * index points into its array.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             If the document is invalid.
+	 */
+	private void check() {
+		int count = nodes.length / NODE_SIZE;
+		if (count == 0 || nodes.length % NODE_SIZE != 0 || nodes[0] != DOCUMENT || elements.length % 2 != 0) {
+			throw new IllegalArgumentException("Invalid document.");
+		}
+		for (int node = 0; node < count; node++) {
+			int base = node * NODE_SIZE;
+			int kind = nodes[base];
+			int firstChild = nodes[base + 1];
+			int children = nodes[base + 2];
+			boolean parent = kind == DOCUMENT || kind == FOR;
+			if (kind < DOCUMENT || kind > FOR || (node > 0 && kind == DOCUMENT) || firstChild <= node || children < 0
+					|| children > count - firstChild || (!parent && children != 0)) {
+				throw new IllegalArgumentException("Invalid node " + node + ".");
+			}
+			if (kind == TEXT) {
+				checkIndex(nodes[base + 3], strings.length);
+			} else if (kind == ECHO || kind == FOR) {
+				int first = nodes[base + 3];
+				int length = nodes[base + 4];
+				if (first < 0 || length < 0 || length > elements.length / 2 - first
+						|| (kind == FOR && (length < 3 || length > 4 || elements[first * 2] != VARIABLE))) {
+					throw new IllegalArgumentException("Invalid elements of node " + node + ".");
+				}
+			}
+		}
+		for (int element = 0; element < elements.length / 2; element++) {
+			int kind = elements[element * 2];
+			int value = elements[element * 2 + 1];
+			if (kind < VARIABLE || kind > OPERATOR) {
+				throw new IllegalArgumentException("Invalid element " + element + ".");
+			} else if (kind == DOUBLE) {
+				checkIndex(value, doubles.length);
+			} else if (kind != INTEGER) {
+				checkIndex(value, strings.length);
+			}
+		}
+	}
+
+	/**
+	 * Method which checks that the index points into an array.
+	 * 
+	 * @param index
+	 *            Index to be checked.
+	 * @param length
+	 *            Length of the array.
+	 * @throws IllegalArgumentException
+	 *             If the index is out of the array.
+	 */
+	private static void checkIndex(int index, int length) {
+		if (index < 0 || index >= length) {
+			throw new IllegalArgumentException("Invalid index " + index + ".");
+		}
+	}
+
+	/**
+	 * Gets the number of nodes of the document, including the document node.
+	 * 
+	 * @return Number of nodes.
+	 */
+	public int numberOfNodes() {
+		return nodes.length / NODE_SIZE;
+	}
+
+	/**
+	 * Gets the document node, whose children are created from the arrays when
+	 * they are asked for.
+	 * 
+	 * @return Document node which can't be changed.
+	 */
+	public DocumentNode getDocumentNode() {
+		return new CompactDocumentNode(this);
+	}
+
+	/**
+	 * Method which visits the document node with the visitor.
+	 * 
+	 * @param visitor
+	 *            Visitor of the nodes.
+	 */
+	public void accept(INodeVisitor visitor) {
+		getDocumentNode().accept(visitor);
+	}
+
+	/**
+	 * Method which creates the node with the given index.
+	 * 
+	 * @param node
+	 *            Index of the node.
+	 * @return Created node.
+	 */
+	private Node node(int node) {
+		int base = node * NODE_SIZE;
+		switch (nodes[base]) {
+		case TEXT:
+			return new TextNode(strings[nodes[base + 3]]);
+		case ECHO:
+			Element[] echoElements = new Element[nodes[base + 4]];
+			for (int i = 0; i < echoElements.length; i++) {
+				echoElements[i] = element(nodes[base + 3] + i);
+			}
+			return new EchoNode(echoElements);
+		case FOR:
+			return new CompactForLoopNode(this, node);
+		default:
+			return new CompactDocumentNode(this);
+		}
+	}
+
+	/**
+	 * Method which creates the element with the given index.
+	 * 
+	 * @param element
+	 *            Index of the element.
+	 * @return Created element.
+	 */
+	private Element element(int element) {
+		int value = elements[element * 2 + 1];
+		switch (elements[element * 2]) {
+		case VARIABLE:
+			return new ElementVariable(strings[value]);
+		case INTEGER:
+			return new ElementConstantInteger(value);
+		case DOUBLE:
+			return new ElementConstantDouble(doubles[value]);
+		case STRING:
+			return new ElementString(strings[value]);
+		case FUNCTION:
+			return new ElementFunction(strings[value]);
+		default:
+			return new ElementOperator(strings[value]);
+		}
+	}
+
+	/**
+	 * Method which creates the child of the node.
+	 * 
+	 * @param node
+	 *            Index of the node.
+	 * @param index
+	 *            Index of the child.
+	 * @return Created child.
+	 * @throws IllegalArgumentException
+	 *             If the index is invalid.
+	 */
+	private Node child(int node, int index) {
+		if (index >= nodes[node * NODE_SIZE + 2] || index < 0) {
+			throw new IllegalArgumentException("Invalid index.");
+		}
+		return node(nodes[node * NODE_SIZE + 1] + index);
+	}
+
+	/**
+	 * Class that represents the document node of a compact document.
+	 * 
+	 * @author Dinz
+	 *
+	 */
+	private static final class CompactDocumentNode extends DocumentNode {
+
+		/**
+		 * Document the node belongs to.
+		 */
+		private final CompactDocument document;
+
+		/**
+		 * Constructs a new document node.
+		 * 
+		 * @param document
+		 *            Document the node belongs to.
+		 */
+		CompactDocumentNode(CompactDocument document) {
+			this.document = document;
+		}
+
+		@Override
+		public void addChildNode(Node child) {
+			throw new UnsupportedOperationException("Compact document can't be changed.");
+		}
+
+		@Override
+		public int numberOfChildren() {
+			return document.nodes[2];
+		}
+
+		@Override
+		public Node getChild(int index) {
+			return document.child(0, index);
+		}
+	}
+
+	/**
+	 * Class that represents a for loop node of a compact document.
+	 * 
+	 * @author Dinz
+	 *
+	 */
+	private static final class CompactForLoopNode extends ForLoopNode {
+
+		/**
+		 * Document the node belongs to.
+		 */
+		private final CompactDocument document;
+
+		/**
+		 * Index of the node.
+		 */
+		private final int node;
+
+		/**
+		 * Constructs a new for loop node.
+		 * 
+		 * @param document
+		 *            Document the node belongs to.
+		 * @param node
+		 *            Index of the node.
+		 */
+		CompactForLoopNode(CompactDocument document, int node) {
+			super((ElementVariable) document.element(document.nodes[node * NODE_SIZE + 3]),
+					document.element(document.nodes[node * NODE_SIZE + 3] + 1),
+					document.element(document.nodes[node * NODE_SIZE + 3] + 2));
+			if (document.nodes[node * NODE_SIZE + 4] == 4) {
+				stepExpression = document.element(document.nodes[node * NODE_SIZE + 3] + 3);
+			}
+			this.document = document;
+			this.node = node;
+		}
+
+		@Override
+		public void addChildNode(Node child) {
+			throw new UnsupportedOperationException("Compact document can't be changed.");
+		}
+
+		@Override
+		public int numberOfChildren() {
+			return document.nodes[node * NODE_SIZE + 2];
+		}
+
+		@Override
+		public Node getChild(int index) {
+			return document.child(node, index);
+		}
+	}
+}
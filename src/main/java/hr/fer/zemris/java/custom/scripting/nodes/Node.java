@@ -6,7 +6,9 @@ import hr.fer.zemris.java.custom.collections.ArrayIndexedCollection;
  * Class that represents a general node which is used by a parser. It uses an
  * ArrayIndexedCollection as a tool to store nodes that construct it, called
  * childNodes. This class is a base for DocumentNode, EchoNode, ForLoopNode and
- * TextNode.
+ * TextNode. Once the parser has built the tree, nothing modifies it anymore, so
+ * a parsed tree can be shared between threads and executed by many engines at
+ * the same time.
  * 
  * @author Dinz
  *
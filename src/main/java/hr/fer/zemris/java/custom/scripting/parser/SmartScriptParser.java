@@ -1,6 +1,8 @@
 package hr.fer.zemris.java.custom.scripting.parser;
 
-import hr.fer.zemris.java.custom.collections.ArrayIndexedCollection;
+import java.io.Reader;
+import java.util.Arrays;
+
 import hr.fer.zemris.java.custom.collections.ObjectStack;
 import hr.fer.zemris.java.custom.scripting.elems.Element;
 import hr.fer.zemris.java.custom.scripting.elems.ElementConstantDouble;
@@ -22,12 +24,17 @@ import hr.fer.zemris.java.custom.scripting.nodes.TextNode;
  * Class that represents a parser. Parser receives a document in string format,
  * does a lexical analysis using the Lexer class and then builds a Node tree
  * based on the tokens received. Then it can be used to create an original
- * document body. 
+ * document body. The tokens are taken from the lexer one at a time, and the
+ * tree is built in the same pass.
  * 
  * @author Dinz
  *
  */
 public class SmartScriptParser {
+	/**
+	 * Initial capacity of the buffer for the elements of an echo tag.
+	 */
+	private static final int INITIAL_ELEMENTS = 16;
 	/**
 	 * Lexer used in a parser.
 	 */
@@ -36,6 +43,15 @@ public class SmartScriptParser {
 	 * Document node that is at the top of the tree.
 	 */
 	private DocumentNode documentNode;
+	/**
+	 * Current token, the one after the last consumed token.
+	 */
+	private SmartScriptToken current;
+	/**
+	 * Buffer for the elements of the echo tag being parsed, reused for every
+	 * tag.
+	 */
+	private Element[] elements = new Element[INITIAL_ELEMENTS];
 
 	/**
 	 * Constructs a new Parser from a document and analyzes the document by running
@@ -52,158 +68,197 @@ public class SmartScriptParser {
 		this.parse();
 	}
 
+	/**
+	 * Constructs a new Parser which reads the document from the reader and
+	 * analyzes it by running it in SmartScriptLexer. The reader is not closed.
+	 * 
+	 * @param reader
+	 *            Reader of the document to parse.
+	 */
+	public SmartScriptParser(Reader reader) {
+		if (reader == null) {
+			throw new NullPointerException("Reader must not be null!");
+		}
+		lexer = new SmartScriptLexer(reader);
+		this.parse();
+	}
+
 	/**
 	 * Method that parses the tokens given by a lexer. This is the key method of the
-	 * class where most of the work is done. The method checks if the given
-	 * operation expression are in valid format - precisely ForLoopNodes. Firstly,
-	 * the method stores the token inside an ArrayIndexedCollection and processes it
-	 * further. The method adds child nodes to the beggining documentNode and forms
-	 * a node-tree.
+	 * class where most of the work is done. The method takes the tokens from
+	 * the lexer one by one and adds the nodes to the node on the top of the
+	 * stack, which starts with the documentNode; a ForLoopNode stays on the
+	 * stack until its END tag, so a node-tree is formed in a single pass. An
+	 * END tag which closes the document is accepted only at its end.
 	 * 
 	 * @throws SmartScriptParserException
-	 *             If the expression is in invalid format.
+	 *             If the document is in invalid format.
 	 */
 	public void parse() {
 		ObjectStack stack = new ObjectStack();
 		this.documentNode = new DocumentNode();
 		stack.push(documentNode);
 
-		ArrayIndexedCollection tokens = new ArrayIndexedCollection();
-		do {
-			SmartScriptToken actual = lexer.nextToken();
-			if (actual.getType() == SmartScriptTokenType.EOF) {
-				break;
+		advance();
+		while (current.getType() != SmartScriptTokenType.EOF) {
+			if (stack.isEmpty()) {
+				throw new SmartScriptParserException("Unable to parse, END tag without an open FOR loop.");
 			}
-			tokens.add(actual);
-		} while (true);
-
-		// imamo polje puno ispravnih tagova. Sad, prolazimo kroz polje i slijedno
-		// gradimo stablo
-
-		for (int i = 0; i < tokens.size(); i++) {
-			SmartScriptToken actual = (SmartScriptToken) tokens.get(i);
-			if (actual.getType() == SmartScriptTokenType.TEXT) {
-				TextNode textNode = new TextNode((String) actual.getValue());
-				Node node = (Node) stack.peek();
-				node.addChildNode(textNode);
-
-			} else if (actual.getType() == SmartScriptTokenType.STARTTAG) {
-				i++;
-				actual = (SmartScriptToken) tokens.get(i);
-				if (actual.getType() == SmartScriptTokenType.FOR) {
-					// završi tag, addaj child, pushaj for, getaj i provjeri elemente
-					i++;
-					actual = (SmartScriptToken) tokens.get(i);
-					if (actual.getType() == SmartScriptTokenType.VARIABLE) {
-						ElementVariable elementVariable = new ElementVariable((String) actual.getValue());
-						i++;
+			Node parent = (Node) stack.peek();
+			if (current.getType() == SmartScriptTokenType.TEXT) {
+				parent.addChildNode(new TextNode((String) current.getValue()));
+				advance();
 
-						ArrayIndexedCollection forArray = new ArrayIndexedCollection();
-						while (true) {
-							actual = (SmartScriptToken) tokens.get(i);
-							if (actual.getType() == SmartScriptTokenType.ENDTAG) {
-								break;
-							}
-							if (actual.getType() == SmartScriptTokenType.VARIABLE) {
-								ElementVariable elementV = new ElementVariable((String) actual.getValue());
-								forArray.add(elementV);
-							} else if (actual.getType() == SmartScriptTokenType.DOUBLE) {
-								ElementConstantDouble elementD = new ElementConstantDouble((Double) actual.getValue());
-								forArray.add(elementD);
-							} else if (actual.getType() == SmartScriptTokenType.INTEGER) {
-								ElementConstantInteger elementI = new ElementConstantInteger(
-										(Integer) actual.getValue());
-								forArray.add(elementI);
-							} else if (actual.getType() == SmartScriptTokenType.STRING) {
-								ElementString elementS = new ElementString((String) actual.getValue());
-								forArray.add(elementS);
-							} else {
-								throw new SmartScriptParserException("Wrong construction of the for construct.");
-							}
-							i++;
+			} else if (current.getType() == SmartScriptTokenType.STARTTAG) {
+				advance();
+				if (current.getType() == SmartScriptTokenType.FOR) {
+					ForLoopNode forLoopNode = parseForLoop();
+					parent.addChildNode(forLoopNode);
+					stack.push(forLoopNode);
 
-						}
+				} else if (current.getType() == SmartScriptTokenType.TAGNAME) {
+					parent.addChildNode(parseEcho());
 
-						ForLoopNode forLoopNode;
-						if (forArray.size() == 2) {
-							forLoopNode = new ForLoopNode(elementVariable, (Element) forArray.get(0),
-									(Element) forArray.get(1));
-						} else if (forArray.size() == 3) {
-							forLoopNode = new ForLoopNode(elementVariable, (Element) forArray.get(0),
-									(Element) forArray.get(1), (Element) forArray.get(2));
-
-						} else {
-							throw new SmartScriptParserException("Invalid number of arguments in for loop.");
-						}
-
-						Node node = (Node) stack.peek();
-						node.addChildNode(forLoopNode);
-						stack.push(forLoopNode);
-
-					} else {
-						throw new SmartScriptParserException("Unable to parse, no variable in for loop.");
-					}
-
-				} else if (actual.getType() == SmartScriptTokenType.TAGNAME) {
-					i++;
-					ArrayIndexedCollection forArray = new ArrayIndexedCollection();
-					while (true) {
-						actual = (SmartScriptToken) tokens.get(i);
-						if (actual.getType() == SmartScriptTokenType.ENDTAG) {
-							break;
-						}
-						if (actual.getType() == SmartScriptTokenType.VARIABLE) {
-							ElementVariable elementV = new ElementVariable((String) actual.getValue());
-							forArray.add(elementV);
-						} else if (actual.getType() == SmartScriptTokenType.DOUBLE) {
-							ElementConstantDouble elementD = new ElementConstantDouble((Double) actual.getValue());
-							forArray.add(elementD);
-						} else if (actual.getType() == SmartScriptTokenType.INTEGER) {
-							ElementConstantInteger elementI = new ElementConstantInteger((Integer) actual.getValue());
-							forArray.add(elementI);
-						} else if (actual.getType() == SmartScriptTokenType.STRING) {
-							ElementString elementS = new ElementString((String) (actual.getValue()));
-							forArray.add(elementS);
-						} else if (actual.getType() == SmartScriptTokenType.FUNCTION) {
-							ElementFunction elementF = new ElementFunction((String) actual.getValue());
-							forArray.add(elementF);
-						} else if (actual.getType() == SmartScriptTokenType.OPERATOR) {
-							ElementOperator elementO = new ElementOperator((String) actual.getValue());
-							forArray.add(elementO);
-						} else {
-							throw new SmartScriptParserException("Unable to parse.");
-						}
-						i++;
-					}
-					Element[] elements = new Element[forArray.size()];
-
-					for (int counter = 0; counter < forArray.size(); counter++) {
-						elements[counter] = (Element) forArray.get(counter);
-					}
-
-					EchoNode echoNode = new EchoNode(elements);
-					Node node = (Node) stack.peek();
-					node.addChildNode(echoNode);
-
-				} else if (actual.getType() == SmartScriptTokenType.END) {
-					// popaj sa stacka
-					i++;
-					actual = (SmartScriptToken) tokens.get(i);
-					if (actual.getType() == SmartScriptTokenType.ENDTAG) {
-						@SuppressWarnings("unused")
-						Node poppedNode = (Node) stack.pop();
-					} else {
+				} else if (current.getType() == SmartScriptTokenType.END) {
+					advance();
+					if (current.getType() != SmartScriptTokenType.ENDTAG) {
 						throw new SmartScriptParserException("Invalid tag.");
 					}
+					stack.pop();
 				} else {
 					throw new SmartScriptParserException("Unable to parse");
 				}
+				advance();
+
+			} else {
+				throw new SmartScriptParserException("Unable to parse.");
+			}
+		}
+	}
+
+	/**
+	 * Method which parses a FOR tag, starting at the FOR keyword and ending at
+	 * the end of the tag.
+	 * 
+	 * @return Parsed ForLoopNode, without children.
+	 * @throws SmartScriptParserException
+	 *             If the tag is in invalid format.
+	 */
+	private ForLoopNode parseForLoop() {
+		advance();
+		if (current.getType() != SmartScriptTokenType.VARIABLE) {
+			throw new SmartScriptParserException("Unable to parse, no variable in for loop.");
+		}
+		ElementVariable elementVariable = new ElementVariable((String) current.getValue());
 
+		Element start = null;
+		Element end = null;
+		Element step = null;
+		int count = 0;
+		for (advance(); current.getType() != SmartScriptTokenType.ENDTAG; advance()) {
+			Element element;
+			if (current.getType() == SmartScriptTokenType.VARIABLE
+					|| current.getType() == SmartScriptTokenType.DOUBLE
+					|| current.getType() == SmartScriptTokenType.INTEGER
+					|| current.getType() == SmartScriptTokenType.STRING) {
+				element = createElement(current);
+			} else {
+				checkTagClosed();
+				throw new SmartScriptParserException("Wrong construction of the for construct.");
+			}
+			if (count == 0) {
+				start = element;
+			} else if (count == 1) {
+				end = element;
+			} else if (count == 2) {
+				step = element;
+			}
+			count++;
+		}
+
+		if (count == 2) {
+			return new ForLoopNode(elementVariable, start, end);
+		} else if (count == 3) {
+			return new ForLoopNode(elementVariable, start, end, step);
+		}
+		throw new SmartScriptParserException("Invalid number of arguments in for loop.");
+	}
+
+	/**
+	 * Method which parses an echo tag, starting at the tag name and ending at
+	 * the end of the tag. The elements are collected in a buffer and copied
+	 * into an array of their exact size.
+	 * 
+	 * @return Parsed EchoNode.
+	 * @throws SmartScriptParserException
+	 *             If the tag is in invalid format.
+	 */
+	private EchoNode parseEcho() {
+		int count = 0;
+		for (advance(); current.getType() != SmartScriptTokenType.ENDTAG; advance()) {
+			if (current.getType() == SmartScriptTokenType.VARIABLE
+					|| current.getType() == SmartScriptTokenType.DOUBLE
+					|| current.getType() == SmartScriptTokenType.INTEGER
+					|| current.getType() == SmartScriptTokenType.STRING
+					|| current.getType() == SmartScriptTokenType.FUNCTION
+					|| current.getType() == SmartScriptTokenType.OPERATOR) {
+				if (count == elements.length) {
+					elements = Arrays.copyOf(elements, count * 2);
+				}
+				elements[count++] = createElement(current);
 			} else {
+				checkTagClosed();
 				throw new SmartScriptParserException("Unable to parse.");
 			}
 		}
+		Element[] echoElements = Arrays.copyOf(elements, count);
+		Arrays.fill(elements, 0, count, null);
+		return new EchoNode(echoElements);
+	}
 
+	/**
+	 * Method which creates the element of the token.
+	 * 
+	 * @param token
+	 *            Token of a variable, a constant, a string, a function or an
+	 *            operator.
+	 * @return Element of the token.
+	 */
+	private static Element createElement(SmartScriptToken token) {
+		switch (token.getType()) {
+		case VARIABLE:
+			return new ElementVariable((String) token.getValue());
+		case DOUBLE:
+			return new ElementConstantDouble((Double) token.getValue());
+		case INTEGER:
+			return new ElementConstantInteger((Integer) token.getValue());
+		case STRING:
+			return new ElementString((String) token.getValue());
+		case FUNCTION:
+			return new ElementFunction((String) token.getValue());
+		default:
+			return new ElementOperator((String) token.getValue());
+		}
+	}
+
+	/**
+	 * Method which reports a tag which is not closed before the end of the
+	 * document.
+	 * 
+	 * @throws SmartScriptParserException
+	 *             If the current token is the end of the document.
+	 */
+	private void checkTagClosed() {
+		if (current.getType() == SmartScriptTokenType.EOF) {
+			throw new SmartScriptParserException("Tag is not closed.");
+		}
+	}
+
+	/**
+	 * Method which takes the next token from the lexer.
+	 */
+	private void advance() {
+		current = lexer.nextToken();
 	}
 
 	/**
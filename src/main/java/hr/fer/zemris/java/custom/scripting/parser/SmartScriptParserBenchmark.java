@@ -0,0 +1,76 @@
+package hr.fer.zemris.java.custom.scripting.parser;
+
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+
+/**
+ * Class that measures the throughput of the SmartScriptParser on a generated
+ * document which mixes text, echo tags with every kind of element and nested
+ * loops. Besides the speed, it reports how much memory is allocated while a
+ * document is parsed, if the virtual machine can measure it.
+ * 
+ * @author Dinz
+ *
+ */
+public class SmartScriptParserBenchmark {
+
+	/**
+	 * Number of times the document is repeated.
+	 */
+	private static final int REPETITIONS = 20_000;
+
+	/**
+	 * Number of measured passes over the document.
+	 */
+	private static final int PASSES = 20;
+
+	/**
+	 * Method that executes the class.
+	 * 
+	 * @param args
+	 *            Arguments from the command line, not used.
+	 */
+	public static void main(String[] args) {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < REPETITIONS; i++) {
+			sb.append("<p>Row ").append(i).append(" of the table, with some text around the tags.</p>\r\n");
+			sb.append("{$= \"a=\" \"a\" 0 @paramGet \", b=\" \"b\" 0 @paramGet \" sum=\" \"a\" 0 @paramGet ");
+			sb.append("\"b\" 0 @paramGet + $}\r\n");
+			sb.append("{$ FOR i -1 10.5 2 $}{$ FOR j 1 i $}{$= i j * @sin \"0.000\" @decfmt $}{$END$}\\{ {$END$}\r\n");
+		}
+		String document = sb.toString();
+
+		// warm-up, so the measured passes run compiled code
+		for (int i = 0; i < 5; i++) {
+			new SmartScriptParser(document);
+		}
+		long nodes = 0;
+		long allocated = allocatedBytes();
+		long start = System.nanoTime();
+		for (int i = 0; i < PASSES; i++) {
+			nodes += new SmartScriptParser(document).getDocumentNode().numberOfChildren();
+		}
+		double seconds = (System.nanoTime() - start) / 1e9;
+		allocated = allocatedBytes() - allocated;
+		System.out.println(String.format(Locale.ROOT, "%.1f million characters/s, %.1f ms per document (%d nodes)",
+				document.length() * (double) PASSES / seconds / 1e6, seconds * 1000 / PASSES, nodes / PASSES));
+		if (allocated >= 0) {
+			System.out.println(String.format(Locale.ROOT, "%.1f MB allocated per document of %.1f MB",
+					allocated / (double) PASSES / 1e6, document.length() * 2 / 1e6));
+		}
+	}
+
+	/**
+	 * Method which gets the number of bytes the current thread has allocated.
+	 * 
+	 * @return Number of bytes, or -1 if it can't be measured.
+	 */
+	private static long allocatedBytes() {
+		try {
+			return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+					.getThreadAllocatedBytes(Thread.currentThread().getId());
+		} catch (ClassCastException | UnsupportedOperationException e) {
+			return -1;
+		}
+	}
+}
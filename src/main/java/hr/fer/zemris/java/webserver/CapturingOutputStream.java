@@ -0,0 +1,95 @@
+package hr.fer.zemris.java.webserver;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Class that represents an output stream which passes the bytes to the stream
+ * below it and keeps a copy of them. The copy is limited; once more bytes are
+ * written than the limit allows, the copy is dropped and the bytes are only
+ * passed on.
+ * 
+ * @author Dinz
+ *
+ */
+public class CapturingOutputStream extends FilterOutputStream {
+
+	/**
+	 * Copy of the written bytes, null if the limit was exceeded.
+	 */
+	private ByteArrayOutputStream copy = new ByteArrayOutputStream();
+
+	/**
+	 * Maximal number of bytes which are copied.
+	 */
+	private final int limit;
+
+	/**
+	 * Constructs a new stream above the given one.
+	 * 
+	 * @param out
+	 *            Stream the bytes are written to.
+	 * @param limit
+	 *            Maximal number of bytes which are copied.
+	 */
+	public CapturingOutputStream(OutputStream out, int limit) {
+		super(out);
+		this.limit = limit;
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		out.write(b);
+		if (fits(1)) {
+			copy.write(b);
+		}
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		out.write(b, off, len);
+		if (fits(len)) {
+			copy.write(b, off, len);
+		}
+	}
+
+	/**
+	 * Checks if all the bytes written so far were copied.
+	 * 
+	 * @return True if the copy is complete, false if the limit was exceeded.
+	 */
+	public boolean isComplete() {
+		return copy != null;
+	}
+
+	/**
+	 * Gets the copy of the written bytes.
+	 * 
+	 * @return Copied bytes.
+	 * @throws IllegalStateException
+	 *             If the limit was exceeded.
+	 */
+	public byte[] toByteArray() {
+		if (copy == null) {
+			throw new IllegalStateException("More bytes were written than the limit allows.");
+		}
+		return copy.toByteArray();
+	}
+
+	/**
+	 * Checks if the given number of bytes can still be copied, dropping the
+	 * copy if they can't.
+	 * 
+	 * @param len
+	 *            Number of bytes to be copied.
+	 * @return True if the bytes should be copied, false otherwise.
+	 */
+	private boolean fits(int len) {
+		if (copy != null && copy.size() + (long) len > limit) {
+			copy = null;
+		}
+		return copy != null;
+	}
+}
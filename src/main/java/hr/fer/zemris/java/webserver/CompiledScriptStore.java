@@ -0,0 +1,261 @@
+package hr.fer.zemris.java.webserver;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import hr.fer.zemris.java.custom.scripting.compiler.ScriptCompiler;
+import hr.fer.zemris.java.custom.scripting.nodes.CompactDocument;
+import hr.fer.zemris.java.custom.scripting.parser.SmartScriptParser;
+import hr.fer.zemris.java.webserver.metrics.Counter;
+import hr.fer.zemris.java.webserver.metrics.MetricsRegistry;
+
+/**
+ * Class that keeps the parsed scripts in binary files, so a restarted server
+ * doesn't have to parse them again. The file of a script has the path of the
+ * script relative to the document root, with the extension
+ * <code>.smscrc</code>, inside the directory of the store. It starts with a
+ * header: the magic number, the version of the format and the SHA-256 hash of
+ * the source of the script; the {@link CompactDocument} of the script
+ * follows.
+ * <p>
+ * A file is read into memory at once and closed before it is decoded, so it
+ * is never held open or mapped while a newer version replaces it. It is used
+ * only if its version is the current one and its hash matches the source,
+ * otherwise the script is parsed from the source. The files are written when a script is first
+ * compiled, or all at once by {@link #main(String[])} when the site is built,
+ * which reports the scripts which can't be compiled.
+ * 
+ * @author Dinz
+ *
+ */
+public class CompiledScriptStore {
+
+	/**
+	 * Magic number at the beginning of every file, "SMSC" in ASCII.
+	 */
+	private static final int MAGIC = 0x534D5343;
+
+	/**
+	 * Version of the format, changed whenever the format changes.
+	 */
+	private static final int VERSION = 1;
+
+	/**
+	 * Extension of the files.
+	 */
+	private static final String EXTENSION = ".smscrc";
+
+	/**
+	 * Algorithm of the hash of the source.
+	 */
+	private static final String HASH_ALGORITHM = "SHA-256";
+
+	/**
+	 * Length of the hash of the source in bytes.
+	 */
+	private static final int HASH_LENGTH = 32;
+
+	/**
+	 * Directory of the scripts.
+	 */
+	private final Path documentRoot;
+
+	/**
+	 * Directory of the files.
+	 */
+	private final Path directory;
+
+	/**
+	 * Number of scripts read from the files.
+	 */
+	private final Counter loaded;
+
+	/**
+	 * Number of files which were outdated or damaged.
+	 */
+	private final Counter stale;
+
+	/**
+	 * Number of written files.
+	 */
+	private final Counter written;
+
+	/**
+	 * Constructs a new store.
+	 * 
+	 * @param documentRoot
+	 *            Directory of the scripts.
+	 * @param directory
+	 *            Directory of the files.
+	 * @param metrics
+	 *            Registry where the metrics of the store are registered.
+	 */
+	public CompiledScriptStore(Path documentRoot, Path directory, MetricsRegistry metrics) {
+		this.documentRoot = documentRoot.toAbsolutePath().normalize();
+		this.directory = directory;
+		loaded = metrics.counter("scripts.store.loaded");
+		stale = metrics.counter("scripts.store.stale");
+		written = metrics.counter("scripts.store.written");
+	}
+
+	/**
+	 * Method which reads the parsed script from its file.
+	 * 
+	 * @param script
+	 *            Path of the script.
+	 * @param source
+	 *            Source of the script.
+	 * @return Parsed script, or null if there is no file for the current source.
+	 */
+	public CompactDocument load(Path script, byte[] source) {
+		Path file = fileOf(script);
+		if (file == null || !Files.isRegularFile(file)) {
+			return null;
+		}
+		try {
+			ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+			if (buffer.remaining() < 8 + HASH_LENGTH || buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+				stale.increment();
+				return null;
+			}
+			byte[] hash = new byte[HASH_LENGTH];
+			buffer.get(hash);
+			if (!Arrays.equals(hash, hash(source))) {
+				stale.increment();
+				return null;
+			}
+			CompactDocument document = CompactDocument.readFrom(buffer);
+			loaded.increment();
+			return document;
+		} catch (IOException | IllegalArgumentException e) {
+			stale.increment();
+			System.err.println("Warning: " + file + " can't be read: " + e.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * Method which writes the parsed script to its file. The file is replaced
+	 * at once, so a server reading it never sees a half written one.
+	 * 
+	 * @param script
+	 *            Path of the script.
+	 * @param source
+	 *            Source of the script.
+	 * @param document
+	 *            Parsed script.
+	 * @throws IOException
+	 *             If the file can't be written.
+	 */
+	public void store(Path script, byte[] source, CompactDocument document) throws IOException {
+		Path file = fileOf(script);
+		if (file == null) {
+			return;
+		}
+		Files.createDirectories(file.getParent());
+		Path temporary = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+		try {
+			try (DataOutputStream output = new DataOutputStream(
+					new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+				output.writeInt(MAGIC);
+				output.writeInt(VERSION);
+				output.write(hash(source));
+				document.writeTo(output);
+			}
+			Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(temporary);
+		}
+		written.increment();
+	}
+
+	/**
+	 * Method which gets the file of the script.
+	 * 
+	 * @param script
+	 *            Path of the script.
+	 * @return Path of the file, or null if the script is not in the document
+	 *         root.
+	 */
+	private Path fileOf(Path script) {
+		Path absolute = script.toAbsolutePath().normalize();
+		if (!absolute.startsWith(documentRoot)) {
+			return null;
+		}
+		String name = documentRoot.relativize(absolute).toString();
+		if (name.endsWith(".smscr")) {
+			name = name.substring(0, name.length() - ".smscr".length());
+		}
+		return directory.resolve(name + EXTENSION);
+	}
+
+	/**
+	 * Method which calculates the hash of the source.
+	 * 
+	 * @param source
+	 *            Source of the script.
+	 * @return Hash of the source.
+	 */
+	private static byte[] hash(byte[] source) {
+		try {
+			return MessageDigest.getInstance(HASH_ALGORITHM).digest(source);
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException(HASH_ALGORITHM + " is not supported.", e);
+		}
+	}
+
+	/**
+	 * Method which compiles all the scripts in the document root and writes
+	 * their files to the directory of the store, so the server starts without
+	 * parsing them. The scripts which can't be compiled are reported, and the
+	 * program exits with status 1 if there are any.
+	 * 
+	 * @param args
+	 *            Document root and directory of the store.
+	 * @throws IOException
+	 *             If the scripts can't be read or the files can't be written.
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length != 2) {
+			System.out.println("Expected the document root and the directory of the compiled scripts.");
+			return;
+		}
+		Path documentRoot = Paths.get(args[0]);
+		CompiledScriptStore store = new CompiledScriptStore(documentRoot, Paths.get(args[1]), new MetricsRegistry());
+		List<Path> scripts;
+		try (Stream<Path> files = Files.walk(documentRoot)) {
+			scripts = files.filter(p -> p.toString().endsWith(".smscr")).sorted().collect(Collectors.toList());
+		}
+		int failures = 0;
+		for (Path script : scripts) {
+			byte[] source = Files.readAllBytes(script);
+			try {
+				CompactDocument document = CompactDocument
+						.of(new SmartScriptParser(new String(source, StandardCharsets.UTF_8)).getDocumentNode());
+				ScriptCompiler.compile(document.getDocumentNode());
+				store.store(script, source, document);
+				System.out.println("Compiled " + script);
+			} catch (RuntimeException e) {
+				failures++;
+				System.out.println("Error: " + script + " can't be compiled: " + e.getMessage());
+			}
+		}
+		System.out.println(scripts.size() - failures + " of " + scripts.size() + " scripts compiled.");
+		if (failures > 0) {
+			System.exit(1);
+		}
+	}
+}
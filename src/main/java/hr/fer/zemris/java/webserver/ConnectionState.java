@@ -0,0 +1,181 @@
+package hr.fer.zemris.java.webserver;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+
+/**
+ * Class that represents the state a client worker needs for one connection:
+ * the buffer the request is read into and the streams the response is written
+ * through. The server keeps one state per worker thread and every connection
+ * served by the thread reuses it, so a request allocates none of these. The
+ * maps of the parameters and the output cookies are not part of the state,
+ * since the request context keeps them and a worker may hold on to it.
+ * <p>
+ * The buffers keep the capacity they grew to, which fits them to the requests
+ * the server actually gets. A request buffer that grew beyond the retained
+ * limit, for an unusually large request, is replaced when it is released, so a
+ * single request can't keep the memory for good.
+ * 
+ * @author Dinz
+ *
+ */
+class ConnectionState {
+
+	/**
+	 * Initial capacity of the request buffer, enough for the header of a usual
+	 * GET request.
+	 */
+	private static final int REQUEST_BUFFER_SIZE = 1024;
+
+	/**
+	 * Largest capacity of the request buffer which is kept between connections.
+	 */
+	private static final int MAX_RETAINED_REQUEST_BUFFER = 16 * 1024;
+
+	/**
+	 * Buffer the request is read into.
+	 */
+	private RequestBuffer requestBuffer = new RequestBuffer();
+
+	/**
+	 * Stream directly above the socket, which notes when the first byte was
+	 * sent.
+	 */
+	private final FirstByteOutputStream firstByteStream = new FirstByteOutputStream(null);
+
+	/**
+	 * Buffered stream above {@link #firstByteStream}.
+	 */
+	private final ResponseStream responseStream;
+
+	/**
+	 * Constructs a new state.
+	 * 
+	 * @param responseBufferSize
+	 *            Size of the response buffer.
+	 */
+	ConnectionState(int responseBufferSize) {
+		responseStream = new ResponseStream(firstByteStream, responseBufferSize);
+	}
+
+	/**
+	 * Binds the state to a new connection.
+	 * 
+	 * @param socketStream
+	 *            Output stream of the socket.
+	 */
+	void bind(OutputStream socketStream) {
+		firstByteStream.reset(socketStream);
+		responseStream.reset();
+	}
+
+	/**
+	 * Releases the state after a connection so it can be reused. The buffered
+	 * response which wasn't sent is dropped.
+	 */
+	void release() {
+		if (requestBuffer.capacity() > MAX_RETAINED_REQUEST_BUFFER) {
+			requestBuffer = new RequestBuffer();
+		} else {
+			requestBuffer.reset();
+		}
+		firstByteStream.reset(null);
+		responseStream.reset();
+	}
+
+	/**
+	 * Gets the buffer the request is read into.
+	 * 
+	 * @return Request buffer.
+	 */
+	RequestBuffer getRequestBuffer() {
+		return requestBuffer;
+	}
+
+	/**
+	 * Gets the stream directly above the socket.
+	 * 
+	 * @return First byte stream.
+	 */
+	FirstByteOutputStream getFirstByteStream() {
+		return firstByteStream;
+	}
+
+	/**
+	 * Gets the buffered stream the response is written to.
+	 * 
+	 * @return Response stream.
+	 */
+	OutputStream getResponseStream() {
+		return responseStream;
+	}
+
+	/**
+	 * Class that represents the buffer a request is read into. The request is
+	 * decoded straight from the buffer, without copying it first.
+	 * 
+	 * @author Dinz
+	 *
+	 */
+	static class RequestBuffer extends ByteArrayOutputStream {
+
+		/**
+		 * Constructs a new request buffer.
+		 */
+		RequestBuffer() {
+			super(REQUEST_BUFFER_SIZE);
+		}
+
+		/**
+		 * Gets the capacity of the buffer.
+		 * 
+		 * @return Number of bytes the buffer can hold without growing.
+		 */
+		int capacity() {
+			return buf.length;
+		}
+
+		/**
+		 * Method which decodes the content of the buffer.
+		 * 
+		 * @param charset
+		 *            Charset of the content.
+		 * @return Decoded content.
+		 */
+		String decode(Charset charset) {
+			return new String(buf, 0, count, charset);
+		}
+	}
+
+	/**
+	 * Class that represents a buffered stream which can be emptied without
+	 * writing the buffered bytes, so a response left in it by a broken
+	 * connection never reaches the next one.
+	 * 
+	 * @author Dinz
+	 *
+	 */
+	private static class ResponseStream extends BufferedOutputStream {
+
+		/**
+		 * Constructs a new response stream.
+		 * 
+		 * @param out
+		 *            Stream the bytes are written to.
+		 * @param size
+		 *            Size of the buffer.
+		 */
+		ResponseStream(OutputStream out, int size) {
+			super(out, size);
+		}
+
+		/**
+		 * Method which drops the buffered bytes.
+		 */
+		void reset() {
+			count = 0;
+		}
+	}
+}
@@ -0,0 +1,502 @@
+package hr.fer.zemris.java.webserver;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import hr.fer.zemris.java.webserver.metrics.Counter;
+import hr.fer.zemris.java.webserver.metrics.MetricsRegistry;
+import hr.fer.zemris.java.webserver.metrics.Timer;
+
+/**
+ * Class that watches directories for changed files and tells the listener
+ * which paths changed, so the caches don't have to check the files on every
+ * request. The trees are watched with a {@link WatchService}, including the
+ * directories created later, and the other directories without their
+ * subdirectories.
+ * <p>
+ * The events which arrive within a short time of each other are collected, and
+ * every changed path is reported once. If the events overflow, the files are
+ * compared with the modification times and sizes seen before, and the
+ * comparison is repeated periodically until it finds no more changes; while
+ * it runs, the watcher is not {@link #isWatching() watching}. If the file
+ * system can't be watched at all, the files are only compared periodically.
+ * The listener is called from the thread of the watcher.
+ * 
+ * @author Dinz
+ *
+ */
+public class FileWatcher implements Closeable {
+
+	/**
+	 * Longest time, as a multiple of the coalescing time, the events of a burst
+	 * are collected before they are reported.
+	 */
+	private static final int MAX_COALESCE_ROUNDS = 10;
+
+	/**
+	 * Largest lag which is recorded, since a file may keep an old modification
+	 * time when it is copied or moved.
+	 */
+	private static final long MAX_LAG_MILLIS = 60_000;
+
+	/**
+	 * Directories watched with their subdirectories.
+	 */
+	private final List<Path> trees = new ArrayList<>();
+
+	/**
+	 * Directories watched without their subdirectories.
+	 */
+	private final List<Path> directories = new ArrayList<>();
+
+	/**
+	 * Listener told about every changed path.
+	 */
+	private final Consumer<Path> listener;
+
+	/**
+	 * Number of milliseconds the watcher waits for more events of a burst.
+	 */
+	private final long coalesceMillis;
+
+	/**
+	 * Number of milliseconds between the comparisons of the files.
+	 */
+	private final long pollMillis;
+
+	/**
+	 * Watched directories by their keys.
+	 */
+	private final Map<WatchKey, Path> keys = new HashMap<>();
+
+	/**
+	 * Modification time and size of every file, from the last comparison.
+	 */
+	private Map<Path, long[]> snapshot = new HashMap<>();
+
+	/**
+	 * Service which reports the events, null if the files are only compared.
+	 */
+	private volatile WatchService watchService;
+
+	/**
+	 * Flag which notes that the events overflowed and the files are compared
+	 * until no more changes are found.
+	 */
+	private volatile boolean overflowed;
+
+	/**
+	 * Thread of the watcher.
+	 */
+	private final Thread thread = new Thread(this::run, "file-watcher");
+
+	/**
+	 * Number of received events.
+	 */
+	private final Counter events;
+
+	/**
+	 * Number of changed paths reported to the listener.
+	 */
+	private final Counter invalidations;
+
+	/**
+	 * Number of times the events overflowed.
+	 */
+	private final Counter overflows;
+
+	/**
+	 * Number of comparisons of the files.
+	 */
+	private final Counter scans;
+
+	/**
+	 * Time from the modification of a file to its report.
+	 */
+	private final Timer lag;
+
+	/**
+	 * Constructs a new watcher.
+	 * 
+	 * @param trees
+	 *            Directories watched with their subdirectories.
+	 * @param directories
+	 *            Directories watched without their subdirectories.
+	 * @param coalesceMillis
+	 *            Number of milliseconds the watcher waits for more events of a
+	 *            burst.
+	 * @param pollMillis
+	 *            Number of milliseconds between the comparisons of the files.
+	 * @param listener
+	 *            Listener told about every changed path.
+	 * @param metrics
+	 *            Registry where the metrics of the watcher are registered.
+	 * @throws IllegalArgumentException
+	 *             If a time isn't positive.
+	 */
+	public FileWatcher(List<Path> trees, List<Path> directories, long coalesceMillis, long pollMillis,
+			Consumer<Path> listener, MetricsRegistry metrics) {
+		if (coalesceMillis <= 0 || pollMillis <= 0) {
+			throw new IllegalArgumentException("Watcher times must be positive.");
+		}
+		for (Path tree : trees) {
+			this.trees.add(tree.toAbsolutePath().normalize());
+		}
+		for (Path directory : directories) {
+			Path normalized = directory.toAbsolutePath().normalize();
+			if (!this.directories.contains(normalized) && !isInTree(normalized)) {
+				this.directories.add(normalized);
+			}
+		}
+		this.coalesceMillis = coalesceMillis;
+		this.pollMillis = pollMillis;
+		this.listener = listener;
+		events = metrics.counter("watcher.events");
+		invalidations = metrics.counter("watcher.invalidations");
+		overflows = metrics.counter("watcher.overflows");
+		scans = metrics.counter("watcher.scans");
+		lag = metrics.timer("watcher.lag");
+		metrics.gauge("watcher.watching", () -> isWatching() ? 1 : 0);
+		thread.setDaemon(true);
+	}
+
+	/**
+	 * Starts watching the directories. If they can't be watched, the files are
+	 * compared periodically.
+	 * 
+	 * @throws IOException
+	 *             If the directories can't be read.
+	 */
+	public void start() throws IOException {
+		snapshot = scan();
+		try {
+			watchService = FileSystems.getDefault().newWatchService();
+			for (Path tree : trees) {
+				registerTree(tree);
+			}
+			for (Path directory : directories) {
+				register(directory);
+			}
+		} catch (IOException | UnsupportedOperationException e) {
+			System.err.println("Warning: files can't be watched, they are compared every " + pollMillis + " ms: "
+					+ e.getMessage());
+			closeWatchService();
+		}
+		thread.start();
+	}
+
+	/**
+	 * Checks if the watcher reports the changes as they happen, so the caches
+	 * can trust it instead of checking the files.
+	 * 
+	 * @return True if the changes are reported as they happen, false if the
+	 *         files are being compared.
+	 */
+	public boolean isWatching() {
+		return thread.isAlive() && watchService != null && !overflowed;
+	}
+
+	@Override
+	public void close() {
+		thread.interrupt();
+		closeWatchService();
+	}
+
+	/**
+	 * Method which runs in the thread of the watcher.
+	 */
+	private void run() {
+		try {
+			while (!Thread.currentThread().isInterrupted()) {
+				WatchService service = watchService;
+				if (service == null) {
+					Thread.sleep(pollMillis);
+					report(compare());
+					continue;
+				}
+				WatchKey key = service.poll(pollMillis, TimeUnit.MILLISECONDS);
+				if (key == null) {
+					if (overflowed) {
+						Set<Path> changed = compare();
+						overflowed = !changed.isEmpty();
+						report(changed);
+					}
+					continue;
+				}
+				Set<Path> changed = new LinkedHashSet<>();
+				boolean overflow = collect(key, changed);
+				long deadline = System.nanoTime() + coalesceMillis * MAX_COALESCE_ROUNDS * 1_000_000;
+				while (System.nanoTime() - deadline < 0
+						&& (key = service.poll(coalesceMillis, TimeUnit.MILLISECONDS)) != null) {
+					overflow |= collect(key, changed);
+				}
+				if (overflow) {
+					overflows.increment();
+					overflowed = true;
+					changed.addAll(compare());
+				} else {
+					update(changed);
+				}
+				report(changed);
+			}
+		} catch (InterruptedException | ClosedWatchServiceException e) {
+			// the watcher is closed
+		}
+	}
+
+	/**
+	 * Method which collects the changed paths of the key. A new directory in a
+	 * watched tree is registered, and its files are reported, since they may
+	 * have been created before it was registered.
+	 * 
+	 * @param key
+	 *            Key with the events.
+	 * @param changed
+	 *            Changed paths.
+	 * @return True if the events overflowed, false otherwise.
+	 */
+	private boolean collect(WatchKey key, Set<Path> changed) {
+		Path directory = keys.get(key);
+		boolean overflow = false;
+		for (WatchEvent<?> event : key.pollEvents()) {
+			if (event.kind() == StandardWatchEventKinds.OVERFLOW || directory == null) {
+				overflow = true;
+				continue;
+			}
+			events.increment();
+			Path path = directory.resolve((Path) event.context());
+			if (event.kind() == StandardWatchEventKinds.ENTRY_MODIFY && Files.isDirectory(path)) {
+				// only the entries of the directory changed, and they have their own events
+				continue;
+			}
+			changed.add(path);
+			if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && isInTree(path) && Files.isDirectory(path)) {
+				try {
+					registerTree(path);
+					try (Stream<Path> files = Files.walk(path)) {
+						files.forEach(changed::add);
+					}
+				} catch (IOException e) {
+					overflow = true;
+				}
+			}
+		}
+		if (!key.reset()) {
+			keys.remove(key);
+		}
+		return overflow;
+	}
+
+	/**
+	 * Method which reports the changed paths to the listener and records how
+	 * long after the modification they are reported.
+	 * 
+	 * @param changed
+	 *            Changed paths.
+	 */
+	private void report(Set<Path> changed) {
+		long now = System.currentTimeMillis();
+		for (Path path : changed) {
+			try {
+				listener.accept(path);
+			} catch (RuntimeException e) {
+				System.err.println("Warning: change of " + path + " can't be handled: " + e.getMessage());
+			}
+			invalidations.increment();
+			long[] stamp = snapshot.get(path);
+			if (stamp != null && now >= stamp[0] && now - stamp[0] <= MAX_LAG_MILLIS) {
+				lag.record((now - stamp[0]) * 1_000_000);
+			}
+		}
+	}
+
+	/**
+	 * Method which updates the modification times and sizes of the changed
+	 * paths.
+	 * 
+	 * @param changed
+	 *            Changed paths.
+	 */
+	private void update(Set<Path> changed) {
+		for (Path path : changed) {
+			long[] stamp = stamp(path);
+			if (stamp != null) {
+				snapshot.put(path, stamp);
+			} else {
+				snapshot.keySet().removeIf(p -> p.startsWith(path));
+			}
+		}
+	}
+
+	/**
+	 * Method which compares the files with the ones seen before.
+	 * 
+	 * @return Paths of the files which were created, changed or deleted.
+	 */
+	private Set<Path> compare() {
+		Set<Path> changed = new LinkedHashSet<>();
+		Map<Path, long[]> current;
+		try {
+			current = scan();
+		} catch (IOException e) {
+			System.err.println("Warning: watched files can't be compared: " + e.getMessage());
+			return changed;
+		}
+		for (Map.Entry<Path, long[]> entry : current.entrySet()) {
+			if (!Arrays.equals(entry.getValue(), snapshot.get(entry.getKey()))) {
+				changed.add(entry.getKey());
+			}
+		}
+		for (Path path : snapshot.keySet()) {
+			if (!current.containsKey(path)) {
+				changed.add(path);
+			}
+		}
+		snapshot = current;
+		return changed;
+	}
+
+	/**
+	 * Method which reads the modification times and sizes of all the watched
+	 * files.
+	 * 
+	 * @return Modification time and size of every file.
+	 * @throws IOException
+	 *             If a directory can't be read.
+	 */
+	private Map<Path, long[]> scan() throws IOException {
+		scans.increment();
+		Map<Path, long[]> files = new HashMap<>();
+		for (Path tree : trees) {
+			addFiles(tree, Integer.MAX_VALUE, files);
+		}
+		for (Path directory : directories) {
+			addFiles(directory, 1, files);
+		}
+		return files;
+	}
+
+	/**
+	 * Method which reads the modification times and sizes of the files in the
+	 * directory.
+	 * 
+	 * @param directory
+	 *            Directory of the files.
+	 * @param depth
+	 *            Depth of the subdirectories whose files are read.
+	 * @param files
+	 *            Map the modification times and sizes are added to.
+	 * @throws IOException
+	 *             If the directory can't be read.
+	 */
+	private static void addFiles(Path directory, int depth, Map<Path, long[]> files) throws IOException {
+		try (Stream<Path> paths = Files.walk(directory, depth)) {
+			paths.forEach(path -> {
+				long[] stamp = stamp(path);
+				if (stamp != null) {
+					files.put(path, stamp);
+				}
+			});
+		}
+	}
+
+	/**
+	 * Method which reads the modification time and size of the file.
+	 * 
+	 * @param path
+	 *            Path of the file.
+	 * @return Modification time in milliseconds and size, or null if the path
+	 *         is not a regular file.
+	 */
+	private static long[] stamp(Path path) {
+		try {
+			BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+			if (!attributes.isRegularFile()) {
+				return null;
+			}
+			return new long[] { attributes.lastModifiedTime().toMillis(), attributes.size() };
+		} catch (IOException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Method which registers the directory and all its subdirectories.
+	 * 
+	 * @param tree
+	 *            Directory to be registered.
+	 * @throws IOException
+	 *             If a directory can't be registered.
+	 */
+	private void registerTree(Path tree) throws IOException {
+		try (Stream<Path> paths = Files.walk(tree)) {
+			for (Path directory : (Iterable<Path>) paths.filter(Files::isDirectory)::iterator) {
+				register(directory);
+			}
+		}
+	}
+
+	/**
+	 * Method which registers the directory.
+	 * 
+	 * @param directory
+	 *            Directory to be registered.
+	 * @throws IOException
+	 *             If the directory can't be registered.
+	 */
+	private void register(Path directory) throws IOException {
+		WatchKey key = directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+				StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+		keys.put(key, directory);
+	}
+
+	/**
+	 * Checks if the path is in one of the watched trees.
+	 * 
+	 * @param path
+	 *            Path to be checked.
+	 * @return True if the path is in a tree, false otherwise.
+	 */
+	private boolean isInTree(Path path) {
+		for (Path tree : trees) {
+			if (path.startsWith(tree)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Method which closes the watch service, if there is one.
+	 */
+	private void closeWatchService() {
+		if (watchService == null) {
+			return;
+		}
+		try {
+			watchService.close();
+		} catch (IOException e) {
+			// nothing to do, the events are not needed any more
+		}
+		watchService = null;
+	}
+}
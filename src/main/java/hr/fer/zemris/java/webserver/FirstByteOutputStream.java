@@ -0,0 +1,77 @@
+package hr.fer.zemris.java.webserver;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Class that represents an output stream which notes the time when the first
+ * byte was passed to the stream below it. Placed directly above the socket
+ * stream, it measures when the client could start receiving the response.
+ * 
+ * @author Dinz
+ *
+ */
+public class FirstByteOutputStream extends FilterOutputStream {
+
+	/**
+	 * Value of {@link System#nanoTime()} when the first byte was written, 0 if
+	 * nothing was written yet.
+	 */
+	private long firstByteNanos;
+
+	/**
+	 * Constructs a new stream above the given one.
+	 * 
+	 * @param out
+	 *            Stream the bytes are written to.
+	 */
+	public FirstByteOutputStream(OutputStream out) {
+		super(out);
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		mark();
+		out.write(b);
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		if (len > 0) {
+			mark();
+		}
+		out.write(b, off, len);
+	}
+
+	/**
+	 * Gets the time when the first byte was written.
+	 * 
+	 * @return Value of {@link System#nanoTime()} when the first byte was
+	 *         written, 0 if nothing was written yet.
+	 */
+	public long getFirstByteNanos() {
+		return firstByteNanos;
+	}
+
+	/**
+	 * Method which places the stream above another stream, so it can be reused
+	 * for the next connection.
+	 * 
+	 * @param out
+	 *            Stream the bytes are written to.
+	 */
+	void reset(OutputStream out) {
+		this.out = out;
+		firstByteNanos = 0;
+	}
+
+	/**
+	 * Method which notes the time of the first byte.
+	 */
+	private void mark() {
+		if (firstByteNanos == 0) {
+			firstByteNanos = System.nanoTime();
+		}
+	}
+}
@@ -0,0 +1,629 @@
+package hr.fer.zemris.java.webserver;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import hr.fer.zemris.java.custom.scripting.compiler.CompiledScript;
+import hr.fer.zemris.java.custom.scripting.compiler.DependencyAnalyzer;
+import hr.fer.zemris.java.custom.scripting.compiler.ScriptDependencies;
+import hr.fer.zemris.java.custom.scripting.compiler.ScriptDependencies.Kind;
+import hr.fer.zemris.java.webserver.metrics.Counter;
+import hr.fer.zemris.java.webserver.metrics.MetricsRegistry;
+
+/**
+ * Class that represents a cache of complete script responses, header
+ * included. Caching is turned on per script by a rule in the configuration
+ * file, one rule per line:
+ * 
+ * <pre>
+ * /scripts/zbrajanje.smscr = ttl=60
+ * /scripts/osnovni.smscr = ttl=300
+ * </pre>
+ * 
+ * The rule gives the number of seconds a response stays valid. Responses are
+ * kept apart by the status code, mime type and charset of the request and by
+ * the values of the parameters the script reads, which are found by the
+ * {@link DependencyAnalyzer} when the script is compiled. The rule can name
+ * further parameters (<code>params</code>), temporary parameters
+ * (<code>tparams</code>) and persistent parameters (<code>pparams</code>) the
+ * output depends on through a worker which dispatched the request.
+ * <p>
+ * Scripts which change the parameters are never cached, since serving them
+ * from the cache would skip the change, and neither are scripts whose
+ * dependencies can't be determined, or responses which set cookies. The cache
+ * keeps at most the configured number of bytes; when it is full, the least
+ * recently used responses are removed. A single response can take at most a
+ * sixteenth of the budget, so one large page can't push out the whole cache.
+ * 
+ * @author Dinz
+ *
+ */
+public class OutputCache {
+
+	/**
+	 * Configuration file with the rules.
+	 */
+	private final Path rulesFile;
+
+	/**
+	 * Rules by the paths of the scripts.
+	 */
+	private volatile Map<String, Rule> rules;
+
+	/**
+	 * Maximal number of bytes kept by the cache.
+	 */
+	private final long maxBytes;
+
+	/**
+	 * Cached responses by their keys, ordered from the least recently used.
+	 */
+	private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+	/**
+	 * Number of bytes kept by the cache.
+	 */
+	private long usedBytes;
+
+	/**
+	 * Number of requests served from the cache.
+	 */
+	private final Counter hits;
+
+	/**
+	 * Number of requests which executed a script with a rule.
+	 */
+	private final Counter misses;
+
+	/**
+	 * Number of requests for scripts with a rule which couldn't be cached.
+	 */
+	private final Counter bypassed;
+
+	/**
+	 * Number of responses removed to make room for new ones.
+	 */
+	private final Counter evictions;
+
+	/**
+	 * Constructs a new output cache.
+	 * 
+	 * @param rulesFile
+	 *            Configuration file with the rules.
+	 * @param maxBytes
+	 *            Maximal number of bytes kept by the cache.
+	 * @param metrics
+	 *            Registry where the metrics of the cache are registered.
+	 * @throws IOException
+	 *             If the configuration file can't be read.
+	 * @throws IllegalArgumentException
+	 *             If a rule is invalid or the budget isn't positive.
+	 */
+	public OutputCache(Path rulesFile, long maxBytes, MetricsRegistry metrics) throws IOException {
+		if (maxBytes <= 0) {
+			throw new IllegalArgumentException("Output cache size must be positive.");
+		}
+		this.maxBytes = maxBytes;
+		this.rulesFile = rulesFile;
+		this.rules = loadRules(rulesFile);
+		hits = metrics.counter("outputCache.hits");
+		misses = metrics.counter("outputCache.misses");
+		bypassed = metrics.counter("outputCache.bypassed");
+		evictions = metrics.counter("outputCache.evictions");
+		metrics.gauge("outputCache.entries", () -> size());
+		metrics.gauge("outputCache.bytes", () -> getUsedBytes());
+	}
+
+	/**
+	 * Method that loads the rules from the configuration file.
+	 * 
+	 * @param rulesFile
+	 *            Configuration file with the rules.
+	 * @return Rules by the paths of the scripts.
+	 * @throws IOException
+	 *             If the configuration file can't be read.
+	 */
+	private static Map<String, Rule> loadRules(Path rulesFile) throws IOException {
+		Map<String, Rule> rules = new HashMap<>();
+		for (String line : Files.readAllLines(rulesFile)) {
+			line = line.trim();
+			if (line.startsWith("#") || line.isEmpty()) {
+				continue;
+			}
+			int separator = line.indexOf('=');
+			if (separator < 0) {
+				throw new IllegalArgumentException("Invalid output cache rule: " + line);
+			}
+			String path = line.substring(0, separator).trim();
+			if (rules.containsKey(path)) {
+				throw new IllegalArgumentException("There is a duplicate path in the output cache rules.");
+			}
+			rules.put(path, Rule.parse(line.substring(separator + 1)));
+		}
+		return rules;
+	}
+
+	/**
+	 * Gets the rule of the script.
+	 * 
+	 * @param path
+	 *            Path of the script, starting with a slash.
+	 * @return Rule of the script, null if the script is not cached.
+	 */
+	public Rule getRule(String path) {
+		return rules.get(path);
+	}
+
+	/**
+	 * Checks if the output of the script can be cached. A script which changes
+	 * the parameters can't be, and neither can a script whose dependencies
+	 * can't be determined.
+	 * 
+	 * @param script
+	 *            Compiled script.
+	 * @return True if the script can be cached, false otherwise.
+	 */
+	public boolean isCacheable(CompiledScript script) {
+		ScriptDependencies dependencies = script.getDependencies();
+		return dependencies.isDetermined() && dependencies.getKind() != Kind.SIDE_EFFECTING;
+	}
+
+	/**
+	 * Method which notes a request for a script with a rule which couldn't be
+	 * cached.
+	 */
+	public void bypass() {
+		bypassed.increment();
+	}
+
+	/**
+	 * Gets the cached response. A response which expired or was produced by
+	 * an older version of the script is removed.
+	 * 
+	 * @param key
+	 *            Key of the response.
+	 * @param script
+	 *            Current version of the script.
+	 * @return Cached response, null if there is none.
+	 */
+	public synchronized Entry get(String key, CompiledScript script) {
+		Entry entry = entries.get(key);
+		if (entry != null && (entry.script != script || entry.expires - System.nanoTime() <= 0)) {
+			remove(key);
+			entry = null;
+		}
+		if (entry == null) {
+			misses.increment();
+		} else {
+			hits.increment();
+		}
+		return entry;
+	}
+
+	/**
+	 * Method which stores the response, removing the least recently used ones
+	 * if there is no room for it. A response larger than a sixteenth of the
+	 * budget is not stored.
+	 * 
+	 * @param key
+	 *            Key of the response.
+	 * @param script
+	 *            Script which produced the response.
+	 * @param response
+	 *            Response, header included.
+	 * @param headerLength
+	 *            Number of bytes of the header.
+	 * @param ttlMillis
+	 *            Number of milliseconds the response stays valid.
+	 */
+	public synchronized void put(String key, CompiledScript script, byte[] response, int headerLength,
+			long ttlMillis) {
+		long size = sizeOf(key, response);
+		if (size > getMaxEntryBytes()) {
+			return;
+		}
+		remove(key);
+		Iterator<Entry> iterator = entries.values().iterator();
+		while (usedBytes + size > maxBytes && iterator.hasNext()) {
+			usedBytes -= iterator.next().size;
+			iterator.remove();
+			evictions.increment();
+		}
+		long expires = System.nanoTime() + ttlMillis * 1_000_000;
+		entries.put(key, new Entry(script, response, headerLength, expires, size));
+		usedBytes += size;
+	}
+
+	/**
+	 * Gets the maximal number of bytes a single response can take.
+	 * 
+	 * @return Maximal size of a response.
+	 */
+	public int getMaxEntryBytes() {
+		return (int) Math.min(maxBytes / 16, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Gets the number of cached responses.
+	 * 
+	 * @return Number of responses.
+	 */
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	/**
+	 * Gets the number of bytes kept by the cache.
+	 * 
+	 * @return Number of bytes.
+	 */
+	public synchronized long getUsedBytes() {
+		return usedBytes;
+	}
+
+	/**
+	 * Removes the responses of the script, or of all the scripts in it if the
+	 * path is a directory.
+	 * 
+	 * @param path
+	 *            Path of the script or directory, starting with a slash.
+	 */
+	public synchronized void invalidate(String path) {
+		Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+		while (iterator.hasNext()) {
+			Map.Entry<String, Entry> entry = iterator.next();
+			String key = entry.getKey();
+			if (key.startsWith(path) && key.length() > path.length()
+					&& (key.charAt(path.length()) == '\n' || key.charAt(path.length()) == '/')) {
+				usedBytes -= entry.getValue().size;
+				iterator.remove();
+			}
+		}
+	}
+
+	/**
+	 * Method which loads the rules again from the configuration file and
+	 * removes all the responses, which may have been cached by the old rules.
+	 * If the file is invalid, the old rules stay.
+	 */
+	public void reloadRules() {
+		try {
+			rules = loadRules(rulesFile);
+		} catch (IOException | IllegalArgumentException e) {
+			System.err.println("Warning: output cache rules in " + rulesFile + " can't be loaded: " + e.getMessage());
+			return;
+		}
+		clear();
+	}
+
+	/**
+	 * Gets the configuration file with the rules.
+	 * 
+	 * @return Path of the file.
+	 */
+	public Path getRulesFile() {
+		return rulesFile;
+	}
+
+	/**
+	 * Removes all the responses from the cache.
+	 */
+	public synchronized void clear() {
+		entries.clear();
+		usedBytes = 0;
+	}
+
+	/**
+	 * Method which removes the response with the given key, if there is one.
+	 * 
+	 * @param key
+	 *            Key of the response.
+	 */
+	private void remove(String key) {
+		Entry removed = entries.remove(key);
+		if (removed != null) {
+			usedBytes -= removed.size;
+		}
+	}
+
+	/**
+	 * Method which estimates the memory taken by a response.
+	 * 
+	 * @param key
+	 *            Key of the response.
+	 * @param response
+	 *            Response.
+	 * @return Number of bytes.
+	 */
+	private static long sizeOf(String key, byte[] response) {
+		return response.length + 2L * key.length();
+	}
+
+	/**
+	 * Class that represents the rule of a cached script.
+	 * 
+	 * @author Dinz
+	 *
+	 */
+	public static class Rule {
+
+		/**
+		 * Number of milliseconds a response stays valid.
+		 */
+		private final long ttlMillis;
+
+		/**
+		 * Names of the parameters the output depends on besides the ones the
+		 * script reads.
+		 */
+		private final List<String> parameters;
+
+		/**
+		 * Names of the temporary parameters the output depends on besides
+		 * the ones the script reads.
+		 */
+		private final List<String> temporaryParameters;
+
+		/**
+		 * Names of the persistent parameters the output depends on besides
+		 * the ones the script reads.
+		 */
+		private final List<String> persistentParameters;
+
+		/**
+		 * Constructs a new rule.
+		 * 
+		 * @param ttlMillis
+		 *            Number of milliseconds a response stays valid.
+		 * @param parameters
+		 *            Names of the parameters the output depends on besides
+		 *            the ones the script reads.
+		 * @param temporaryParameters
+		 *            Names of the temporary parameters the output depends on
+		 *            besides the ones the script reads.
+		 * @param persistentParameters
+		 *            Names of the persistent parameters the output depends on
+		 *            besides the ones the script reads.
+		 */
+		public Rule(long ttlMillis, List<String> parameters, List<String> temporaryParameters,
+				List<String> persistentParameters) {
+			if (ttlMillis <= 0) {
+				throw new IllegalArgumentException("Time to live of a cached response must be positive.");
+			}
+			this.ttlMillis = ttlMillis;
+			this.parameters = parameters;
+			this.temporaryParameters = temporaryParameters;
+			this.persistentParameters = persistentParameters;
+		}
+
+		/**
+		 * Method which parses the rule from its text, such as
+		 * <code>ttl=60; params=a,b</code>. The time to live is given in
+		 * seconds.
+		 * 
+		 * @param text
+		 *            Text of the rule.
+		 * @return Parsed rule.
+		 * @throws IllegalArgumentException
+		 *             If the text is invalid.
+		 */
+		public static Rule parse(String text) {
+			long ttl = -1;
+			List<String> parameters = new ArrayList<>();
+			List<String> temporaryParameters = new ArrayList<>();
+			List<String> persistentParameters = new ArrayList<>();
+			for (String part : text.split(";")) {
+				String[] keyValue = part.split("=", 2);
+				if (keyValue.length != 2) {
+					throw new IllegalArgumentException("Invalid part of an output cache rule: " + part.trim());
+				}
+				String key = keyValue[0].trim();
+				String value = keyValue[1].trim();
+				switch (key) {
+				case "ttl":
+					try {
+						ttl = Long.parseLong(value);
+					} catch (NumberFormatException e) {
+						throw new IllegalArgumentException("Invalid time to live: " + value);
+					}
+					break;
+				case "params":
+					parameters.addAll(names(value));
+					break;
+				case "tparams":
+					temporaryParameters.addAll(names(value));
+					break;
+				case "pparams":
+					persistentParameters.addAll(names(value));
+					break;
+				default:
+					throw new IllegalArgumentException("Unknown part of an output cache rule: " + key);
+				}
+			}
+			if (ttl < 0) {
+				throw new IllegalArgumentException("Output cache rule has no time to live.");
+			}
+			return new Rule(ttl * 1000, parameters, temporaryParameters, persistentParameters);
+		}
+
+		/**
+		 * Method which splits a comma separated list of names.
+		 * 
+		 * @param value
+		 *            List of names.
+		 * @return Names.
+		 */
+		private static List<String> names(String value) {
+			List<String> names = new ArrayList<>();
+			for (String name : value.split(",")) {
+				if (!name.trim().isEmpty()) {
+					names.add(name.trim());
+				}
+			}
+			return names;
+		}
+
+		/**
+		 * Gets the number of milliseconds a response stays valid.
+		 * 
+		 * @return Time to live in milliseconds.
+		 */
+		public long getTtlMillis() {
+			return ttlMillis;
+		}
+
+		/**
+		 * Method which creates the key of the response to the request, from
+		 * the parameters the script reads and the ones named by the rule.
+		 * 
+		 * @param path
+		 *            Path of the script.
+		 * @param dependencies
+		 *            Dependencies of the script.
+		 * @param context
+		 *            Context of the request, before the script is executed.
+		 * @return Key of the response.
+		 */
+		public String key(String path, ScriptDependencies dependencies, RequestContext context) {
+			StringBuilder sb = new StringBuilder(path);
+			sb.append('\n').append(context.getStatusCode());
+			sb.append('\n').append(context.getMimeType());
+			sb.append('\n').append(context.getCharset().name());
+			for (String name : union(dependencies.getParameters(), parameters)) {
+				appendValue(sb, 'p', name, context.getParameter(name));
+			}
+			for (String name : union(dependencies.getTemporaryParameters(), temporaryParameters)) {
+				appendValue(sb, 't', name, context.getTemporaryParameter(name));
+			}
+			for (String name : union(dependencies.getPersistentParameters(), persistentParameters)) {
+				appendValue(sb, 's', name, context.getPersistentParameter(name));
+			}
+			return sb.toString();
+		}
+
+		/**
+		 * Method which joins the names found in the script with the ones named
+		 * by the rule.
+		 * 
+		 * @param found
+		 *            Names found in the script.
+		 * @param named
+		 *            Names named by the rule.
+		 * @return Sorted names.
+		 */
+		private static Set<String> union(Set<String> found, List<String> named) {
+			if (named.isEmpty()) {
+				return found;
+			}
+			Set<String> names = new TreeSet<>(found);
+			names.addAll(named);
+			return names;
+		}
+
+		/**
+		 * Method which appends the value of a parameter to the key. The length
+		 * of the value comes first, so no value can be mistaken for another.
+		 * 
+		 * @param sb
+		 *            Builder of the key.
+		 * @param kind
+		 *            Kind of the parameter.
+		 * @param name
+		 *            Name of the parameter.
+		 * @param value
+		 *            Value of the parameter, null if it is not set.
+		 */
+		private static void appendValue(StringBuilder sb, char kind, String name, String value) {
+			sb.append('\n').append(kind).append(name).append('=');
+			if (value == null) {
+				sb.append("-1");
+			} else {
+				sb.append(value.length()).append(':').append(value);
+			}
+		}
+	}
+
+	/**
+	 * Class that represents a cached response.
+	 * 
+	 * @author Dinz
+	 *
+	 */
+	public static class Entry {
+
+		/**
+		 * Script which produced the response.
+		 */
+		private final CompiledScript script;
+
+		/**
+		 * Response, header included.
+		 */
+		private final byte[] response;
+
+		/**
+		 * Number of bytes of the header.
+		 */
+		private final int headerLength;
+
+		/**
+		 * Value of {@link System#nanoTime()} when the response expires.
+		 */
+		private final long expires;
+
+		/**
+		 * Memory taken by the response.
+		 */
+		private final long size;
+
+		/**
+		 * Constructs a new entry.
+		 * 
+		 * @param script
+		 *            Script which produced the response.
+		 * @param response
+		 *            Response, header included.
+		 * @param headerLength
+		 *            Number of bytes of the header.
+		 * @param expires
+		 *            Value of {@link System#nanoTime()} when the response
+		 *            expires.
+		 * @param size
+		 *            Memory taken by the response.
+		 */
+		private Entry(CompiledScript script, byte[] response, int headerLength, long expires, long size) {
+			this.script = script;
+			this.response = response;
+			this.headerLength = headerLength;
+			this.expires = expires;
+			this.size = size;
+		}
+
+		/**
+		 * Gets the response. The array must not be modified.
+		 * 
+		 * @return Response, header included.
+		 */
+		public byte[] getResponse() {
+			return response;
+		}
+
+		/**
+		 * Gets the number of bytes of the header.
+		 * 
+		 * @return Length of the header.
+		 */
+		public int getHeaderLength() {
+			return headerLength;
+		}
+	}
+}
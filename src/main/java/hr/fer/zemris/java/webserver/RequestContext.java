@@ -10,6 +10,9 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 
+import hr.fer.zemris.java.custom.scripting.exec.ExecutionBudget;
+import hr.fer.zemris.java.custom.scripting.exec.ExecutionBudgetExceededException;
+
 /**
  * Class that represents a request context. It takes a client request and based
  * on the data received, forms an appropriate header and an output data for the
@@ -130,7 +133,8 @@ public class RequestContext {
 	private OutputStream outputStream;
 
 	/**
-	 * Charset of the context.
+	 * Charset of the context, resolved from the encoding when it is first
+	 * needed.
 	 */
 	private Charset charset;
 
@@ -184,6 +188,16 @@ public class RequestContext {
 	 */
 	private IDispatcher dispatcher;
 
+	/**
+	 * Number of body bytes written to the output stream.
+	 */
+	private long bytesWritten;
+
+	/**
+	 * Budget of the script which writes to the context, null if there is none.
+	 */
+	private ExecutionBudget executionBudget;
+
 	/**
 	 * Sets the output stream.
 	 * 
@@ -206,6 +220,20 @@ public class RequestContext {
 		}
 
 		this.encoding = encoding;
+		this.charset = null;
+	}
+
+	/**
+	 * Gets the charset the text written to the context is encoded with. Until
+	 * the header is generated the charset follows the encoding.
+	 * 
+	 * @return Charset of the context.
+	 */
+	public Charset getCharset() {
+		if (charset == null) {
+			charset = Charset.forName(encoding);
+		}
+		return charset;
 	}
 
 	/**
@@ -429,40 +457,136 @@ public class RequestContext {
 	}
 
 	/**
-	 * Method which writes the data to the output stream.
+	 * Gets the status code of the context.
+	 * 
+	 * @return Status code.
+	 */
+	public int getStatusCode() {
+		return statusCode;
+	}
+
+	/**
+	 * Gets the mime type of the context.
+	 * 
+	 * @return Mime type.
+	 */
+	public String getMimeType() {
+		return mimeType;
+	}
+
+	/**
+	 * Checks if the header has already been sent to the client.
+	 * 
+	 * @return True if the header has been generated, false otherwise.
+	 */
+	public boolean isHeaderGenerated() {
+		return headerGenerated;
+	}
+
+	/**
+	 * Gets the number of body bytes written to the client so far.
+	 * 
+	 * @return Number of written bytes.
+	 */
+	public long getBytesWritten() {
+		return bytesWritten;
+	}
+
+	/**
+	 * Sets the budget of the script which writes to the context. Every write
+	 * is counted against the budget until it is removed.
+	 * 
+	 * @param executionBudget
+	 *            Budget, or null to remove it.
+	 */
+	public void setExecutionBudget(ExecutionBudget executionBudget) {
+		this.executionBudget = executionBudget;
+	}
+
+	/**
+	 * Gets the budget of the script which writes to the context.
+	 * 
+	 * @return Budget, or null if there is none.
+	 */
+	public ExecutionBudget getExecutionBudget() {
+		return executionBudget;
+	}
+
+	/**
+	 * Method which writes the data to the output stream. The data is not
+	 * flushed; the server flushes the response when the request is finished.
 	 * 
 	 * @param data
 	 *            Data to be written.
 	 * @return Context.
 	 * @throws IOException
+	 * @throws ExecutionBudgetExceededException
+	 *             If the data exceeds the output of the execution budget.
 	 */
 	public RequestContext write(byte[] data) throws IOException {
+		if (executionBudget != null) {
+			executionBudget.output(data.length);
+		}
 		if (!headerGenerated) {
 			generateHeader();
 			headerGenerated = true;
 		}
 
 		outputStream.write(data, 0, data.length);
-		outputStream.flush();
+		bytesWritten += data.length;
 		return this;
 	}
 
 	/**
-	 * Method which writes the text to the output stream.
+	 * Method which sends the data written so far to the client. The header is
+	 * generated first if it hasn't been yet.
 	 * 
-	 * @param text
-	 *            Text to be written.
 	 * @return Context.
 	 * @throws IOException
+	 *             If the data can't be sent.
 	 */
-	public RequestContext write(String text) throws IOException {
+	public RequestContext flush() throws IOException {
 		if (!headerGenerated) {
 			generateHeader();
 			headerGenerated = true;
 		}
+		outputStream.flush();
+		return this;
+	}
 
-		byte[] data = text.getBytes(charset);
-		return this.write(data);
+	/**
+	 * Method which writes a complete response recorded earlier, header
+	 * included, instead of generating the header of this context. The
+	 * recorded header must be the one this context would generate.
+	 * 
+	 * @param response
+	 *            Recorded response.
+	 * @param headerLength
+	 *            Number of bytes of the header at the start of the response.
+	 * @return Context.
+	 * @throws IOException
+	 *             If the response can't be written.
+	 */
+	public RequestContext replay(byte[] response, int headerLength) throws IOException {
+		if (headerGenerated) {
+			throw new RuntimeException("Can't replay a response after creating header.");
+		}
+		headerGenerated = true;
+		outputStream.write(response, 0, response.length);
+		bytesWritten += response.length - headerLength;
+		return this;
+	}
+
+	/**
+	 * Method which writes the text to the output stream.
+	 * 
+	 * @param text
+	 *            Text to be written.
+	 * @return Context.
+	 * @throws IOException
+	 */
+	public RequestContext write(String text) throws IOException {
+		return this.write(text.getBytes(getCharset()));
 	}
 
 	/**
@@ -471,7 +595,7 @@ public class RequestContext {
 	 * @throws IOException
 	 */
 	private void generateHeader() throws IOException {
-		charset = Charset.forName(encoding);
+		Charset charset = getCharset();
 
 		String header = "HTTP/1.1 " + statusCode + " " + statusText + "\r\n" + "Content-Type: "
 				+ (mimeType.startsWith("text/") ? mimeType.concat("; charset=" + encoding) : mimeType) + "\r\n"
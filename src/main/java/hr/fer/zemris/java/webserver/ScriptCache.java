@@ -0,0 +1,247 @@
+package hr.fer.zemris.java.webserver;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import hr.fer.zemris.java.custom.scripting.compiler.CompiledScript;
+import hr.fer.zemris.java.custom.scripting.compiler.ScriptCompiler;
+import hr.fer.zemris.java.custom.scripting.compiler.ScriptDependencies;
+import hr.fer.zemris.java.custom.scripting.nodes.CompactDocument;
+import hr.fer.zemris.java.custom.scripting.nodes.DocumentNode;
+import hr.fer.zemris.java.custom.scripting.parser.SmartScriptParser;
+import hr.fer.zemris.java.webserver.metrics.Counter;
+import hr.fer.zemris.java.webserver.metrics.MetricsRegistry;
+
+/**
+ * Class that represents a cache of compiled smart scripts. Every script is
+ * read, parsed and compiled once, and the compiled script is shared by all the
+ * worker threads. A cached script is compiled again when its file changes on
+ * the disk. A warning is printed for every compiled script whose dependencies
+ * can't be determined statically, since its output can't be cached. If the
+ * cache has a {@link CompiledScriptStore}, the parsed scripts are read from it
+ * and written to it, so they are parsed only once across restarts.
+ * <p>
+ * While a {@link FileWatcher} which reports the changes of the scripts is
+ * watching, the files are not checked on every request; the watcher
+ * {@link #invalidate(Path) invalidates} the changed scripts instead.
+ * 
+ * @author Dinz
+ *
+ */
+public class ScriptCache {
+
+	/**
+	 * Cached scripts by their path.
+	 */
+	private final Map<Path, CachedScript> scripts = new ConcurrentHashMap<>();
+
+	/**
+	 * Number of requests served from the cache.
+	 */
+	private final Counter hits;
+
+	/**
+	 * Number of requests which had to compile the script.
+	 */
+	private final Counter misses;
+
+	/**
+	 * Number of compiled scripts whose dependencies can't be determined.
+	 */
+	private final Counter undetermined;
+
+	/**
+	 * Store of the parsed scripts, null if the scripts are always parsed.
+	 */
+	private final CompiledScriptStore store;
+
+	/**
+	 * Watcher which reports the changes of the scripts, null if there is none.
+	 */
+	private volatile FileWatcher watcher;
+
+	/**
+	 * Number of invalidations, used to notice an invalidation while a script
+	 * is compiled.
+	 */
+	private final AtomicLong invalidations = new AtomicLong();
+
+	/**
+	 * Constructs a new script cache which always parses the scripts.
+	 * 
+	 * @param metrics
+	 *            Registry where the metrics of the cache are registered.
+	 */
+	public ScriptCache(MetricsRegistry metrics) {
+		this(metrics, null);
+	}
+
+	/**
+	 * Constructs a new script cache.
+	 * 
+	 * @param metrics
+	 *            Registry where the metrics of the cache are registered.
+	 * @param store
+	 *            Store of the parsed scripts, null if the scripts are always
+	 *            parsed.
+	 */
+	public ScriptCache(MetricsRegistry metrics, CompiledScriptStore store) {
+		this.store = store;
+		hits = metrics.counter("scripts.cache.hits");
+		misses = metrics.counter("scripts.cache.misses");
+		undetermined = metrics.counter("scripts.cache.undetermined");
+		metrics.gauge("scripts.cache.size", () -> scripts.size());
+	}
+
+	/**
+	 * Gets the compiled script at the given path, compiling the script if it is
+	 * not cached or has changed since it was cached.
+	 * 
+	 * @param path
+	 *            Path of the script.
+	 * @return Compiled script.
+	 * @throws java.nio.file.NoSuchFileException
+	 *             If the script doesn't exist.
+	 * @throws java.nio.file.AccessDeniedException
+	 *             If the script can't be read because of its permissions.
+	 * @throws IOException
+	 *             If the script can't be read.
+	 */
+	public CompiledScript get(Path path) throws IOException {
+		CachedScript cached = scripts.get(path);
+		FileWatcher currentWatcher = watcher;
+		if (cached != null && currentWatcher != null && currentWatcher.isWatching()) {
+			hits.increment();
+			return cached.script;
+		}
+
+		long invalidation = invalidations.get();
+		BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+		long lastModified = attributes.lastModifiedTime().toMillis();
+		long size = attributes.size();
+		if (cached != null && cached.lastModified == lastModified && cached.size == size) {
+			hits.increment();
+			return cached.script;
+		}
+
+		misses.increment();
+		byte[] source = Files.readAllBytes(path);
+		CompiledScript script = ScriptCompiler.compile(parse(path, source));
+		ScriptDependencies dependencies = script.getDependencies();
+		if (!dependencies.isDetermined()) {
+			undetermined.increment();
+			System.err.println("Warning: dependencies of " + path + " can't be determined statically: "
+					+ String.join(" ", dependencies.getWarnings()));
+		}
+		CachedScript compiled = new CachedScript(script, lastModified, size);
+		scripts.put(path, compiled);
+		if (invalidations.get() != invalidation) {
+			// the file may have changed after it was read
+			scripts.remove(path, compiled);
+		}
+		return script;
+	}
+
+	/**
+	 * Sets the watcher which reports the changes of the scripts. While it is
+	 * watching, the cached scripts are returned without checking their files.
+	 * 
+	 * @param watcher
+	 *            Watcher, null to check the files on every request.
+	 */
+	public void setWatcher(FileWatcher watcher) {
+		this.watcher = watcher;
+	}
+
+	/**
+	 * Removes the script at the given path from the cache, or all the scripts
+	 * in it if the path is a directory.
+	 * 
+	 * @param path
+	 *            Path of the changed script or directory.
+	 */
+	public void invalidate(Path path) {
+		invalidations.incrementAndGet();
+		scripts.keySet().removeIf(p -> p.startsWith(path));
+	}
+
+	/**
+	 * Method which parses the script, or reads it from the store if the store
+	 * has it for the current source.
+	 * 
+	 * @param path
+	 *            Path of the script.
+	 * @param source
+	 *            Source of the script.
+	 * @return Document node of the script.
+	 */
+	private DocumentNode parse(Path path, byte[] source) {
+		if (store == null) {
+			return new SmartScriptParser(new String(source, StandardCharsets.UTF_8)).getDocumentNode();
+		}
+		CompactDocument document = store.load(path, source);
+		if (document == null) {
+			document = CompactDocument
+					.of(new SmartScriptParser(new String(source, StandardCharsets.UTF_8)).getDocumentNode());
+			try {
+				store.store(path, source, document);
+			} catch (IOException e) {
+				System.err.println("Warning: parsed " + path + " can't be stored: " + e.getMessage());
+			}
+		}
+		return document.getDocumentNode();
+	}
+
+	/**
+	 * Removes all the scripts from the cache.
+	 */
+	public void clear() {
+		scripts.clear();
+	}
+
+	/**
+	 * Class that represents a cached script together with the state of its file
+	 * at the time it was compiled.
+	 * 
+	 * @author Dinz
+	 *
+	 */
+	private static class CachedScript {
+		/**
+		 * Compiled script.
+		 */
+		final CompiledScript script;
+
+		/**
+		 * Modification time of the file.
+		 */
+		final long lastModified;
+
+		/**
+		 * Size of the file.
+		 */
+		final long size;
+
+		/**
+		 * Constructs a new cached script.
+		 * 
+		 * @param script
+		 *            Compiled script.
+		 * @param lastModified
+		 *            Modification time of the file.
+		 * @param size
+		 *            Size of the file.
+		 */
+		CachedScript(CompiledScript script, long lastModified, long size) {
+			this.script = script;
+			this.lastModified = lastModified;
+			this.size = size;
+		}
+	}
+}
@@ -0,0 +1,266 @@
+package hr.fer.zemris.java.webserver;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import hr.fer.zemris.java.webserver.metrics.Counter;
+import hr.fer.zemris.java.webserver.metrics.MetricsRegistry;
+import hr.fer.zemris.java.webserver.metrics.Timer;
+
+/**
+ * Class that compiles all the scripts under the document root into the
+ * {@link ScriptCache} when the server starts, so the first requests don't pay
+ * for reading, lexing and parsing. The scripts are compiled in parallel on a
+ * {@link ForkJoinPool}, and the time of every script and the total time are
+ * printed and published as metrics.
+ * <p>
+ * A script which can't be compiled is reported and skipped, or, if the
+ * precompiler fails fast, stops the precompilation. The server waits for a
+ * precompiler which fails fast and refuses to start after such a failure. The
+ * server is ready once the precompilation is done without one.
+ * 
+ * @author Dinz
+ *
+ */
+public class ScriptPrecompiler {
+
+	/**
+	 * Cache the scripts are compiled into.
+	 */
+	private final ScriptCache scriptCache;
+
+	/**
+	 * Directory searched for the scripts.
+	 */
+	private final Path documentRoot;
+
+	/**
+	 * Flag which tells if the first failed script stops the precompilation.
+	 */
+	private final boolean failFast;
+
+	/**
+	 * Pool the scripts are compiled on.
+	 */
+	private final ForkJoinPool pool;
+
+	/**
+	 * Latch released when the precompilation is done.
+	 */
+	private final CountDownLatch done = new CountDownLatch(1);
+
+	/**
+	 * Number of compiled scripts.
+	 */
+	private final Counter compiled;
+
+	/**
+	 * Number of scripts which could not be compiled.
+	 */
+	private final Counter failed;
+
+	/**
+	 * Compile times of the scripts.
+	 */
+	private final Timer compileTimes;
+
+	/**
+	 * Total time of the precompilation in milliseconds, 0 until it is done.
+	 */
+	private volatile long totalMillis;
+
+	/**
+	 * Failure which stopped the precompilation, null if there is none.
+	 */
+	private volatile Exception failure;
+
+	/**
+	 * Constructs a new precompiler.
+	 * 
+	 * @param scriptCache
+	 *            Cache the scripts are compiled into.
+	 * @param documentRoot
+	 *            Directory searched for the scripts.
+	 * @param failFast
+	 *            True if the first failed script stops the precompilation,
+	 *            false if the failed scripts are only reported.
+	 * @param threads
+	 *            Number of threads, or 0 for one per processor.
+	 * @param metrics
+	 *            Registry where the metrics of the precompilation are
+	 *            registered.
+	 * @throws IllegalArgumentException
+	 *             If the number of threads is negative.
+	 */
+	public ScriptPrecompiler(ScriptCache scriptCache, Path documentRoot, boolean failFast, int threads,
+			MetricsRegistry metrics) {
+		if (threads < 0) {
+			throw new IllegalArgumentException("Number of threads can't be negative.");
+		}
+		this.scriptCache = scriptCache;
+		this.documentRoot = documentRoot;
+		this.failFast = failFast;
+		this.pool = new ForkJoinPool(threads == 0 ? Runtime.getRuntime().availableProcessors() : threads);
+		compiled = metrics.counter("scripts.precompile.compiled");
+		failed = metrics.counter("scripts.precompile.failed");
+		compileTimes = metrics.timer("scripts.precompile");
+		metrics.gauge("scripts.precompile.totalMillis", () -> totalMillis);
+	}
+
+	/**
+	 * Starts the precompilation in the background.
+	 */
+	public void start() {
+		pool.execute(this::precompile);
+	}
+
+	/**
+	 * Waits until the precompilation is done.
+	 * 
+	 * @throws InterruptedException
+	 *             If the waiting thread is interrupted.
+	 */
+	public void await() throws InterruptedException {
+		done.await();
+	}
+
+	/**
+	 * Checks if the precompilation is done without a failure which stopped it.
+	 * 
+	 * @return True if the server is ready, false otherwise.
+	 */
+	public boolean isReady() {
+		return done.getCount() == 0 && failure == null;
+	}
+
+	/**
+	 * Gets the failure which stopped the precompilation.
+	 * 
+	 * @return Failure, or null if there is none.
+	 */
+	public Exception getFailure() {
+		return failure;
+	}
+
+	/**
+	 * Stops the threads of the precompiler.
+	 */
+	public void shutdown() {
+		pool.shutdownNow();
+	}
+
+	/**
+	 * Method which finds and compiles all the scripts.
+	 */
+	private void precompile() {
+		long start = System.nanoTime();
+		try {
+			List<Path> scripts;
+			try (Stream<Path> files = Files.walk(documentRoot)) {
+				scripts = files.filter(p -> p.toString().endsWith(".smscr")).map(Path::normalize)
+						.collect(Collectors.toList());
+			}
+			new CompileAction(scripts, 0, scripts.size()).invoke();
+		} catch (IOException | RuntimeException e) {
+			System.err.println("Error: scripts in " + documentRoot + " can't be precompiled: " + e.getMessage());
+			failure = e;
+		} finally {
+			totalMillis = Math.max(1, (System.nanoTime() - start) / 1_000_000);
+			System.out.println(String.format(Locale.ROOT, "Precompiled %d scripts (%d failed) in %d ms on %d threads.",
+					compiled.getCount(), failed.getCount(), totalMillis, pool.getParallelism()));
+			done.countDown();
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Method which compiles the script into the cache.
+	 * 
+	 * @param script
+	 *            Path of the script.
+	 */
+	private void compile(Path script) {
+		if (failFast && failure != null) {
+			return;
+		}
+		long start = System.nanoTime();
+		try {
+			scriptCache.get(script);
+			long nanos = System.nanoTime() - start;
+			compileTimes.record(nanos);
+			compiled.increment();
+			System.out.println(String.format(Locale.ROOT, "Precompiled %s in %.1f ms.",
+					documentRoot.relativize(script), nanos / 1e6));
+		} catch (IOException | RuntimeException e) {
+			failed.increment();
+			System.err.println("Error: " + script + " can't be compiled: " + e.getMessage());
+			if (failFast) {
+				failure = e;
+			}
+		}
+	}
+
+	/**
+	 * Class that represents the compilation of a range of scripts, which is
+	 * split in halves until every script is compiled by its own task.
+	 * 
+	 * @author Dinz
+	 *
+	 */
+	private class CompileAction extends RecursiveAction {
+
+		/**
+		 * Serial version UID.
+		 */
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * All the scripts.
+		 */
+		private final List<Path> scripts;
+
+		/**
+		 * Index of the first script of the range.
+		 */
+		private final int from;
+
+		/**
+		 * Index after the last script of the range.
+		 */
+		private final int to;
+
+		/**
+		 * Constructs a new action.
+		 * 
+		 * @param scripts
+		 *            All the scripts.
+		 * @param from
+		 *            Index of the first script of the range.
+		 * @param to
+		 *            Index after the last script of the range.
+		 */
+		CompileAction(List<Path> scripts, int from, int to) {
+			this.scripts = scripts;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from == 1) {
+				compile(scripts.get(from));
+			} else if (to - from > 1) {
+				int middle = (from + to) >>> 1;
+				invokeAll(new CompileAction(scripts, from, middle), new CompileAction(scripts, middle, to));
+			}
+		}
+	}
+}
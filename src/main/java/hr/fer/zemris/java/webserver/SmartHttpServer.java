@@ -1,34 +1,48 @@
 package hr.fer.zemris.java.webserver;
 
-import java.io.ByteArrayOutputStream;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.io.PushbackInputStream;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.AccessDeniedException;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Random;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 
-import hr.fer.zemris.java.custom.scripting.exec.SmartScriptEngine;
-import hr.fer.zemris.java.custom.scripting.parser.SmartScriptParser;
+import javax.management.JMException;
+
+import hr.fer.zemris.java.custom.scripting.compiler.CompiledScript;
+import hr.fer.zemris.java.custom.scripting.exec.ExecutionBudget;
+import hr.fer.zemris.java.custom.scripting.exec.ExecutionBudgetExceededException;
 import hr.fer.zemris.java.webserver.RequestContext.RCCookie;
+import hr.fer.zemris.java.webserver.log.AccessLog;
+import hr.fer.zemris.java.webserver.log.AccessLogEntry;
+import hr.fer.zemris.java.webserver.log.AccessLogFormat;
+import hr.fer.zemris.java.webserver.metrics.Counter;
+import hr.fer.zemris.java.webserver.metrics.InstrumentedThreadPool;
+import hr.fer.zemris.java.webserver.metrics.Meter;
+import hr.fer.zemris.java.webserver.metrics.MetricsMBean;
+import hr.fer.zemris.java.webserver.metrics.MetricsRegistry;
+import hr.fer.zemris.java.webserver.metrics.MetricsWorker;
 
 /**
  * Class that represents a smart http server. This is a simple server
@@ -39,6 +53,16 @@ import hr.fer.zemris.java.webserver.RequestContext.RCCookie;
  *
  */
 public class SmartHttpServer {
+	/**
+	 * JMX name under which the server metrics are published.
+	 */
+	private static final String METRICS_MBEAN_NAME = "hr.fer.zemris.java.webserver:type=SmartHttpServer,name=Metrics";
+
+	/**
+	 * Size of the buffer a response is collected in before it is sent.
+	 */
+	private static final int RESPONSE_BUFFER_SIZE = 8192;
+
 	@SuppressWarnings("unused")
 	/**
 	 * Address of the server.
@@ -60,15 +84,43 @@ public class SmartHttpServer {
 	 */
 	private int workerThreads;
 
+	/**
+	 * Maximal number of connections waiting for a free worker thread.
+	 */
+	private int workerQueue;
+
 	/**
 	 * Duration of the session on the server.
 	 */
 	private int sessionTimeout;
 
+	/**
+	 * Flag which notes that the static prologue of a script is sent to the
+	 * client before the rest of the script runs.
+	 */
+	private boolean earlyFlush;
+
+	/**
+	 * Maximal number of loop iterations of a script execution, 0 if there is no
+	 * limit.
+	 */
+	private long scriptMaxIterations;
+
+	/**
+	 * Maximal number of bytes written by a script execution, 0 if there is no
+	 * limit.
+	 */
+	private long scriptMaxOutputBytes;
+
+	/**
+	 * Time of a script execution in milliseconds, 0 if there is no limit.
+	 */
+	private long scriptTimeoutMillis;
+
 	/**
 	 * Map of mime types supported on this server.
 	 */
-	private Map<String, String> mimeTypes = new HashMap<String, String>();
+	private volatile Map<String, String> mimeTypes = new HashMap<String, String>();
 
 	/**
 	 * Server thread instance.
@@ -101,6 +153,22 @@ public class SmartHttpServer {
 	 */
 	private Map<String, IWebWorker> workersMap = new HashMap<>();
 
+	/**
+	 * Path the metrics are published on over HTTP, null if they aren't.
+	 */
+	private String metricsPath;
+
+	/**
+	 * Determines whether the metrics are shown only to the clients connected
+	 * through the loopback address.
+	 */
+	private boolean metricsLocalOnly;
+
+	/**
+	 * Worker which shows the metrics.
+	 */
+	private IWebWorker metricsWorker = new MetricsWorker();
+
 	/**
 	 * Map of currently active sessions.
 	 */
@@ -116,6 +184,87 @@ public class SmartHttpServer {
 	 */
 	private CleanerThread cleanerThread = new CleanerThread();
 
+	/**
+	 * Access log of the server, or null if access logging is turned off.
+	 */
+	private AccessLog accessLog;
+
+	/**
+	 * Registry of the server metrics.
+	 */
+	private MetricsRegistry metrics = MetricsRegistry.getDefault();
+
+	/**
+	 * MBean which publishes the server metrics over JMX.
+	 */
+	private MetricsMBean metricsMBean;
+
+	/**
+	 * Connections accepted by the server thread.
+	 */
+	private Meter acceptedConnections = metrics.meter("connections.accepted");
+
+	/**
+	 * Connections which are currently being served.
+	 */
+	private Counter openConnections = metrics.counter("connections.open");
+
+	/**
+	 * Connections rejected because the thread pool was full.
+	 */
+	private Counter rejectedConnections = metrics.counter("connections.rejected");
+
+	/**
+	 * Requests which ended with an exception.
+	 */
+	private Counter failedRequests = metrics.counter("requests.failed");
+
+	/**
+	 * Number of created sessions.
+	 */
+	private Counter createdSessions = metrics.counter("sessions.created");
+
+	/**
+	 * Number of expired sessions.
+	 */
+	private Counter expiredSessions = metrics.counter("sessions.expired");
+
+	/**
+	 * States of the connections, one per worker thread, reused by every
+	 * connection the thread serves.
+	 */
+	private final ThreadLocal<ConnectionState> connectionStates = ThreadLocal
+			.withInitial(() -> new ConnectionState(RESPONSE_BUFFER_SIZE));
+
+	/**
+	 * Cache of the parsed smart scripts.
+	 */
+	private ScriptCache scriptCache;
+
+	/**
+	 * Cache of the script responses, null if it is not configured.
+	 */
+	private OutputCache outputCache;
+
+	/**
+	 * Precompiler of the scripts, null if the scripts are compiled only when
+	 * they are requested.
+	 */
+	private ScriptPrecompiler precompiler;
+
+	/**
+	 * Flag which tells if the server waits for the precompilation before it
+	 * accepts connections. It is always set when the precompilation fails
+	 * fast, so the server never runs with a script which can't be compiled.
+	 */
+	private boolean awaitPrecompilation;
+
+	/**
+	 * Watcher of the document root and the configuration, null if the files
+	 * are checked when they are used.
+	 */
+	private FileWatcher fileWatcher;
+
 	/**
 	 * Constructs a new Smart Http Server
 	 * 
@@ -136,16 +285,44 @@ public class SmartHttpServer {
 		domainName = properties.getProperty("server.domainName");
 		port = Integer.parseInt(properties.getProperty("server.port"));
 		workerThreads = Integer.parseInt(properties.getProperty("server.workerThreads"));
+		workerQueue = Integer.parseInt(properties.getProperty("server.workerQueue", "0"));
+		if (workerQueue <= 0) {
+			workerQueue = Integer.MAX_VALUE;
+		}
 		sessionTimeout = Integer.parseInt(properties.getProperty("session.timeout"));
+		earlyFlush = Boolean.parseBoolean(properties.getProperty("server.earlyFlush", "false"));
+		scriptMaxIterations = Long.parseLong(properties.getProperty("server.script.maxIterations", "10000000"));
+		scriptMaxOutputBytes = Long.parseLong(properties.getProperty("server.script.maxOutputBytes", "16777216"));
+		scriptTimeoutMillis = Long.parseLong(properties.getProperty("server.script.timeoutMillis", "10000"));
 		documentRoot = Paths.get(properties.getProperty("server.documentRoot"));
 		mimeConfig = properties.getProperty("server.mimeConfig");
 		workersConfig = properties.getProperty("server.workers");
 		loadMimeTypes();
 		loadWorkers();
+		loadMetricsEndpoint(properties);
+		loadAccessLog(properties);
+		loadOutputCache(properties);
+		loadScriptCache(properties);
+		loadPrecompiler(properties);
+		loadFileWatcher(properties, Paths.get(configFileName));
+		registerMetrics();
 
 		serverThread = new ServerThread();
 	}
 
+	/**
+	 * Method that registers the gauges of the server in the metrics registry.
+	 */
+	private void registerMetrics() {
+		metrics.gauge("sessions.active", () -> sessions.size());
+		metrics.gauge("server.ready", () -> precompiler == null || precompiler.isReady() ? 1 : 0);
+		if (accessLog != null) {
+			metrics.gauge("accessLog.logged", () -> accessLog.getLoggedCount());
+			metrics.gauge("accessLog.dropped", () -> accessLog.getDroppedCount());
+			metrics.gauge("accessLog.pending", () -> accessLog.getPendingCount());
+		}
+	}
+
 	/**
 	 * Method that loads the workers to the workers map.
 	 * 
@@ -175,6 +352,155 @@ public class SmartHttpServer {
 		}
 	}
 
+	/**
+	 * Method that sets up the publishing of the metrics over HTTP if it is
+	 * configured. The metrics are off by default, since they tell a lot about
+	 * the server; the local mode shows them only to the clients on the loopback
+	 * address, and the all mode to everyone.
+	 * 
+	 * @param properties
+	 *            Server properties.
+	 * @throws IllegalArgumentException
+	 *             If the metrics mode is unknown.
+	 */
+	private void loadMetricsEndpoint(Properties properties) {
+		String mode = properties.getProperty("server.metrics.http", "off").trim();
+		if (mode.equals("off")) {
+			return;
+		}
+		if (!mode.equals("local") && !mode.equals("all")) {
+			throw new IllegalArgumentException("Unknown metrics mode " + mode + ".");
+		}
+		metricsPath = properties.getProperty("server.metrics.path", "/metrics").trim();
+		metricsLocalOnly = mode.equals("local");
+	}
+
+	/**
+	 * Method that creates the access log if it is configured.
+	 * 
+	 * @param properties
+	 *            Server properties.
+	 * @throws IOException
+	 */
+	private void loadAccessLog(Properties properties) throws IOException {
+		String accessLogFile = properties.getProperty("server.accessLog");
+		if (accessLogFile == null || accessLogFile.trim().isEmpty()) {
+			return;
+		}
+		String format = properties.getProperty("server.accessLog.format", AccessLogFormat.DEFAULT_PATTERN);
+		int bufferSize = Integer.parseInt(properties.getProperty("server.accessLog.bufferSize", "8192"));
+		long maxSize = Long.parseLong(properties.getProperty("server.accessLog.maxSize", "10485760"));
+		long rotateInterval = Long.parseLong(properties.getProperty("server.accessLog.rotateInterval", "86400"));
+		accessLog = new AccessLog(Paths.get(accessLogFile.trim()), format, bufferSize, maxSize, rotateInterval);
+	}
+
+	/**
+	 * Method that creates the output cache if it is configured.
+	 * 
+	 * @param properties
+	 *            Server properties.
+	 * @throws IOException
+	 */
+	private void loadOutputCache(Properties properties) throws IOException {
+		String rulesFile = properties.getProperty("server.outputCache");
+		if (rulesFile == null || rulesFile.trim().isEmpty()) {
+			return;
+		}
+		long maxBytes = Long.parseLong(properties.getProperty("server.outputCache.maxBytes", "16777216"));
+		outputCache = new OutputCache(Paths.get(rulesFile.trim()), maxBytes, metrics);
+	}
+
+	/**
+	 * Method that creates the script cache, with the store of the parsed
+	 * scripts if it is configured.
+	 * 
+	 * @param properties
+	 *            Server properties.
+	 */
+	private void loadScriptCache(Properties properties) {
+		String storeDirectory = properties.getProperty("server.compiledScripts");
+		CompiledScriptStore store = null;
+		if (storeDirectory != null && !storeDirectory.trim().isEmpty()) {
+			store = new CompiledScriptStore(documentRoot, Paths.get(storeDirectory.trim()), metrics);
+		}
+		scriptCache = new ScriptCache(metrics, store);
+	}
+
+	/**
+	 * Method that creates the precompiler of the scripts if it is configured.
+	 * 
+	 * @param properties
+	 *            Server properties.
+	 * @throws IllegalArgumentException
+	 *             If the precompilation mode is unknown.
+	 */
+	private void loadPrecompiler(Properties properties) {
+		String mode = properties.getProperty("server.precompile", "none").trim();
+		if (mode.equals("none")) {
+			return;
+		}
+		if (!mode.equals("log") && !mode.equals("fail")) {
+			throw new IllegalArgumentException("Unknown precompilation mode " + mode + ".");
+		}
+		int threads = Integer.parseInt(properties.getProperty("server.precompile.threads", "0"));
+		boolean failFast = mode.equals("fail");
+		// a failed script must stop the server before it serves anything
+		awaitPrecompilation = failFast
+				|| Boolean.parseBoolean(properties.getProperty("server.precompile.await", "false"));
+		precompiler = new ScriptPrecompiler(scriptCache, documentRoot, failFast, threads, metrics);
+	}
+
+	/**
+	 * Method that creates the watcher of the document root and the
+	 * configuration directories if it is configured.
+	 * 
+	 * @param properties
+	 *            Server properties.
+	 * @param configFile
+	 *            Configuration file of the server.
+	 */
+	private void loadFileWatcher(Properties properties, Path configFile) {
+		if (!Boolean.parseBoolean(properties.getProperty("server.watch", "false"))) {
+			return;
+		}
+		long coalesceMillis = Long.parseLong(properties.getProperty("server.watch.coalesceMillis", "50"));
+		long pollMillis = Long.parseLong(properties.getProperty("server.watch.pollMillis", "2000"));
+		List<Path> configDirectories = new ArrayList<>();
+		configDirectories.add(configFile.toAbsolutePath().getParent());
+		configDirectories.add(Paths.get(mimeConfig).toAbsolutePath().getParent());
+		if (outputCache != null) {
+			configDirectories.add(outputCache.getRulesFile().toAbsolutePath().getParent());
+		}
+		fileWatcher = new FileWatcher(Arrays.asList(documentRoot), configDirectories, coalesceMillis, pollMillis,
+				this::fileChanged, metrics);
+	}
+
+	/**
+	 * Method that invalidates everything kept from the changed file: the
+	 * compiled scripts and cached responses of the document root, the mime
+	 * types and the output cache rules.
+	 * 
+	 * @param path
+	 *            Path of the changed file or directory.
+	 */
+	private void fileChanged(Path path) {
+		Path root = documentRoot.toAbsolutePath().normalize();
+		if (path.startsWith(root)) {
+			scriptCache.invalidate(path);
+			if (outputCache != null) {
+				outputCache.invalidate("/" + root.relativize(path).toString().replace('\\', '/'));
+			}
+		} else if (path.equals(Paths.get(mimeConfig).toAbsolutePath().normalize())) {
+			try {
+				loadMimeTypes();
+			} catch (IOException | RuntimeException e) {
+				System.err.println("Warning: mime types in " + path + " can't be loaded: " + e.getMessage());
+			}
+		} else if (outputCache != null && path.equals(outputCache.getRulesFile().toAbsolutePath().normalize())) {
+			outputCache.reloadRules();
+		}
+	}
+
 	/**
 	 * Method that loads the mime types into a mime type map.
 	 * 
@@ -183,27 +509,67 @@ public class SmartHttpServer {
 	 */
 	private void loadMimeTypes() throws FileNotFoundException, IOException {
 		List<String> mimes = Files.readAllLines(Paths.get(mimeConfig));
+		Map<String, String> loadedTypes = new HashMap<>();
 		for (String mime : mimes) {
 			if (!mime.startsWith("#") && !mime.isEmpty()) {
 				String key = mime.split("=")[0].trim();
 				String value = mime.split("=")[1].trim();
 
-				mimeTypes.put(key, value);
+				loadedTypes.put(key, value);
 			}
 		}
+		mimeTypes = loadedTypes;
 
 	}
 
 	/**
-	 * Starts the server.
+	 * Starts the server. If the server is configured to wait for the
+	 * precompilation of the scripts, connections are accepted only after it is
+	 * done; when the precompilation fails fast, the server waits for it and
+	 * doesn't start if a script can't be compiled.
+	 * 
+	 * @throws IllegalStateException
+	 *             If the server waits for the precompilation and it fails.
 	 */
 	protected synchronized void start() {
 		// … start server thread if not already running …
 		// … init threadpool by Executors.newFixedThreadPool(...); …
 		if (!serverThread.isAlive()) {
+			if (fileWatcher != null) {
+				try {
+					fileWatcher.start();
+					scriptCache.setWatcher(fileWatcher);
+				} catch (IOException e) {
+					System.err.println("Warning: files can't be watched: " + e.getMessage());
+				}
+			}
+			if (precompiler != null) {
+				precompiler.start();
+				if (awaitPrecompilation) {
+					try {
+						precompiler.await();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						return;
+					}
+					if (precompiler.getFailure() != null) {
+						if (fileWatcher != null) {
+							scriptCache.setWatcher(null);
+							fileWatcher.close();
+						}
+						throw new IllegalStateException("Scripts could not be precompiled.", precompiler.getFailure());
+					}
+				}
+			}
+			threadPool = new InstrumentedThreadPool(workerThreads, workerQueue, metrics, "pool");
 			serverThread.start();
-			threadPool = Executors.newFixedThreadPool(workerThreads);
 			cleanerThread.start();
+			try {
+				metricsMBean = new MetricsMBean(metrics, METRICS_MBEAN_NAME);
+				metricsMBean.register();
+			} catch (JMException e) {
+				e.printStackTrace();
+			}
 		}
 	}
 
@@ -217,6 +583,23 @@ public class SmartHttpServer {
 			serverThread.interrupt();
 			threadPool.shutdown();
 			cleanerThread.interrupt();
+			if (precompiler != null) {
+				precompiler.shutdown();
+			}
+			if (fileWatcher != null) {
+				scriptCache.setWatcher(null);
+				fileWatcher.close();
+			}
+			if (accessLog != null) {
+				accessLog.close();
+			}
+			if (metricsMBean != null) {
+				try {
+					metricsMBean.unregister();
+				} catch (JMException e) {
+					e.printStackTrace();
+				}
+			}
 		}
 	}
 
@@ -264,13 +647,40 @@ public class SmartHttpServer {
 				serverSocket.bind(new InetSocketAddress((InetAddress) null, port));
 				while (true) {
 					Socket client = serverSocket.accept();
+					acceptedConnections.mark();
+					openConnections.increment();
 					ClientWorker cw = new ClientWorker(client);
-					threadPool.submit(cw);
+					try {
+						threadPool.execute(cw);
+					} catch (RejectedExecutionException ex) {
+						openConnections.decrement();
+						rejectedConnections.increment();
+						reject(client);
+					}
 				}
 			} catch (IOException ex) {
 				ex.printStackTrace();
 			}
 		}
+
+		/**
+		 * Method that tells the client the server is too busy and closes the
+		 * connection.
+		 * 
+		 * @param client
+		 *            Client socket.
+		 */
+		private void reject(Socket client) {
+			try {
+				client.getOutputStream()
+						.write(("HTTP/1.1 503 Service Unavailable\r\n" + "Server: Simple java server\r\n"
+								+ "Content-Length: 0\r\n" + "Connection: close\r\n" + "\r\n")
+										.getBytes(StandardCharsets.US_ASCII));
+				client.close();
+			} catch (IOException ex) {
+				// the client is gone anyway
+			}
+		}
 	}
 
 	/**
@@ -291,10 +701,11 @@ public class SmartHttpServer {
 		/**
 		 * Input stream.
 		 */
-		private PushbackInputStream istream;
+		private InputStream istream;
 
 		/**
-		 * Output stream.
+		 * Output stream, buffered so the response is sent in as few packets as
+		 * possible.
 		 */
 		private OutputStream ostream;
 
@@ -326,7 +737,7 @@ public class SmartHttpServer {
 		/**
 		 * Map of persistent parameters.
 		 */
-		private Map<String, String> permParams = new HashMap<String, String>();
+		private Map<String, String> permParams;
 
 		/**
 		 * List of output cookies.
@@ -343,6 +754,33 @@ public class SmartHttpServer {
 		 */
 		private RequestContext context = null;
 
+		/**
+		 * Requested path, including the query string.
+		 */
+		private String reqPath;
+
+		/**
+		 * Status code of the error sent to the client, or 0 if no error was sent.
+		 */
+		private int errorStatus;
+
+		/**
+		 * Exception which broke the request, if any.
+		 */
+		private Throwable failure;
+
+		/**
+		 * Stream directly above the socket, which notes when the first byte was
+		 * sent.
+		 */
+		private FirstByteOutputStream firstByteStream;
+
+		/**
+		 * Path of the executed script relative to the document root, null if no
+		 * script was executed.
+		 */
+		private String scriptName;
+
 		/**
 		 * Constructs a new client worker.
 		 * 
@@ -356,24 +794,27 @@ public class SmartHttpServer {
 
 		@Override
 		public void run() {
-
+			long startMillis = System.currentTimeMillis();
+			long startNanos = System.nanoTime();
+			ConnectionState state = connectionStates.get();
+			firstByteStream = state.getFirstByteStream();
 			try {
-				istream = new PushbackInputStream(csocket.getInputStream());
-				ostream = csocket.getOutputStream();
+				istream = csocket.getInputStream();
+				state.bind(csocket.getOutputStream());
+				ostream = state.getResponseStream();
 
-				byte[] requestBytes = readRequest(istream);
-				if (requestBytes == null) {
+				String requestStr = readRequest(istream, state.getRequestBuffer());
+				if (requestStr == null) {
 					sendError(ostream, 400, "Bad request");
 					return;
 				}
-				String requestStr = new String(requestBytes, StandardCharsets.US_ASCII);
 
 				List<String> request = extractHeaders(requestStr);
 
 				String firstLine = request.get(0);
 				String[] extractions = firstLine.split("\\s+");
 				method = extractions[0].trim();
-				String reqPath = extractions[1].trim();
+				reqPath = extractions[1].trim();
 				version = extractions[2].trim();
 
 				if (!method.equals("GET") || (!version.equals("HTTP/1.0") && !version.equals("HTTP/1.1"))) {
@@ -406,13 +847,83 @@ public class SmartHttpServer {
 				try {
 					internalDispatchRequest(path, true);
 				} catch (Exception e) {
-					e.printStackTrace();
+					reportFailure(e);
+					if (errorStatus == 0 && (context == null || !context.isHeaderGenerated())) {
+						sendError(ostream, 500, "Internal Server Error");
+					}
 				}
 
+				ostream.flush();
+				recordTimeToFirstByte(startNanos);
 				csocket.close();
 			} catch (IOException e) {
+				reportFailure(e);
+			} finally {
+				openConnections.decrement();
+				logAccess(startMillis, System.nanoTime() - startNanos);
+				state.release();
+			}
+		}
+
+		/**
+		 * Method that records the time to the first byte of the response for the
+		 * executed script, if there was one.
+		 * 
+		 * @param startNanos
+		 *            Time when the request was accepted.
+		 */
+		private void recordTimeToFirstByte(long startNanos) {
+			long firstByteNanos = firstByteStream.getFirstByteNanos();
+			if (scriptName != null && firstByteNanos != 0) {
+				metrics.timer("scripts.ttfb." + scriptName).record(firstByteNanos - startNanos);
+			}
+		}
+
+		/**
+		 * Method that records the exception which broke the request. The exception
+		 * is written to the access log with its stack trace if there is one,
+		 * otherwise it is printed. Only the first exception of a request is
+		 * recorded, a later one is usually caused by it.
+		 * 
+		 * @param e
+		 *            Exception which broke the request.
+		 */
+		private void reportFailure(Exception e) {
+			if (accessLog == null) {
 				e.printStackTrace();
 			}
+			if (failure != null) {
+				return;
+			}
+			failure = e;
+			failedRequests.increment();
+		}
+
+		/**
+		 * Method that hands the finished request over to the access log. The
+		 * logged status is the one actually sent to the client, or 0 if no
+		 * response was sent.
+		 * 
+		 * @param startMillis
+		 *            Time when the request was accepted.
+		 * @param durationNanos
+		 *            Time needed to serve the request.
+		 */
+		private void logAccess(long startMillis, long durationNanos) {
+			if (accessLog == null) {
+				return;
+			}
+			int status;
+			if (errorStatus != 0) {
+				status = errorStatus;
+			} else if (context != null && context.isHeaderGenerated()) {
+				status = context.getStatusCode();
+			} else {
+				status = 0;
+			}
+			long bytes = context == null ? 0 : context.getBytesWritten();
+			accessLog.log(new AccessLogEntry(csocket.getInetAddress(), startMillis, method, reqPath, version, status,
+					bytes, durationNanos, SID, failure));
 		}
 
 		/**
@@ -443,6 +954,7 @@ public class SmartHttpServer {
 					newSession();
 				} else if (new Date().getTime() > sessionCandidate.validUntil) {
 					sessions.remove(sidCandidate);
+					expiredSessions.increment();
 					newSession();
 				} else {
 					SID = sidCandidate;
@@ -467,6 +979,7 @@ public class SmartHttpServer {
 			smEntry.map = new ConcurrentHashMap<>();
 			smEntry.host = host;
 			sessions.put(SID, smEntry);
+			createdSessions.increment();
 			outputCookies.add(new RCCookie("sid", SID, null, host, "/"));
 
 		}
@@ -486,21 +999,6 @@ public class SmartHttpServer {
 			return sb.toString();
 		}
 
-		/**
-		 * Method which reads the document from the disk.
-		 * 
-		 * @param string
-		 *            Location of the document.
-		 * @return Document read and transformed to text.
-		 * @throws IOException
-		 */
-		private String readFromDisk(String string) throws IOException {
-			Path path = Paths.get(string);
-			byte[] file = Files.readAllBytes(path);
-			String docBody = new String(file, StandardCharsets.UTF_8);
-			return docBody;
-		}
-
 		/**
 		 * Method that extracts the extension from the file.
 		 * 
@@ -542,6 +1040,7 @@ public class SmartHttpServer {
 		 * @throws IOException
 		 */
 		private void sendError(OutputStream ostream, int i, String string) throws IOException {
+			errorStatus = i;
 			ostream.write(("HTTP/1.1 " + i + " " + string + "\r\n" + "Server: Simple java server\r\n"
 					+ "Content-Type: text/plain;charset=UTF-8\r\n" + "Content-Length: 0\r\n" + "Connection: close\r\n"
 					+ "\r\n").getBytes(StandardCharsets.US_ASCII));
@@ -554,12 +1053,13 @@ public class SmartHttpServer {
 		 * 
 		 * @param is
 		 *            Input stream.
-		 * @return Request in byte format.
+		 * @param bos
+		 *            Empty buffer the request is read into.
+		 * @return Request, or null if the stream ended before the request did.
 		 * @throws IOException
 		 */
-		private byte[] readRequest(InputStream is) throws IOException {
+		private String readRequest(InputStream is, ConnectionState.RequestBuffer bos) throws IOException {
 
-			ByteArrayOutputStream bos = new ByteArrayOutputStream();
 			int state = 0;
 			l: while (true) {
 				int b = is.read();
@@ -601,7 +1101,7 @@ public class SmartHttpServer {
 					break;
 				}
 			}
-			return bos.toByteArray();
+			return bos.decode(StandardCharsets.US_ASCII);
 		}
 
 		/**
@@ -662,6 +1162,17 @@ public class SmartHttpServer {
 				sendError(ostream, 404, "Private");
 				return;
 			}
+			if (metricsPath != null && metricsPath.equals("/" + urlPath)) {
+				if (directCall && metricsLocalOnly && !csocket.getInetAddress().isLoopbackAddress()) {
+					sendError(ostream, 404, "File not found.");
+					return;
+				}
+				if (context == null) {
+					context = new RequestContext(ostream, params, permParams, outputCookies, tempParams, this);
+				}
+				metricsWorker.processRequest(context);
+				return;
+			}
 			if (urlPath.startsWith("ext/")) {
 				if (context == null) {
 					context = new RequestContext(ostream, params, permParams, outputCookies, tempParams, this);
@@ -685,11 +1196,8 @@ public class SmartHttpServer {
 				return;
 			}
 
-			if (!requestedPath.toFile().exists() || !requestedPath.toFile().canRead()) {
-				sendError(ostream, 404, "File not found.");
-				return;
-			}
-
+			// the file is not checked up front; a missing or unreadable one is
+			// noticed when it is read, so a cached script costs no file access
 			String extension = extension(requestedPath);
 			String mimeType = mimeTypes.get(extension);
 			if (mimeType == null) {
@@ -697,19 +1205,114 @@ public class SmartHttpServer {
 			}
 
 			if (extension.equals("smscr")) {
+				CompiledScript script;
+				try {
+					script = scriptCache.get(requestedPath);
+				} catch (NoSuchFileException | AccessDeniedException e) {
+					sendError(ostream, 404, "File not found.");
+					return;
+				}
 				if (context == null) {
 					context = new RequestContext(ostream, params, permParams, outputCookies, tempParams, this);
 				}
-				String docBody = readFromDisk(requestedPath.toString());
-				new SmartScriptEngine(new SmartScriptParser(docBody).getDocumentNode(), context).execute();
+				scriptName = documentRoot.relativize(requestedPath).toString().replace('\\', '/');
+				executeWithinBudget(script);
 
 			} else {
+				byte[] data;
+				try {
+					data = Files.readAllBytes(requestedPath);
+				} catch (NoSuchFileException | AccessDeniedException e) {
+					sendError(ostream, 404, "File not found.");
+					return;
+				}
 				if (context == null) {
 					context = new RequestContext(ostream, params, permParams, outputCookies);
 				}
 				context.setMimeType(mimeType);
 				context.setStatusCode(200);
-				context.write(Files.readAllBytes(requestedPath));
+				context.write(data);
+			}
+		}
+
+		/**
+		 * Method that executes the script within the execution budget of the
+		 * request. A script dispatched from another script shares the budget of
+		 * the first one. A script which exceeds the budget is stopped; if the
+		 * header wasn't sent yet, the client gets 503 when the time is up and
+		 * 500 otherwise, or else the response is cut short.
+		 * 
+		 * @param script
+		 *            Compiled script.
+		 * @throws IOException
+		 *             If the response can't be written.
+		 */
+		private void executeWithinBudget(CompiledScript script) throws IOException {
+			if (context.getExecutionBudget() != null) {
+				executeScript(script);
+				return;
+			}
+			context.setExecutionBudget(
+					new ExecutionBudget(scriptMaxIterations, scriptMaxOutputBytes, scriptTimeoutMillis));
+			try {
+				executeScript(script);
+			} catch (ExecutionBudgetExceededException e) {
+				metrics.counter("scripts.budget." + e.getLimit().name().toLowerCase(Locale.ROOT)).increment();
+				reportFailure(e);
+				if (!context.isHeaderGenerated()) {
+					if (e.getLimit() == ExecutionBudget.Limit.DEADLINE) {
+						sendError(ostream, 503, "Service Unavailable");
+					} else {
+						sendError(ostream, 500, "Internal Server Error");
+					}
+				}
+			} finally {
+				context.setExecutionBudget(null);
+			}
+		}
+
+		/**
+		 * Method that executes the script, or sends its cached response if the
+		 * script has an output cache rule. A response is cached only if it is
+		 * complete, header included, and sets no cookies; a request which has
+		 * to set a cookie, such as the first one of a session, always executes
+		 * the script.
+		 * 
+		 * @param script
+		 *            Compiled script.
+		 * @throws IOException
+		 *             If the response can't be written.
+		 */
+		private void executeScript(CompiledScript script) throws IOException {
+			OutputCache.Rule rule = outputCache == null ? null : outputCache.getRule("/" + scriptName);
+			if (rule == null) {
+				script.execute(context, earlyFlush);
+				return;
+			}
+			if (context.isHeaderGenerated() || !outputCookies.isEmpty() || !outputCache.isCacheable(script)) {
+				outputCache.bypass();
+				script.execute(context, earlyFlush);
+				return;
+			}
+
+			String key = rule.key("/" + scriptName, script.getDependencies(), context);
+			OutputCache.Entry cached = outputCache.get(key, script);
+			if (cached != null) {
+				context.replay(cached.getResponse(), cached.getHeaderLength());
+				return;
+			}
+
+			CapturingOutputStream capture = new CapturingOutputStream(ostream, outputCache.getMaxEntryBytes());
+			context.setOutputStream(capture);
+			try {
+				script.execute(context, earlyFlush);
+			} finally {
+				context.setOutputStream(ostream);
+			}
+			if (capture.isComplete() && context.isHeaderGenerated() && outputCookies.isEmpty()) {
+				byte[] response = capture.toByteArray();
+				int headerLength = (int) (response.length - context.getBytesWritten());
+				outputCache.put(key, script, response, headerLength, rule.getTtlMillis());
 			}
 		}
 
@@ -762,6 +1365,7 @@ public class SmartHttpServer {
 				for (String session : sessions.keySet()) {
 					if (sessions.get(session).validUntil < new Date().getTime()) {
 						sessions.remove(session);
+						expiredSessions.increment();
 					}
 				}
 
@@ -0,0 +1,399 @@
+package hr.fer.zemris.java.webserver.log;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Class that represents an asynchronous access log. Worker threads only put
+ * entries into a bounded lock-free ring buffer, and a single background thread
+ * formats them and writes them to the log file in batches. If the disk can't
+ * keep up and the buffer fills up, new entries are dropped and counted instead
+ * of blocking the worker threads. The number of dropped entries is written to
+ * the log as soon as the writer catches up, and the stack trace of an
+ * exception which broke a request follows its entry. The log file is rotated
+ * when it grows over the maximal size or when the rotation interval passes.
+ * 
+ * @author Dinz
+ *
+ */
+public class AccessLog {
+
+	/**
+	 * Maximal number of entries written in one batch.
+	 */
+	private static final int BATCH_SIZE = 256;
+
+	/**
+	 * Number of characters after which a batch is written even if it has less
+	 * than {@link #BATCH_SIZE} entries.
+	 */
+	private static final int MAX_BATCH_CHARS = 64 * 1024;
+
+	/**
+	 * Time after a failed rotation before the log file is rotated again.
+	 */
+	private static final long ROTATE_RETRY_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+	/**
+	 * Time the writer thread sleeps when there is nothing to write.
+	 */
+	private static final long IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+
+	/**
+	 * Path of the log file.
+	 */
+	private final Path file;
+
+	/**
+	 * Format of the entries.
+	 */
+	private final AccessLogFormat format;
+
+	/**
+	 * Buffer of entries waiting to be written.
+	 */
+	private final RingBuffer<AccessLogEntry> buffer;
+
+	/**
+	 * Maximal size of the log file in bytes before it is rotated, or 0 if the
+	 * size is not limited.
+	 */
+	private final long maxFileSize;
+
+	/**
+	 * Time in milliseconds after which the log file is rotated, or 0 if the file
+	 * is not rotated by time.
+	 */
+	private final long rotateIntervalMillis;
+
+	/**
+	 * Number of entries accepted by the log.
+	 */
+	private final LongAdder logged = new LongAdder();
+
+	/**
+	 * Number of entries dropped because the buffer was full or because they
+	 * couldn't be written to the file.
+	 */
+	private final LongAdder dropped = new LongAdder();
+
+	/**
+	 * Number of dropped entries already reported in the log file.
+	 */
+	private long reportedDrops;
+
+	/**
+	 * Channel of the current log file.
+	 */
+	private FileChannel channel;
+
+	/**
+	 * Size of the current log file.
+	 */
+	private long fileSize;
+
+	/**
+	 * Time when the current log file was opened.
+	 */
+	private long openedAt;
+
+	/**
+	 * Time of the last failed rotation, 0 if there was none.
+	 */
+	private long rotationFailedAt;
+
+	/**
+	 * Builder reused for formatting the batches.
+	 */
+	private final StringBuilder batch = new StringBuilder(BATCH_SIZE * 128);
+
+	/**
+	 * Number of entries in the current batch.
+	 */
+	private int batchEntries;
+
+	/**
+	 * Background writer thread.
+	 */
+	private final WriterThread writerThread = new WriterThread();
+
+	/**
+	 * Flag which notes that the log is being closed.
+	 */
+	private volatile boolean closing;
+
+	/**
+	 * Constructs a new access log and starts its writer thread.
+	 * 
+	 * @param file
+	 *            Path of the log file.
+	 * @param pattern
+	 *            Pattern of the entries, see {@link AccessLogFormat}.
+	 * @param bufferSize
+	 *            Number of entries which can wait for the writer.
+	 * @param maxFileSize
+	 *            Maximal size of the log file in bytes, or 0 for no limit.
+	 * @param rotateIntervalSeconds
+	 *            Rotation interval in seconds, or 0 for no time rotation.
+	 * @throws IOException
+	 *             If the log file can't be opened.
+	 */
+	public AccessLog(Path file, String pattern, int bufferSize, long maxFileSize, long rotateIntervalSeconds)
+			throws IOException {
+		this.file = file.toAbsolutePath();
+		this.format = new AccessLogFormat(pattern);
+		this.buffer = new RingBuffer<>(bufferSize);
+		this.maxFileSize = maxFileSize;
+		this.rotateIntervalMillis = TimeUnit.SECONDS.toMillis(rotateIntervalSeconds);
+		openFile();
+		writerThread.start();
+	}
+
+	/**
+	 * Puts the entry into the log. The method never blocks; if the buffer is
+	 * full, the entry is dropped and counted.
+	 * 
+	 * @param entry
+	 *            Entry to be logged.
+	 * @return True if the entry was accepted, false if it was dropped.
+	 */
+	public boolean log(AccessLogEntry entry) {
+		if (closing || !buffer.offer(entry)) {
+			dropped.increment();
+			return false;
+		}
+		logged.increment();
+		return true;
+	}
+
+	/**
+	 * Gets the number of entries accepted by the log.
+	 * 
+	 * @return Number of accepted entries.
+	 */
+	public long getLoggedCount() {
+		return logged.sum();
+	}
+
+	/**
+	 * Gets the number of entries dropped because the writer couldn't keep up or
+	 * couldn't write them.
+	 * 
+	 * @return Number of dropped entries.
+	 */
+	public long getDroppedCount() {
+		return dropped.sum();
+	}
+
+	/**
+	 * Gets the number of entries waiting to be written.
+	 * 
+	 * @return Number of waiting entries.
+	 */
+	public int getPendingCount() {
+		return buffer.size();
+	}
+
+	/**
+	 * Closes the log. Entries which are already in the buffer are written before
+	 * the file is closed.
+	 */
+	public void close() {
+		closing = true;
+		LockSupport.unpark(writerThread);
+		try {
+			writerThread.join(TimeUnit.SECONDS.toMillis(5));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Writes all the entries currently in the buffer, batch by batch.
+	 * 
+	 * @return True if anything was written, false otherwise.
+	 * @throws IOException
+	 *             If writing fails.
+	 */
+	private boolean drain() throws IOException {
+		boolean written = false;
+		while (true) {
+			AccessLogEntry entry;
+			while (batchEntries < BATCH_SIZE && batch.length() < MAX_BATCH_CHARS
+					&& (entry = buffer.poll()) != null) {
+				format.format(entry, batch);
+				batch.append(System.lineSeparator());
+				if (entry.error != null) {
+					appendStackTrace(entry.error);
+				}
+				batchEntries++;
+			}
+			long drops = dropped.sum();
+			if (drops != reportedDrops) {
+				batch.append("# access log dropped ").append(drops - reportedDrops).append(" entries")
+						.append(System.lineSeparator());
+				reportedDrops = drops;
+			}
+			if (batch.length() == 0) {
+				return written;
+			}
+			writeBatch();
+			written = true;
+		}
+	}
+
+	/**
+	 * Appends the stack trace of the exception which broke a request to the
+	 * batch. Every line starts with "# ", like the other notes of the log, so
+	 * the tools reading the entries can skip it.
+	 * 
+	 * @param error
+	 *            Exception which broke the request.
+	 */
+	private void appendStackTrace(Throwable error) {
+		StringWriter trace = new StringWriter();
+		error.printStackTrace(new PrintWriter(trace));
+		for (String line : trace.toString().split("\\R")) {
+			batch.append("# ").append(line).append(System.lineSeparator());
+		}
+	}
+
+	/**
+	 * Writes the current batch to the log file, rotating the file first if
+	 * needed. The batch is emptied even if it can't be written, and its entries
+	 * are counted as dropped, so a failing disk never makes it grow.
+	 * 
+	 * @throws IOException
+	 *             If writing fails.
+	 */
+	private void writeBatch() throws IOException {
+		try {
+			if (!channel.isOpen()) {
+				openFile();
+			} else if (shouldRotate()) {
+				rotate();
+			}
+			ByteBuffer bytes = ByteBuffer.wrap(batch.toString().getBytes(StandardCharsets.UTF_8));
+			while (bytes.hasRemaining()) {
+				fileSize += channel.write(bytes);
+			}
+		} catch (IOException e) {
+			dropped.add(batchEntries);
+			throw e;
+		} finally {
+			batch.setLength(0);
+			batchEntries = 0;
+		}
+	}
+
+	/**
+	 * Checks if the log file should be rotated.
+	 * 
+	 * @return True if the file should be rotated.
+	 */
+	private boolean shouldRotate() {
+		if (System.currentTimeMillis() - rotationFailedAt < ROTATE_RETRY_MILLIS) {
+			return false;
+		}
+		if (maxFileSize > 0 && fileSize >= maxFileSize) {
+			return true;
+		}
+		return rotateIntervalMillis > 0 && System.currentTimeMillis() - openedAt >= rotateIntervalMillis;
+	}
+
+	/**
+	 * Closes the current log file, renames it by the current time and opens a
+	 * new one. If the file can't be renamed, it is opened again and the log
+	 * keeps appending to it until the rotation is retried.
+	 * 
+	 * @throws IOException
+	 *             If the log file can't be opened again.
+	 */
+	private void rotate() throws IOException {
+		channel.close();
+		String suffix = new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date());
+		Path rotated = file.resolveSibling(file.getFileName() + "." + suffix);
+		for (int i = 1; Files.exists(rotated); i++) {
+			rotated = file.resolveSibling(file.getFileName() + "." + suffix + "-" + i);
+		}
+		try {
+			Files.move(file, rotated, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			rotationFailedAt = System.currentTimeMillis();
+			System.err.println("Warning: access log " + file + " can't be rotated: " + e.getMessage());
+		}
+		openFile();
+	}
+
+	/**
+	 * Opens the log file for appending.
+	 * 
+	 * @throws IOException
+	 *             If the file can't be opened.
+	 */
+	private void openFile() throws IOException {
+		if (file.getParent() != null) {
+			Files.createDirectories(file.getParent());
+		}
+		channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.APPEND);
+		fileSize = channel.size();
+		openedAt = System.currentTimeMillis();
+	}
+
+	/**
+	 * Class that represents the background thread which writes the entries to
+	 * the log file.
+	 * 
+	 * @author Dinz
+	 *
+	 */
+	private class WriterThread extends Thread {
+		/**
+		 * Constructs a new writer thread.
+		 */
+		public WriterThread() {
+			super("access-log-writer");
+			this.setDaemon(true);
+		}
+
+		@Override
+		public void run() {
+			while (true) {
+				try {
+					boolean written = drain();
+					if (closing && buffer.size() == 0) {
+						break;
+					}
+					if (!written) {
+						LockSupport.parkNanos(IDLE_NANOS);
+					}
+				} catch (IOException e) {
+					e.printStackTrace();
+					if (closing) {
+						break;
+					}
+					LockSupport.parkNanos(TimeUnit.SECONDS.toNanos(1));
+				}
+			}
+			try {
+				channel.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+}
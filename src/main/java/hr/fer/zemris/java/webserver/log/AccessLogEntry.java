@@ -0,0 +1,120 @@
+package hr.fer.zemris.java.webserver.log;
+
+import java.net.InetAddress;
+
+/**
+ * Class that represents a single access log entry. The entry only holds the
+ * raw values collected by the worker thread; all formatting is done later by
+ * the access log writer thread.
+ *
+ * @author Dinz
+ *
+ */
+public class AccessLogEntry {
+
+	/**
+	 * Address of the client.
+	 */
+	InetAddress remoteAddress;
+
+	/**
+	 * Time when the request was accepted, in milliseconds since the epoch.
+	 */
+	long timestamp;
+
+	/**
+	 * Method of the request.
+	 */
+	String method;
+
+	/**
+	 * Requested path, including the query string.
+	 */
+	String path;
+
+	/**
+	 * Version of the request.
+	 */
+	String version;
+
+	/**
+	 * Status code sent to the client, 0 if no response was sent.
+	 */
+	int statusCode;
+
+	/**
+	 * Number of body bytes sent to the client.
+	 */
+	long bytes;
+
+	/**
+	 * Time needed to process the request, in nanoseconds.
+	 */
+	long durationNanos;
+
+	/**
+	 * Session ID of the request.
+	 */
+	String sid;
+
+	/**
+	 * Exception which broke the request, if any.
+	 */
+	Throwable error;
+
+	/**
+	 * Constructs a new access log entry.
+	 *
+	 * @param remoteAddress
+	 *            Address of the client.
+	 * @param timestamp
+	 *            Time when the request was accepted.
+	 * @param method
+	 *            Method of the request.
+	 * @param path
+	 *            Requested path.
+	 * @param version
+	 *            Version of the request.
+	 * @param statusCode
+	 *            Status code sent to the client, 0 if no response was sent.
+	 * @param bytes
+	 *            Number of body bytes sent to the client.
+	 * @param durationNanos
+	 *            Time needed to process the request.
+	 * @param sid
+	 *            Session ID, or null if there is none.
+	 * @param error
+	 *            Exception which broke the request, or null.
+	 */
+	public AccessLogEntry(InetAddress remoteAddress, long timestamp, String method, String path, String version,
+			int statusCode, long bytes, long durationNanos, String sid, Throwable error) {
+		this.remoteAddress = remoteAddress;
+		this.timestamp = timestamp;
+		this.method = method;
+		this.path = path;
+		this.version = version;
+		this.statusCode = statusCode;
+		this.bytes = bytes;
+		this.durationNanos = durationNanos;
+		this.sid = sid;
+		this.error = error;
+	}
+
+	/**
+	 * Gets the status code of the entry.
+	 *
+	 * @return Status code.
+	 */
+	public int getStatusCode() {
+		return statusCode;
+	}
+
+	/**
+	 * Gets the time needed to process the request.
+	 *
+	 * @return Duration in nanoseconds.
+	 */
+	public long getDurationNanos() {
+		return durationNanos;
+	}
+}
@@ -0,0 +1,206 @@
+package hr.fer.zemris.java.webserver.log;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Class that represents a compiled access log format. The format is given as a
+ * pattern similar to the one used by Apache httpd, and it is split into parts
+ * only once, when the format is created. Supported directives are:
+ * <ul>
+ * <li>%h - address of the client</li>
+ * <li>%t - time of the request</li>
+ * <li>%r - first line of the request</li>
+ * <li>%m - method of the request</li>
+ * <li>%U - requested path</li>
+ * <li>%H - version of the request</li>
+ * <li>%s - status code, or "-" if no response was sent</li>
+ * <li>%b - number of body bytes, or "-" if there were none</li>
+ * <li>%D - time needed to serve the request in microseconds</li>
+ * <li>%T - time needed to serve the request in milliseconds</li>
+ * <li>%S - session ID</li>
+ * <li>%e - exception which broke the request</li>
+ * <li>%% - the percent sign</li>
+ * </ul>
+ * Instances are used only by the access log writer thread and are not thread
+ * safe.
+ *
+ * @author Dinz
+ *
+ */
+public class AccessLogFormat {
+
+	/**
+	 * Default access log format.
+	 */
+	public static final String DEFAULT_PATTERN = "%h [%t] \"%r\" %s %b %D";
+
+	/**
+	 * Formatter for the time of the request.
+	 */
+	private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter
+			.ofPattern("dd/MMM/yyyy:HH:mm:ss Z", Locale.US).withZone(ZoneId.systemDefault());
+
+	/**
+	 * Literal parts of the format, with null on the places of directives.
+	 */
+	private final String[] literals;
+
+	/**
+	 * Directives of the format, with 0 on the places of literals.
+	 */
+	private final char[] directives;
+
+	/**
+	 * Second of the last formatted time.
+	 */
+	private long cachedSecond = -1;
+
+	/**
+	 * Last formatted time.
+	 */
+	private String cachedTime;
+
+	/**
+	 * Constructs a new access log format from the pattern.
+	 *
+	 * @param pattern
+	 *            Pattern of the format.
+	 * @throws IllegalArgumentException
+	 *             If the pattern contains an unknown directive.
+	 */
+	public AccessLogFormat(String pattern) {
+		List<String> literalList = new ArrayList<>();
+		StringBuilder directiveBuilder = new StringBuilder();
+		StringBuilder literal = new StringBuilder();
+		for (int i = 0; i < pattern.length(); i++) {
+			char c = pattern.charAt(i);
+			if (c != '%' || i == pattern.length() - 1) {
+				literal.append(c);
+				continue;
+			}
+			char directive = pattern.charAt(++i);
+			if (directive == '%') {
+				literal.append('%');
+				continue;
+			}
+			if ("htrmUHsbDTSe".indexOf(directive) < 0) {
+				throw new IllegalArgumentException("Unknown access log directive: %" + directive);
+			}
+			if (literal.length() > 0) {
+				literalList.add(literal.toString());
+				directiveBuilder.append((char) 0);
+				literal.setLength(0);
+			}
+			literalList.add(null);
+			directiveBuilder.append(directive);
+		}
+		if (literal.length() > 0) {
+			literalList.add(literal.toString());
+			directiveBuilder.append((char) 0);
+		}
+		literals = literalList.toArray(new String[literalList.size()]);
+		directives = directiveBuilder.toString().toCharArray();
+	}
+
+	/**
+	 * Appends the formatted entry to the builder.
+	 *
+	 * @param entry
+	 *            Entry to be formatted.
+	 * @param sb
+	 *            Builder where the entry is written.
+	 */
+	public void format(AccessLogEntry entry, StringBuilder sb) {
+		for (int i = 0; i < directives.length; i++) {
+			switch (directives[i]) {
+			case 0:
+				sb.append(literals[i]);
+				break;
+			case 'h':
+				sb.append(entry.remoteAddress == null ? "-" : entry.remoteAddress.getHostAddress());
+				break;
+			case 't':
+				sb.append(formatTime(entry.timestamp));
+				break;
+			case 'r':
+				sb.append(orDash(entry.method)).append(' ').append(orDash(entry.path)).append(' ')
+						.append(orDash(entry.version));
+				break;
+			case 'm':
+				sb.append(orDash(entry.method));
+				break;
+			case 'U':
+				sb.append(orDash(entry.path));
+				break;
+			case 'H':
+				sb.append(orDash(entry.version));
+				break;
+			case 's':
+				if (entry.statusCode == 0) {
+					sb.append('-');
+				} else {
+					sb.append(entry.statusCode);
+				}
+				break;
+			case 'b':
+				if (entry.bytes == 0) {
+					sb.append('-');
+				} else {
+					sb.append(entry.bytes);
+				}
+				break;
+			case 'D':
+				sb.append(entry.durationNanos / 1_000);
+				break;
+			case 'T':
+				sb.append(entry.durationNanos / 1_000_000);
+				break;
+			case 'S':
+				sb.append(orDash(entry.sid));
+				break;
+			case 'e':
+				if (entry.error == null) {
+					sb.append('-');
+				} else {
+					sb.append(entry.error.getClass().getName());
+					if (entry.error.getMessage() != null) {
+						sb.append(": ").append(entry.error.getMessage());
+					}
+				}
+				break;
+			}
+		}
+	}
+
+	/**
+	 * Formats the time, reusing the previous result within the same second.
+	 *
+	 * @param timestamp
+	 *            Time in milliseconds since the epoch.
+	 * @return Formatted time.
+	 */
+	private String formatTime(long timestamp) {
+		long second = timestamp / 1000;
+		if (second != cachedSecond) {
+			cachedSecond = second;
+			cachedTime = TIME_FORMATTER.format(Instant.ofEpochMilli(timestamp));
+		}
+		return cachedTime;
+	}
+
+	/**
+	 * Returns the value or a dash if the value is missing.
+	 *
+	 * @param value
+	 *            Value to be checked.
+	 * @return Value or a dash.
+	 */
+	private static String orDash(String value) {
+		return value == null ? "-" : value;
+	}
+}
@@ -0,0 +1,135 @@
+package hr.fer.zemris.java.webserver.log;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Class that represents a bounded lock-free ring buffer with many producers and
+ * a single consumer. Every slot carries a sequence number which tells the
+ * producers and the consumer whose turn it is to use the slot, so neither side
+ * ever takes a lock. When the buffer is full, {@link #offer(Object)} fails
+ * immediately instead of blocking the caller.
+ *
+ * @author Dinz
+ *
+ * @param <E>
+ *            Type of the elements in the buffer.
+ */
+public class RingBuffer<E> {
+
+	/**
+	 * Slots of the buffer.
+	 */
+	private final Object[] buffer;
+
+	/**
+	 * Sequence number of every slot.
+	 */
+	private final AtomicLongArray sequences;
+
+	/**
+	 * Mask used to map a position to a slot index.
+	 */
+	private final int mask;
+
+	/**
+	 * Next position to be claimed by a producer.
+	 */
+	private final AtomicLong tail = new AtomicLong();
+
+	/**
+	 * Next position to be read by the consumer. Only the consumer thread writes
+	 * it.
+	 */
+	private volatile long head;
+
+	/**
+	 * Constructs a new ring buffer. The capacity is rounded up to the next power
+	 * of two.
+	 *
+	 * @param capacity
+	 *            Minimal capacity of the buffer.
+	 * @throws IllegalArgumentException
+	 *             If the capacity is smaller than 1.
+	 */
+	public RingBuffer(int capacity) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("Capacity must be at least 1.");
+		}
+		int size = Integer.highestOneBit(capacity);
+		if (size < capacity) {
+			size <<= 1;
+		}
+		buffer = new Object[size];
+		sequences = new AtomicLongArray(size);
+		for (int i = 0; i < size; i++) {
+			sequences.set(i, i);
+		}
+		mask = size - 1;
+	}
+
+	/**
+	 * Tries to add an element to the buffer. Safe to call from any thread.
+	 *
+	 * @param element
+	 *            Element to be added.
+	 * @return True if the element was added, false if the buffer is full.
+	 */
+	public boolean offer(E element) {
+		long position = tail.get();
+		while (true) {
+			int index = (int) position & mask;
+			long difference = sequences.get(index) - position;
+			if (difference == 0) {
+				if (tail.compareAndSet(position, position + 1)) {
+					buffer[index] = element;
+					sequences.lazySet(index, position + 1);
+					return true;
+				}
+				position = tail.get();
+			} else if (difference < 0) {
+				return false;
+			} else {
+				position = tail.get();
+			}
+		}
+	}
+
+	/**
+	 * Removes the oldest element from the buffer. Must only be called from the
+	 * single consumer thread.
+	 *
+	 * @return Oldest element, or null if the buffer is empty.
+	 */
+	@SuppressWarnings("unchecked")
+	public E poll() {
+		int index = (int) head & mask;
+		if (sequences.get(index) != head + 1) {
+			return null;
+		}
+		E element = (E) buffer[index];
+		buffer[index] = null;
+		sequences.lazySet(index, head + buffer.length);
+		head++;
+		return element;
+	}
+
+	/**
+	 * Returns the capacity of the buffer.
+	 *
+	 * @return Capacity of the buffer.
+	 */
+	public int capacity() {
+		return buffer.length;
+	}
+
+	/**
+	 * Returns the approximate number of elements currently in the buffer.
+	 *
+	 * @return Approximate number of elements.
+	 */
+	public int size() {
+		long size = tail.get() - head;
+		return (int) Math.max(0, Math.min(size, buffer.length));
+	}
+}
@@ -0,0 +1,57 @@
+package hr.fer.zemris.java.webserver.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Class that represents a counter metric. The counter is striped internally,
+ * so many threads can update it at the same time without contending on a
+ * single memory location.
+ * 
+ * @author Dinz
+ *
+ */
+public class Counter implements Metric {
+
+	/**
+	 * Striped value of the counter.
+	 */
+	private final LongAdder count = new LongAdder();
+
+	/**
+	 * Increments the counter by one.
+	 */
+	public void increment() {
+		count.increment();
+	}
+
+	/**
+	 * Decrements the counter by one.
+	 */
+	public void decrement() {
+		count.decrement();
+	}
+
+	/**
+	 * Adds the given amount to the counter.
+	 * 
+	 * @param amount
+	 *            Amount to be added.
+	 */
+	public void add(long amount) {
+		count.add(amount);
+	}
+
+	/**
+	 * Gets the current count.
+	 * 
+	 * @return Current count.
+	 */
+	public long getCount() {
+		return count.sum();
+	}
+
+	@Override
+	public Number getValue() {
+		return count.sum();
+	}
+}
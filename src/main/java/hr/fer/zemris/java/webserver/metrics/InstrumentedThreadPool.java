@@ -0,0 +1,94 @@
+package hr.fer.zemris.java.webserver.metrics;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Class that represents a fixed size thread pool which reports its state to a
+ * metrics registry. Active workers, completed tasks and task times are
+ * tracked with striped counters, so the pool's own lock is never taken for
+ * instrumentation.
+ *
+ * @author Dinz
+ *
+ */
+public class InstrumentedThreadPool extends ThreadPoolExecutor {
+
+	/**
+	 * Number of workers currently running a task.
+	 */
+	private final Counter active;
+
+	/**
+	 * Number of completed tasks.
+	 */
+	private final Counter completed;
+
+	/**
+	 * Number of tasks that ended with an exception.
+	 */
+	private final Counter failed;
+
+	/**
+	 * Total time spent running tasks, in microseconds.
+	 */
+	private final Counter busyMicros;
+
+	/**
+	 * Start time of the task currently run by the thread.
+	 */
+	private final ThreadLocal<long[]> taskStart = ThreadLocal.withInitial(() -> new long[1]);
+
+	/**
+	 * Constructs a new instrumented thread pool.
+	 *
+	 * @param threads
+	 *            Number of threads in the pool.
+	 * @param queueCapacity
+	 *            Maximal number of tasks waiting for a free thread.
+	 * @param registry
+	 *            Registry where the metrics are registered.
+	 * @param prefix
+	 *            Prefix of the metric names.
+	 */
+	public InstrumentedThreadPool(int threads, int queueCapacity, MetricsRegistry registry, String prefix) {
+		super(threads, threads, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(queueCapacity));
+		active = registry.counter(prefix + ".active");
+		completed = registry.counter(prefix + ".completed");
+		failed = registry.counter(prefix + ".failed");
+		busyMicros = registry.counter(prefix + ".busyMicros");
+		registry.gauge(prefix + ".size", () -> threads);
+		registry.gauge(prefix + ".queued", () -> getQueue().size());
+		registry.gauge(prefix + ".queueRemaining", () -> getQueue().remainingCapacity());
+	}
+
+	@Override
+	protected void beforeExecute(Thread t, Runnable r) {
+		active.increment();
+		taskStart.get()[0] = System.nanoTime();
+	}
+
+	@Override
+	protected void afterExecute(Runnable r, Throwable t) {
+		busyMicros.add((System.nanoTime() - taskStart.get()[0]) / 1_000);
+		active.decrement();
+		completed.increment();
+		if (t == null && r instanceof Future<?> && ((Future<?>) r).isDone()) {
+			// a submitted task keeps its exception in the future
+			try {
+				((Future<?>) r).get();
+			} catch (CancellationException | ExecutionException e) {
+				t = e;
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		if (t != null) {
+			failed.increment();
+		}
+	}
+}
@@ -0,0 +1,79 @@
+package hr.fer.zemris.java.webserver.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Class that represents a meter - a counter of events which also knows the
+ * rate at which the events happen. Marking an event is as cheap as
+ * incrementing a counter; the rate is only calculated when somebody reads it.
+ * 
+ * @author Dinz
+ *
+ */
+public class Meter implements Metric {
+
+	/**
+	 * Minimal length of the interval the rate is calculated on.
+	 */
+	private static final long INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+	/**
+	 * Number of marked events.
+	 */
+	private final LongAdder count = new LongAdder();
+
+	/**
+	 * Count at the start of the current interval.
+	 */
+	private long intervalCount;
+
+	/**
+	 * Start of the current interval.
+	 */
+	private long intervalStart = System.nanoTime();
+
+	/**
+	 * Rate calculated on the last finished interval.
+	 */
+	private double rate;
+
+	/**
+	 * Marks one event.
+	 */
+	public void mark() {
+		count.increment();
+	}
+
+	/**
+	 * Gets the number of marked events.
+	 * 
+	 * @return Number of events.
+	 */
+	public long getCount() {
+		return count.sum();
+	}
+
+	/**
+	 * Gets the rate of events per second, calculated on the interval between the
+	 * previous reading and this one, but at least one second long.
+	 * 
+	 * @return Events per second.
+	 */
+	public synchronized double getRate() {
+		long now = System.nanoTime();
+		long elapsed = now - intervalStart;
+		if (elapsed >= INTERVAL_NANOS) {
+			long current = count.sum();
+			rate = (current - intervalCount) * (double) TimeUnit.SECONDS.toNanos(1) / elapsed;
+			intervalCount = current;
+			intervalStart = now;
+		}
+		return rate;
+	}
+
+	@Override
+	public Number getValue() {
+		return count.sum();
+	}
+}
@@ -0,0 +1,20 @@
+package hr.fer.zemris.java.webserver.metrics;
+
+/**
+ * Interface which describes a single metric of the server. A metric is
+ * anything that can report its current value when asked, so simple gauges can
+ * be given as lambda expressions.
+ * 
+ * @author Dinz
+ *
+ */
+@FunctionalInterface
+public interface Metric {
+
+	/**
+	 * Method which returns the current value of the metric.
+	 * 
+	 * @return Current value of the metric.
+	 */
+	public Number getValue();
+}
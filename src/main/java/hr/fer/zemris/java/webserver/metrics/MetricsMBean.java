@@ -0,0 +1,128 @@
+package hr.fer.zemris.java.webserver.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Class that publishes a metrics registry over JMX. Every metric in the
+ * registry becomes a read-only attribute of the MBean, so metrics registered
+ * after the MBean was published show up as well.
+ *
+ * @author Dinz
+ *
+ */
+public class MetricsMBean implements DynamicMBean {
+
+	/**
+	 * Registry which is published.
+	 */
+	private final MetricsRegistry registry;
+
+	/**
+	 * Name under which the MBean is registered.
+	 */
+	private final ObjectName objectName;
+
+	/**
+	 * Constructs a new metrics MBean.
+	 *
+	 * @param registry
+	 *            Registry to be published.
+	 * @param objectName
+	 *            JMX name of the MBean.
+	 * @throws JMException
+	 *             If the name is invalid.
+	 */
+	public MetricsMBean(MetricsRegistry registry, String objectName) throws JMException {
+		this.registry = registry;
+		this.objectName = new ObjectName(objectName);
+	}
+
+	/**
+	 * Registers the MBean with the platform MBean server.
+	 *
+	 * @throws JMException
+	 *             If the MBean can't be registered.
+	 */
+	public void register() throws JMException {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		if (server.isRegistered(objectName)) {
+			server.unregisterMBean(objectName);
+		}
+		server.registerMBean(this, objectName);
+	}
+
+	/**
+	 * Unregisters the MBean from the platform MBean server.
+	 *
+	 * @throws JMException
+	 *             If the MBean can't be unregistered.
+	 */
+	public void unregister() throws JMException {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		if (server.isRegistered(objectName)) {
+			server.unregisterMBean(objectName);
+		}
+	}
+
+	@Override
+	public Object getAttribute(String attribute) throws AttributeNotFoundException {
+		Metric metric = registry.get(attribute);
+		if (metric == null) {
+			throw new AttributeNotFoundException(attribute);
+		}
+		return metric.getValue();
+	}
+
+	@Override
+	public AttributeList getAttributes(String[] attributes) {
+		AttributeList list = new AttributeList();
+		for (String attribute : attributes) {
+			Metric metric = registry.get(attribute);
+			if (metric != null) {
+				list.add(new Attribute(attribute, metric.getValue()));
+			}
+		}
+		return list;
+	}
+
+	@Override
+	public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+		throw new AttributeNotFoundException("Metrics are read-only.");
+	}
+
+	@Override
+	public AttributeList setAttributes(AttributeList attributes) {
+		return new AttributeList();
+	}
+
+	@Override
+	public Object invoke(String actionName, Object[] params, String[] signature) {
+		throw new UnsupportedOperationException("Metrics MBean has no operations.");
+	}
+
+	@Override
+	public MBeanInfo getMBeanInfo() {
+		SortedMap<String, Number> snapshot = registry.snapshot();
+		List<MBeanAttributeInfo> attributes = new ArrayList<>();
+		for (Map.Entry<String, Number> entry : snapshot.entrySet()) {
+			attributes.add(new MBeanAttributeInfo(entry.getKey(), entry.getValue().getClass().getName(),
+					entry.getKey(), true, false, false));
+		}
+		return new MBeanInfo(getClass().getName(), "Smart HTTP server metrics",
+				attributes.toArray(new MBeanAttributeInfo[attributes.size()]), null, null, null);
+	}
+}
@@ -0,0 +1,147 @@
+package hr.fer.zemris.java.webserver.metrics;
+
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Class that represents a registry of the server metrics. Every part of the
+ * server (thread pool, accept loop, session store, caches...) registers its
+ * metrics here under a dotted name, and the registry is then published over
+ * JMX and through the metrics web worker. Counters and meters are created on
+ * first use and shared afterwards, so the same name always gives the same
+ * instance.
+ *
+ * @author Dinz
+ *
+ */
+public class MetricsRegistry {
+
+	/**
+	 * Registry used by the server and its workers.
+	 */
+	private static final MetricsRegistry DEFAULT = new MetricsRegistry();
+
+	/**
+	 * Registered metrics by name.
+	 */
+	private final Map<String, Metric> metrics = new ConcurrentHashMap<>();
+
+	/**
+	 * Gets the registry used by the server and its workers.
+	 *
+	 * @return Default registry.
+	 */
+	public static MetricsRegistry getDefault() {
+		return DEFAULT;
+	}
+
+	/**
+	 * Gets the counter with the given name, creating it if needed.
+	 *
+	 * @param name
+	 *            Name of the counter.
+	 * @return Counter with the given name.
+	 * @throws IllegalArgumentException
+	 *             If another kind of metric is registered under the name.
+	 */
+	public Counter counter(String name) {
+		Metric metric = metrics.computeIfAbsent(name, k -> new Counter());
+		if (!(metric instanceof Counter)) {
+			throw new IllegalArgumentException("Metric " + name + " is not a counter.");
+		}
+		return (Counter) metric;
+	}
+
+	/**
+	 * Gets the meter with the given name, creating it if needed. Besides the
+	 * meter itself, which reports the number of events, a gauge named
+	 * <code>name.rate</code> reports the events per second.
+	 *
+	 * @param name
+	 *            Name of the meter.
+	 * @return Meter with the given name.
+	 * @throws IllegalArgumentException
+	 *             If another kind of metric is registered under the name.
+	 */
+	public Meter meter(String name) {
+		Metric metric = metrics.computeIfAbsent(name, k -> new Meter());
+		if (!(metric instanceof Meter)) {
+			throw new IllegalArgumentException("Metric " + name + " is not a meter.");
+		}
+		Meter meter = (Meter) metric;
+		metrics.putIfAbsent(name + ".rate", meter::getRate);
+		return meter;
+	}
+
+	/**
+	 * Gets the timer with the given name, creating it if needed. The timer
+	 * itself reports the mean duration in milliseconds, and the gauges named
+	 * <code>name.count</code> and <code>name.max</code> report the number of
+	 * events and the longest duration.
+	 *
+	 * @param name
+	 *            Name of the timer.
+	 * @return Timer with the given name.
+	 * @throws IllegalArgumentException
+	 *             If another kind of metric is registered under the name.
+	 */
+	public Timer timer(String name) {
+		Metric metric = metrics.computeIfAbsent(name, k -> new Timer());
+		if (!(metric instanceof Timer)) {
+			throw new IllegalArgumentException("Metric " + name + " is not a timer.");
+		}
+		Timer timer = (Timer) metric;
+		metrics.putIfAbsent(name + ".count", timer::getCount);
+		metrics.putIfAbsent(name + ".max", timer::getMaxMillis);
+		return timer;
+	}
+
+	/**
+	 * Registers a gauge under the given name, replacing any previous metric with
+	 * that name.
+	 *
+	 * @param name
+	 *            Name of the gauge.
+	 * @param gauge
+	 *            Gauge which reports the value.
+	 */
+	public void gauge(String name, Metric gauge) {
+		metrics.put(name, gauge);
+	}
+
+	/**
+	 * Removes the metric with the given name.
+	 *
+	 * @param name
+	 *            Name of the metric.
+	 */
+	public void remove(String name) {
+		metrics.remove(name);
+	}
+
+	/**
+	 * Gets the metric with the given name.
+	 *
+	 * @param name
+	 *            Name of the metric.
+	 * @return Metric, or null if there is no such metric.
+	 */
+	public Metric get(String name) {
+		return metrics.get(name);
+	}
+
+	/**
+	 * Reads the current values of all the metrics.
+	 *
+	 * @return Values of the metrics sorted by name.
+	 */
+	public SortedMap<String, Number> snapshot() {
+		SortedMap<String, Number> snapshot = new TreeMap<>();
+		for (Map.Entry<String, Metric> entry : metrics.entrySet()) {
+			snapshot.put(entry.getKey(), entry.getValue().getValue());
+		}
+		return snapshot;
+	}
+}
@@ -0,0 +1,36 @@
+package hr.fer.zemris.java.webserver.metrics;
+
+import java.util.Map;
+
+import hr.fer.zemris.java.webserver.IWebWorker;
+import hr.fer.zemris.java.webserver.RequestContext;
+
+/**
+ * Class that represents a worker which shows the current server metrics. Every
+ * metric is written as a plain text line with its name and value, so the page
+ * is easy to read both for people and for monitoring scripts.
+ * <p>
+ * The metrics tell a lot about the server, so the worker isn't a regular
+ * mapped worker. It lives outside the workers package, where
+ * <code>/ext/</code> requests can't load it, and the server publishes it on
+ * <code>server.metrics.path</code> only if <code>server.metrics.http</code>
+ * allows it: <code>off</code> by default, <code>local</code> for the clients
+ * on the loopback address, or <code>all</code>. The same metrics are always
+ * available through JMX.
+ * 
+ * @author Dinz
+ *
+ */
+public class MetricsWorker implements IWebWorker {
+
+	@Override
+	public void processRequest(RequestContext context) throws Exception {
+		context.setMimeType("text/plain");
+		StringBuilder sb = new StringBuilder();
+		for (Map.Entry<String, Number> entry : MetricsRegistry.getDefault().snapshot().entrySet()) {
+			sb.append(entry.getKey()).append(' ').append(entry.getValue()).append("\r\n");
+		}
+		context.write(sb.toString());
+	}
+
+}
@@ -0,0 +1,77 @@
+package hr.fer.zemris.java.webserver.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Class that represents a timer metric, which records the durations of
+ * repeated events. The value of the timer is the mean duration in
+ * milliseconds; the number of events and the longest duration are available
+ * as well. Like the counter, the timer is striped internally.
+ * 
+ * @author Dinz
+ *
+ */
+public class Timer implements Metric {
+
+	/**
+	 * Number of recorded events.
+	 */
+	private final LongAdder count = new LongAdder();
+
+	/**
+	 * Sum of the recorded durations in nanoseconds.
+	 */
+	private final LongAdder totalNanos = new LongAdder();
+
+	/**
+	 * Longest recorded duration in nanoseconds.
+	 */
+	private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+	/**
+	 * Records the duration of an event.
+	 * 
+	 * @param nanos
+	 *            Duration in nanoseconds.
+	 */
+	public void record(long nanos) {
+		count.increment();
+		totalNanos.add(nanos);
+		maxNanos.accumulate(nanos);
+	}
+
+	/**
+	 * Gets the number of recorded events.
+	 * 
+	 * @return Number of events.
+	 */
+	public long getCount() {
+		return count.sum();
+	}
+
+	/**
+	 * Gets the mean duration of the recorded events.
+	 * 
+	 * @return Mean duration in milliseconds, 0 if nothing was recorded.
+	 */
+	public double getMeanMillis() {
+		long events = count.sum();
+		return events == 0 ? 0 : totalNanos.sum() / (double) events / TimeUnit.MILLISECONDS.toNanos(1);
+	}
+
+	/**
+	 * Gets the longest recorded duration.
+	 * 
+	 * @return Longest duration in milliseconds.
+	 */
+	public double getMaxMillis() {
+		return maxNanos.get() / (double) TimeUnit.MILLISECONDS.toNanos(1);
+	}
+
+	@Override
+	public Number getValue() {
+		return getMeanMillis();
+	}
+}
@@ -0,0 +1,295 @@
+package hr.fer.zemris.java.webserver.perf;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Class that represents a stored set of benchmark results. Baselines are kept
+ * as small JSON files with a format version, so an old baseline is never
+ * silently compared with results of a different shape:
+ *
+ * <pre>
+ * {
+ *   "version": 1,
+ *   "java": "17.0.9",
+ *   "benchmarks": {
+ *     "script.execute.osnovni": { "opsPerSecond": 12345.6, "bytesPerOp": 2048.0 }
+ *   }
+ * }
+ * </pre>
+ *
+ * @author Dinz
+ *
+ */
+public class Baseline {
+
+	/**
+	 * Version of the baseline format.
+	 */
+	public static final int FORMAT_VERSION = 1;
+
+	/**
+	 * Results by the benchmark name.
+	 */
+	private final Map<String, BenchmarkResult> results = new TreeMap<>();
+
+	/**
+	 * Java version the results were measured on.
+	 */
+	private String javaVersion = System.getProperty("java.version");
+
+	/**
+	 * Constructs an empty baseline.
+	 */
+	public Baseline() {
+	}
+
+	/**
+	 * Constructs a baseline from the measured results.
+	 *
+	 * @param results
+	 *            Measured results.
+	 */
+	public Baseline(Collection<BenchmarkResult> results) {
+		for (BenchmarkResult result : results) {
+			this.results.put(result.getName(), result);
+		}
+	}
+
+	/**
+	 * Gets the result of the benchmark with the given name.
+	 *
+	 * @param name
+	 *            Name of the benchmark.
+	 * @return Result, or null if the baseline has no such benchmark.
+	 */
+	public BenchmarkResult get(String name) {
+		return results.get(name);
+	}
+
+	/**
+	 * Gets the names of the benchmarks in the baseline.
+	 *
+	 * @return Unmodifiable set of the names, in alphabetical order.
+	 */
+	public Set<String> getNames() {
+		return Collections.unmodifiableSet(results.keySet());
+	}
+
+	/**
+	 * Gets the Java version the results were measured on.
+	 *
+	 * @return Java version.
+	 */
+	public String getJavaVersion() {
+		return javaVersion;
+	}
+
+	/**
+	 * Writes the baseline to the file.
+	 *
+	 * @param file
+	 *            File to be written.
+	 * @throws IOException
+	 *             If the file can't be written.
+	 */
+	public void write(Path file) throws IOException {
+		StringBuilder sb = new StringBuilder();
+		sb.append("{\n");
+		sb.append("  \"version\": ").append(FORMAT_VERSION).append(",\n");
+		sb.append("  \"java\": \"").append(javaVersion).append("\",\n");
+		sb.append("  \"benchmarks\": {");
+		boolean first = true;
+		for (BenchmarkResult result : results.values()) {
+			sb.append(first ? "\n" : ",\n");
+			first = false;
+			sb.append(String.format(Locale.ROOT, "    \"%s\": { \"opsPerSecond\": %.1f, \"bytesPerOp\": %.1f }",
+					result.getName(), result.getOpsPerSecond(), result.getBytesPerOp()));
+		}
+		sb.append("\n  }\n}\n");
+		if (file.toAbsolutePath().getParent() != null) {
+			Files.createDirectories(file.toAbsolutePath().getParent());
+		}
+		Files.write(file, sb.toString().getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Reads the baseline from the file.
+	 *
+	 * @param file
+	 *            File to be read.
+	 * @return Read baseline.
+	 * @throws IOException
+	 *             If the file can't be read or is not a valid baseline.
+	 */
+	@SuppressWarnings("unchecked")
+	public static Baseline read(Path file) throws IOException {
+		String json = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+		Object parsed;
+		try {
+			parsed = new JsonReader(json).readValue();
+		} catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+			throw new IOException("Invalid baseline file " + file + ": " + e.getMessage());
+		}
+		if (!(parsed instanceof Map)) {
+			throw new IOException("Invalid baseline file " + file);
+		}
+		Map<String, Object> root = (Map<String, Object>) parsed;
+		Object version = root.get("version");
+		if (!(version instanceof Double) || ((Double) version).intValue() != FORMAT_VERSION) {
+			throw new IOException("Baseline " + file + " has version " + version + ", expected " + FORMAT_VERSION);
+		}
+		Baseline baseline = new Baseline();
+		if (root.get("java") instanceof String) {
+			baseline.javaVersion = (String) root.get("java");
+		}
+		Object benchmarks = root.get("benchmarks");
+		if (benchmarks instanceof Map) {
+			for (Map.Entry<String, Object> entry : ((Map<String, Object>) benchmarks).entrySet()) {
+				Map<String, Object> values = (Map<String, Object>) entry.getValue();
+				double ops = ((Double) values.get("opsPerSecond")).doubleValue();
+				double bytes = ((Double) values.get("bytesPerOp")).doubleValue();
+				baseline.results.put(entry.getKey(), new BenchmarkResult(entry.getKey(), ops, bytes));
+			}
+		}
+		return baseline;
+	}
+
+	/**
+	 * Class that represents a minimal reader of the JSON subset used by the
+	 * baseline files: objects, strings and numbers.
+	 *
+	 * @author Dinz
+	 *
+	 */
+	private static class JsonReader {
+		/**
+		 * Text being read.
+		 */
+		private final String text;
+
+		/**
+		 * Index of the next unread character.
+		 */
+		private int index;
+
+		/**
+		 * Constructs a new JSON reader.
+		 *
+		 * @param text
+		 *            Text to be read.
+		 */
+		public JsonReader(String text) {
+			this.text = text;
+		}
+
+		/**
+		 * Reads the next value.
+		 *
+		 * @return Map, String or Double.
+		 */
+		public Object readValue() {
+			skipWhitespace();
+			char c = text.charAt(index);
+			if (c == '{') {
+				return readObject();
+			} else if (c == '"') {
+				return readString();
+			} else {
+				return readNumber();
+			}
+		}
+
+		/**
+		 * Reads an object.
+		 *
+		 * @return Map of the object members.
+		 */
+		private Map<String, Object> readObject() {
+			Map<String, Object> map = new LinkedHashMap<>();
+			index++;
+			skipWhitespace();
+			if (text.charAt(index) == '}') {
+				index++;
+				return map;
+			}
+			while (true) {
+				skipWhitespace();
+				String key = readString();
+				skipWhitespace();
+				expect(':');
+				map.put(key, readValue());
+				skipWhitespace();
+				if (text.charAt(index) == ',') {
+					index++;
+				} else {
+					expect('}');
+					return map;
+				}
+			}
+		}
+
+		/**
+		 * Reads a string without escape sequences.
+		 *
+		 * @return Read string.
+		 */
+		private String readString() {
+			expect('"');
+			int end = text.indexOf('"', index);
+			if (end < 0) {
+				throw new IllegalArgumentException("Unterminated string.");
+			}
+			String value = text.substring(index, end);
+			index = end + 1;
+			return value;
+		}
+
+		/**
+		 * Reads a number.
+		 *
+		 * @return Read number.
+		 */
+		private Double readNumber() {
+			int start = index;
+			while (index < text.length() && "+-0123456789.eE".indexOf(text.charAt(index)) >= 0) {
+				index++;
+			}
+			if (start == index) {
+				throw new IllegalArgumentException("Unexpected character at " + index + ".");
+			}
+			return Double.valueOf(text.substring(start, index));
+		}
+
+		/**
+		 * Checks that the next character is the expected one and skips it.
+		 *
+		 * @param c
+		 *            Expected character.
+		 */
+		private void expect(char c) {
+			if (text.charAt(index) != c) {
+				throw new IllegalArgumentException("Expected '" + c + "' at " + index + ".");
+			}
+			index++;
+		}
+
+		/**
+		 * Skips the whitespace.
+		 */
+		private void skipWhitespace() {
+			while (index < text.length() && Character.isWhitespace(text.charAt(index))) {
+				index++;
+			}
+		}
+	}
+}
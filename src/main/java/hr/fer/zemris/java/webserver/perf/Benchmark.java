@@ -0,0 +1,43 @@
+package hr.fer.zemris.java.webserver.perf;
+
+/**
+ * Interface which describes a single benchmark of the performance suite. The
+ * runner calls {@link #run()} repeatedly and counts how many operations per
+ * second it achieves and how many bytes each operation allocates.
+ * 
+ * @author Dinz
+ *
+ */
+public interface Benchmark {
+
+	/**
+	 * Method which returns the name of the benchmark. The name is used as a key
+	 * in the baseline file, so it must stay the same between runs.
+	 * 
+	 * @return Name of the benchmark.
+	 */
+	public String getName();
+
+	/**
+	 * Method which prepares the benchmark before it is measured.
+	 * 
+	 * @throws Exception
+	 */
+	public default void setUp() throws Exception {
+	}
+
+	/**
+	 * Method which runs one operation of the benchmark.
+	 * 
+	 * @throws Exception
+	 */
+	public void run() throws Exception;
+
+	/**
+	 * Method which releases the resources after the benchmark is measured.
+	 * 
+	 * @throws Exception
+	 */
+	public default void tearDown() throws Exception {
+	}
+}
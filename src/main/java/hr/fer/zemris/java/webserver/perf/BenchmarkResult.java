@@ -0,0 +1,68 @@
+package hr.fer.zemris.java.webserver.perf;
+
+/**
+ * Class that represents the measured result of a single benchmark.
+ * 
+ * @author Dinz
+ *
+ */
+public class BenchmarkResult {
+
+	/**
+	 * Name of the benchmark.
+	 */
+	private final String name;
+
+	/**
+	 * Number of operations per second.
+	 */
+	private final double opsPerSecond;
+
+	/**
+	 * Number of bytes allocated per operation.
+	 */
+	private final double bytesPerOp;
+
+	/**
+	 * Constructs a new benchmark result.
+	 * 
+	 * @param name
+	 *            Name of the benchmark.
+	 * @param opsPerSecond
+	 *            Number of operations per second.
+	 * @param bytesPerOp
+	 *            Number of bytes allocated per operation.
+	 */
+	public BenchmarkResult(String name, double opsPerSecond, double bytesPerOp) {
+		this.name = name;
+		this.opsPerSecond = opsPerSecond;
+		this.bytesPerOp = bytesPerOp;
+	}
+
+	/**
+	 * Gets the name of the benchmark.
+	 * 
+	 * @return Name of the benchmark.
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Gets the number of operations per second.
+	 * 
+	 * @return Operations per second.
+	 */
+	public double getOpsPerSecond() {
+		return opsPerSecond;
+	}
+
+	/**
+	 * Gets the number of bytes allocated per operation.
+	 * 
+	 * @return Bytes per operation.
+	 */
+	public double getBytesPerOp() {
+		return bytesPerOp;
+	}
+}
@@ -0,0 +1,131 @@
+package hr.fer.zemris.java.webserver.perf;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Class that represents a runner of the benchmarks. Every benchmark is first
+ * warmed up and then measured in several rounds of fixed duration; the median
+ * of the rounds is reported, so a single disturbed round doesn't move the
+ * result. Allocation is measured over all the threads of the JVM, so work done
+ * by the server threads in the macro benchmarks is included as well.
+ *
+ * @author Dinz
+ *
+ */
+public class BenchmarkRunner {
+
+	/**
+	 * Thread bean used for reading allocation counters.
+	 */
+	private static final com.sun.management.ThreadMXBean THREADS = (com.sun.management.ThreadMXBean) ManagementFactory
+			.getThreadMXBean();
+
+	/**
+	 * Duration of the warm-up in milliseconds.
+	 */
+	private final long warmupMillis;
+
+	/**
+	 * Duration of a single measured round in milliseconds.
+	 */
+	private final long roundMillis;
+
+	/**
+	 * Number of measured rounds.
+	 */
+	private final int rounds;
+
+	/**
+	 * Constructs a new benchmark runner.
+	 *
+	 * @param warmupMillis
+	 *            Duration of the warm-up in milliseconds.
+	 * @param roundMillis
+	 *            Duration of a single measured round in milliseconds.
+	 * @param rounds
+	 *            Number of measured rounds.
+	 */
+	public BenchmarkRunner(long warmupMillis, long roundMillis, int rounds) {
+		if (rounds < 1) {
+			throw new IllegalArgumentException("At least one round is needed.");
+		}
+		this.warmupMillis = warmupMillis;
+		this.roundMillis = roundMillis;
+		this.rounds = rounds;
+		THREADS.setThreadAllocatedMemoryEnabled(true);
+	}
+
+	/**
+	 * Method which warms up and measures the benchmark.
+	 *
+	 * @param benchmark
+	 *            Benchmark to be measured.
+	 * @return Measured result.
+	 * @throws Exception
+	 *             If the benchmark fails.
+	 */
+	public BenchmarkResult measure(Benchmark benchmark) throws Exception {
+		benchmark.setUp();
+		try {
+			long warmupEnd = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(warmupMillis);
+			while (System.nanoTime() < warmupEnd) {
+				benchmark.run();
+			}
+
+			double[] opsPerSecond = new double[rounds];
+			double[] bytesPerOp = new double[rounds];
+			long roundNanos = TimeUnit.MILLISECONDS.toNanos(roundMillis);
+			for (int round = 0; round < rounds; round++) {
+				long ops = 0;
+				long allocatedBefore = allocatedBytes();
+				long start = System.nanoTime();
+				long elapsed;
+				do {
+					benchmark.run();
+					ops++;
+					elapsed = System.nanoTime() - start;
+				} while (elapsed < roundNanos);
+				long allocated = allocatedBytes() - allocatedBefore;
+				opsPerSecond[round] = ops * (double) TimeUnit.SECONDS.toNanos(1) / elapsed;
+				bytesPerOp[round] = Math.max(0, allocated) / (double) ops;
+			}
+			return new BenchmarkResult(benchmark.getName(), median(opsPerSecond), median(bytesPerOp));
+		} finally {
+			benchmark.tearDown();
+		}
+	}
+
+	/**
+	 * Method which sums the allocated bytes over all live threads.
+	 *
+	 * @return Total number of allocated bytes.
+	 */
+	private static long allocatedBytes() {
+		long total = 0;
+		for (long allocated : THREADS.getThreadAllocatedBytes(THREADS.getAllThreadIds())) {
+			if (allocated > 0) {
+				total += allocated;
+			}
+		}
+		return total;
+	}
+
+	/**
+	 * Method which calculates the median of the values.
+	 *
+	 * @param values
+	 *            Values.
+	 * @return Median of the values.
+	 */
+	private static double median(double[] values) {
+		double[] sorted = values.clone();
+		Arrays.sort(sorted);
+		int middle = sorted.length / 2;
+		if (sorted.length % 2 == 1) {
+			return sorted[middle];
+		}
+		return (sorted[middle - 1] + sorted[middle]) / 2;
+	}
+}
@@ -0,0 +1,269 @@
+package hr.fer.zemris.java.webserver.perf;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import hr.fer.zemris.java.webserver.SmartHttpServer;
+
+/**
+ * Class that creates the macro benchmarks which run against a real server on
+ * the loopback interface: serving a static file, creating new sessions and
+ * dispatching requests to the workers. Every operation is one complete HTTP
+ * request on a new connection.
+ * 
+ * @author Dinz
+ *
+ */
+public class HttpBenchmarks {
+
+	/**
+	 * Server used by the benchmarks.
+	 */
+	private final BenchmarkServer server;
+
+	/**
+	 * Port the server listens on.
+	 */
+	private final int port;
+
+	/**
+	 * Constructs the server for the macro benchmarks. The server uses the given
+	 * document root and the mime and worker configuration from the given
+	 * configuration directory.
+	 * 
+	 * @param documentRoot
+	 *            Document root of the server.
+	 * @param configDirectory
+	 *            Directory with mime.properties and workers.properties.
+	 * @throws Exception
+	 *             If the server can't be created.
+	 */
+	public HttpBenchmarks(Path documentRoot, Path configDirectory) throws Exception {
+		try (ServerSocket probe = new ServerSocket(0)) {
+			port = probe.getLocalPort();
+		}
+		Path config = Files.createTempFile("perf-server", ".properties");
+		config.toFile().deleteOnExit();
+		List<String> lines = new ArrayList<>();
+		lines.add("server.address = 127.0.0.1");
+		lines.add("server.domainName = localhost");
+		lines.add("server.port = " + port);
+		lines.add("server.workerThreads = 4");
+		lines.add("server.documentRoot = " + slashes(documentRoot));
+		lines.add("server.mimeConfig = " + slashes(configDirectory.resolve("mime.properties")));
+		lines.add("server.workers = " + slashes(configDirectory.resolve("workers.properties")));
+		lines.add("session.timeout = 600");
+		Files.write(config, lines, StandardCharsets.UTF_8);
+		server = new BenchmarkServer(config.toString());
+	}
+
+	/**
+	 * Method which starts the server and returns the macro benchmarks.
+	 * 
+	 * @return List of the benchmarks.
+	 * @throws IOException
+	 *             If the server doesn't start listening.
+	 */
+	public List<Benchmark> start() throws IOException {
+		server.startServer();
+		awaitListening();
+		List<Benchmark> benchmarks = new ArrayList<>();
+		benchmarks.add(new RequestBenchmark("http.static.index", "/index.html", true));
+		benchmarks.add(new RequestBenchmark("http.session.churn", "/index.html", false));
+		benchmarks.add(new RequestBenchmark("http.worker.hello", "/hello?name=perf", true));
+		benchmarks.add(new RequestBenchmark("http.worker.calc", "/calc?a=3&b=4", true));
+		return benchmarks;
+	}
+
+	/**
+	 * Method which waits until the server accepts connections.
+	 * 
+	 * @throws IOException
+	 *             If the server doesn't start listening in five seconds.
+	 */
+	private void awaitListening() throws IOException {
+		long deadline = System.currentTimeMillis() + 5000;
+		while (true) {
+			try {
+				new Socket(InetAddress.getLoopbackAddress(), port).close();
+				return;
+			} catch (IOException e) {
+				if (System.currentTimeMillis() > deadline) {
+					throw e;
+				}
+				try {
+					Thread.sleep(50);
+				} catch (InterruptedException ex) {
+					Thread.currentThread().interrupt();
+					throw e;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Method which stops the server.
+	 */
+	public void stop() {
+		server.stopServer();
+	}
+
+	/**
+	 * Method which sends one request and reads the whole response.
+	 * 
+	 * @param path
+	 *            Requested path.
+	 * @param sid
+	 *            Session ID to be sent, or null.
+	 * @return Response bytes.
+	 * @throws IOException
+	 *             If the request fails.
+	 */
+	private byte[] get(String path, String sid) throws IOException {
+		try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+			socket.setSoTimeout(5000);
+			OutputStream os = socket.getOutputStream();
+			String request = "GET " + path + " HTTP/1.1\r\nHost: localhost\r\n"
+					+ (sid == null ? "" : "Cookie: sid=\"" + sid + "\"\r\n") + "\r\n";
+			os.write(request.getBytes(StandardCharsets.US_ASCII));
+			os.flush();
+			InputStream is = socket.getInputStream();
+			ByteArrayOutputStream response = new ByteArrayOutputStream();
+			byte[] buffer = new byte[4096];
+			int read;
+			while ((read = is.read(buffer)) != -1) {
+				response.write(buffer, 0, read);
+			}
+			return response.toByteArray();
+		}
+	}
+
+	/**
+	 * Method which converts the path to the form expected in the server
+	 * configuration.
+	 * 
+	 * @param path
+	 *            Path to be converted.
+	 * @return Absolute path with forward slashes.
+	 */
+	private static String slashes(Path path) {
+		return path.toAbsolutePath().normalize().toString().replace('\\', '/');
+	}
+
+	/**
+	 * Class that represents a benchmark which sends one request per operation.
+	 * 
+	 * @author Dinz
+	 *
+	 */
+	private class RequestBenchmark implements Benchmark {
+		/**
+		 * Name of the benchmark.
+		 */
+		private final String name;
+
+		/**
+		 * Requested path.
+		 */
+		private final String path;
+
+		/**
+		 * Flag which tells if the requests reuse one session.
+		 */
+		private final boolean keepSession;
+
+		/**
+		 * Session ID reused by the requests.
+		 */
+		private String sid;
+
+		/**
+		 * Constructs a new request benchmark.
+		 * 
+		 * @param name
+		 *            Name of the benchmark.
+		 * @param path
+		 *            Requested path.
+		 * @param keepSession
+		 *            True if all requests should use the same session, false if
+		 *            every request should start a new one.
+		 */
+		public RequestBenchmark(String name, String path, boolean keepSession) {
+			this.name = name;
+			this.path = path;
+			this.keepSession = keepSession;
+		}
+
+		@Override
+		public String getName() {
+			return name;
+		}
+
+		@Override
+		public void setUp() throws IOException {
+			if (!keepSession) {
+				return;
+			}
+			String response = new String(get(path, null), StandardCharsets.ISO_8859_1);
+			int start = response.indexOf("sid=\"");
+			if (start >= 0) {
+				start += "sid=\"".length();
+				sid = response.substring(start, response.indexOf('"', start));
+			}
+		}
+
+		@Override
+		public void run() throws IOException {
+			byte[] response = get(path, sid);
+			if (response.length < 12 || response[9] != '2') {
+				throw new IOException("Request " + path + " failed: "
+						+ new String(response, 0, Math.min(response.length, 64), StandardCharsets.ISO_8859_1));
+			}
+		}
+	}
+
+	/**
+	 * Class that represents a server which can be started and stopped by the
+	 * benchmarks.
+	 * 
+	 * @author Dinz
+	 *
+	 */
+	private static class BenchmarkServer extends SmartHttpServer {
+		/**
+		 * Constructs a new benchmark server.
+		 * 
+		 * @param configFileName
+		 *            Configuration file of the server.
+		 * @throws Exception
+		 *             If the server can't be created.
+		 */
+		public BenchmarkServer(String configFileName) throws Exception {
+			super(configFileName);
+		}
+
+		/**
+		 * Starts the server.
+		 */
+		public void startServer() {
+			start();
+		}
+
+		/**
+		 * Stops the server.
+		 */
+		public void stopServer() {
+			stop();
+		}
+	}
+}
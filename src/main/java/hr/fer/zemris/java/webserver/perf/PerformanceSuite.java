@@ -0,0 +1,175 @@
+package hr.fer.zemris.java.webserver.perf;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Class that runs the performance regression suite. It measures the script
+ * micro benchmarks and the HTTP macro benchmarks, writes the results to a JSON
+ * file and compares them with the stored baseline. The program exits with a
+ * non-zero status if any benchmark lost more throughput or gained more
+ * allocation than the tolerances allow, which fails the Maven build when the
+ * suite is run through the <code>perf</code> profile.
+ * <p>
+ * The suite is configured with system properties:
+ * <ul>
+ * <li>perf.webroot - document root with the scripts (default: webroot)</li>
+ * <li>perf.config - directory with mime and worker configuration (default:
+ * config)</li>
+ * <li>perf.baseline - baseline file (default: perf/baseline.json)</li>
+ * <li>perf.results - file for the current results (default:
+ * target/perf/results.json)</li>
+ * <li>perf.throughputTolerance - allowed relative throughput loss (default:
+ * 0.20)</li>
+ * <li>perf.allocationTolerance - allowed relative allocation growth
+ * (default: 0.10)</li>
+ * <li>perf.allocationSlack - allowed absolute allocation growth in bytes per
+ * operation (default: 256)</li>
+ * <li>perf.update - if true, the baseline is replaced by the current results
+ * (default: false)</li>
+ * <li>perf.warmupMillis, perf.roundMillis, perf.rounds - length of the
+ * measurement (default: 2000, 1000, 5)</li>
+ * </ul>
+ * A missing baseline file fails the suite, so the gate can't pass without
+ * comparing anything, and so does a benchmark of the baseline which the run
+ * didn't measure; the baseline is measured on the machine which runs the
+ * suite, with perf.update set to true.
+ *
+ * @author Dinz
+ *
+ */
+public class PerformanceSuite {
+
+	/**
+	 * Main method that runs the suite. The JVM is always ended explicitly,
+	 * because the benchmark server keeps non-daemon threads alive.
+	 *
+	 * @param args
+	 *            Arguments from the command line, not used.
+	 */
+	public static void main(String[] args) {
+		int status;
+		try {
+			status = run();
+		} catch (Exception e) {
+			e.printStackTrace();
+			status = 2;
+		}
+		System.exit(status);
+	}
+
+	/**
+	 * Method which runs the benchmarks and compares them with the baseline.
+	 *
+	 * @return Exit status, 0 if there are no regressions, 1 if there are or if
+	 *         there is no baseline.
+	 * @throws Exception
+	 *             If a benchmark fails.
+	 */
+	private static int run() throws Exception {
+		Path webroot = Paths.get(System.getProperty("perf.webroot", "webroot"));
+		Path config = Paths.get(System.getProperty("perf.config", "config"));
+		Path baselineFile = Paths.get(System.getProperty("perf.baseline", "perf/baseline.json"));
+		Path resultsFile = Paths.get(System.getProperty("perf.results", "target/perf/results.json"));
+		double throughputTolerance = Double.parseDouble(System.getProperty("perf.throughputTolerance", "0.20"));
+		double allocationTolerance = Double.parseDouble(System.getProperty("perf.allocationTolerance", "0.10"));
+		double allocationSlack = Double.parseDouble(System.getProperty("perf.allocationSlack", "256"));
+		boolean update = Boolean.getBoolean("perf.update");
+		BenchmarkRunner runner = new BenchmarkRunner(Long.getLong("perf.warmupMillis", 2000),
+				Long.getLong("perf.roundMillis", 1000), Integer.getInteger("perf.rounds", 5));
+
+		List<BenchmarkResult> results = new ArrayList<>();
+		for (Benchmark benchmark : ScriptBenchmarks.forDocumentRoot(webroot)) {
+			results.add(report(runner.measure(benchmark)));
+		}
+		for (Benchmark benchmark : ScriptBenchmarks.forLoops()) {
+			results.add(report(runner.measure(benchmark)));
+		}
+		HttpBenchmarks http = new HttpBenchmarks(webroot, config);
+		try {
+			for (Benchmark benchmark : http.start()) {
+				results.add(report(runner.measure(benchmark)));
+			}
+		} finally {
+			http.stop();
+		}
+
+		Baseline current = new Baseline(results);
+		current.write(resultsFile);
+		System.out.println("Results written to " + resultsFile);
+
+		if (update) {
+			current.write(baselineFile);
+			System.out.println("Baseline written to " + baselineFile);
+			return 0;
+		}
+		if (!Files.exists(baselineFile)) {
+			System.out.println("There is no baseline " + baselineFile
+					+ " to compare with; measure one on this machine with -Dperf.update=true.");
+			return 1;
+		}
+
+		Baseline baseline = Baseline.read(baselineFile);
+		if (!baseline.getJavaVersion().equals(current.getJavaVersion())) {
+			System.out.println("Warning: baseline was measured on Java " + baseline.getJavaVersion()
+					+ ", current run is on Java " + current.getJavaVersion());
+		}
+		int regressions = 0;
+		for (BenchmarkResult result : results) {
+			BenchmarkResult base = baseline.get(result.getName());
+			if (base == null) {
+				System.out.println("NEW        " + result.getName());
+				continue;
+			}
+			double throughputChange = result.getOpsPerSecond() / base.getOpsPerSecond() - 1;
+			boolean slower = result.getOpsPerSecond() < base.getOpsPerSecond() * (1 - throughputTolerance);
+			boolean heavier = result.getBytesPerOp() > base.getBytesPerOp() * (1 + allocationTolerance)
+					+ allocationSlack;
+			String verdict = slower || heavier ? "REGRESSION" : "OK        ";
+			if (slower || heavier) {
+				regressions++;
+			}
+			System.out.println(String.format(Locale.ROOT, "%s %-40s throughput %+6.1f%%  allocation %.1f -> %.1f B/op",
+					verdict, result.getName(), throughputChange * 100, base.getBytesPerOp(),
+					result.getBytesPerOp()));
+		}
+
+		int missing = 0;
+		for (String name : baseline.getNames()) {
+			if (current.get(name) == null) {
+				System.out.println("MISSING    " + name);
+				missing++;
+			}
+		}
+
+		if (regressions > 0) {
+			System.out.println(regressions + " benchmark(s) regressed against " + baselineFile);
+		}
+		if (missing > 0) {
+			System.out.println(missing + " benchmark(s) of " + baselineFile
+					+ " were not measured; update the baseline with -Dperf.update=true if they were removed.");
+		}
+		if (regressions > 0 || missing > 0) {
+			return 1;
+		}
+		System.out.println("No regressions against " + baselineFile);
+		return 0;
+	}
+
+	/**
+	 * Method which prints the result of a benchmark.
+	 *
+	 * @param result
+	 *            Result to be printed.
+	 * @return The same result.
+	 */
+	private static BenchmarkResult report(BenchmarkResult result) {
+		System.out.println(String.format(Locale.ROOT, "%-40s %14.1f ops/s %12.1f B/op", result.getName(),
+				result.getOpsPerSecond(), result.getBytesPerOp()));
+		return result;
+	}
+}
@@ -0,0 +1,213 @@
+package hr.fer.zemris.java.webserver.perf;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import hr.fer.zemris.java.custom.scripting.compiler.CompiledScript;
+import hr.fer.zemris.java.custom.scripting.compiler.ScriptCompiler;
+import hr.fer.zemris.java.custom.scripting.exec.SmartScriptEngine;
+import hr.fer.zemris.java.custom.scripting.nodes.DocumentNode;
+import hr.fer.zemris.java.custom.scripting.parser.SmartScriptParser;
+import hr.fer.zemris.java.webserver.RequestContext;
+import hr.fer.zemris.java.webserver.RequestContext.RCCookie;
+
+/**
+ * Class that creates the micro benchmarks for the smart scripts. For every
+ * script in the document root there is one benchmark which parses the script,
+ * one which executes the compiled script, as the server does, and one which
+ * interprets the parsed script with the reference engine. The loop heavy
+ * scripts, which are not part of the document root, are measured the same way.
+ * 
+ * @author Dinz
+ *
+ */
+public class ScriptBenchmarks {
+
+	/**
+	 * Method which creates the parse, execute and interpret benchmarks for every
+	 * script in the document root. Scripts which can't be parsed are reported and skipped.
+	 * 
+	 * @param documentRoot
+	 *            Document root of the server.
+	 * @return List of the benchmarks.
+	 * @throws IOException
+	 *             If the scripts can't be read.
+	 */
+	public static List<Benchmark> forDocumentRoot(Path documentRoot) throws IOException {
+		List<Path> scripts;
+		try (Stream<Path> files = Files.walk(documentRoot)) {
+			scripts = files.filter(p -> p.toString().endsWith(".smscr")).sorted().collect(Collectors.toList());
+		}
+
+		List<Benchmark> benchmarks = new ArrayList<>();
+		for (Path script : scripts) {
+			String name = documentRoot.relativize(script).toString().replace('\\', '/').replace(".smscr", "")
+					.replace('/', '.');
+			String body = new String(Files.readAllBytes(script), StandardCharsets.UTF_8);
+			DocumentNode document;
+			try {
+				document = new SmartScriptParser(body).getDocumentNode();
+			} catch (RuntimeException e) {
+				System.out.println("Skipping " + script + ", it can't be parsed: " + e);
+				continue;
+			}
+			benchmarks.add(new ParseBenchmark("script.parse." + name, body));
+			CompiledScript compiled = ScriptCompiler.compile(document);
+			SmartScriptEngine engine = new SmartScriptEngine(document);
+			benchmarks.add(new ExecuteBenchmark("script.execute." + name, compiled::execute));
+			benchmarks.add(new ExecuteBenchmark("script.interpret." + name, engine::execute));
+		}
+		return benchmarks;
+	}
+
+	/**
+	 * Method which creates the execute and interpret benchmarks for the loop
+	 * heavy scripts. The first script measures the cost of the loops
+	 * themselves, the second one reads the loop variables in every iteration.
+	 * 
+	 * @return List of the benchmarks.
+	 */
+	public static List<Benchmark> forLoops() {
+		Map<String, String> scripts = new LinkedHashMap<>();
+		scripts.put("loops.count", "{$FOR i 0 100 1$}{$FOR j 0 100 1$}{$END$}{$= i $}{$END$}");
+		scripts.put("loops.read", "{$FOR i 0 100 1$}{$FOR j 0 100 1$}{$= i j * $}{$END$}{$END$}");
+
+		List<Benchmark> benchmarks = new ArrayList<>();
+		for (Map.Entry<String, String> script : scripts.entrySet()) {
+			DocumentNode document = new SmartScriptParser(script.getValue()).getDocumentNode();
+			CompiledScript compiled = ScriptCompiler.compile(document);
+			SmartScriptEngine engine = new SmartScriptEngine(document);
+			benchmarks.add(new ExecuteBenchmark("script.execute." + script.getKey(), compiled::execute));
+			benchmarks.add(new ExecuteBenchmark("script.interpret." + script.getKey(), engine::execute));
+		}
+		return benchmarks;
+	}
+
+	/**
+	 * Class that represents a benchmark which parses a script.
+	 * 
+	 * @author Dinz
+	 *
+	 */
+	private static class ParseBenchmark implements Benchmark {
+		/**
+		 * Name of the benchmark.
+		 */
+		private final String name;
+
+		/**
+		 * Body of the script.
+		 */
+		private final String body;
+
+		/**
+		 * Constructs a new parse benchmark.
+		 * 
+		 * @param name
+		 *            Name of the benchmark.
+		 * @param body
+		 *            Body of the script.
+		 */
+		public ParseBenchmark(String name, String body) {
+			this.name = name;
+			this.body = body;
+		}
+
+		@Override
+		public String getName() {
+			return name;
+		}
+
+		@Override
+		public void run() {
+			new SmartScriptParser(body).getDocumentNode();
+		}
+	}
+
+	/**
+	 * Class that represents a benchmark which executes a script with a fixed set
+	 * of parameters. The output is discarded.
+	 * 
+	 * @author Dinz
+	 *
+	 */
+	private static class ExecuteBenchmark implements Benchmark {
+		/**
+		 * Name of the benchmark.
+		 */
+		private final String name;
+
+		/**
+		 * Execution of the script, shared by all the runs.
+		 */
+		private final Consumer<RequestContext> script;
+
+		/**
+		 * Request parameters.
+		 */
+		private final Map<String, String> parameters = new HashMap<>();
+
+		/**
+		 * Persistent parameters, shared between runs like a session would be.
+		 */
+		private final Map<String, String> persistentParameters = new HashMap<>();
+
+		/**
+		 * Stream which discards the output.
+		 */
+		private final OutputStream output = new OutputStream() {
+			@Override
+			public void write(int b) {
+			}
+
+			@Override
+			public void write(byte[] b, int off, int len) {
+			}
+		};
+
+		/**
+		 * Constructs a new execute benchmark.
+		 * 
+		 * @param name
+		 *            Name of the benchmark.
+		 * @param script
+		 *            Execution of the script.
+		 */
+		public ExecuteBenchmark(String name, Consumer<RequestContext> script) {
+			this.name = name;
+			this.script = script;
+			parameters.put("a", "4");
+			parameters.put("b", "7");
+		}
+
+		@Override
+		public String getName() {
+			return name;
+		}
+
+		@Override
+		public void setUp() {
+			persistentParameters.clear();
+		}
+
+		@Override
+		public void run() {
+			Map<String, String> temporaryParameters = new HashMap<>();
+			temporaryParameters.put("background", "7F7F7F");
+			RequestContext context = new RequestContext(output, parameters, persistentParameters,
+					new ArrayList<RCCookie>(), temporaryParameters, null);
+			script.accept(context);
+		}
+	}
+}
@@ -0,0 +1,40 @@
+package hr.fer.zemris.java.webserver.workers;
+
+import hr.fer.zemris.java.webserver.IWebWorker;
+import hr.fer.zemris.java.webserver.RequestContext;
+import hr.fer.zemris.java.webserver.metrics.Metric;
+import hr.fer.zemris.java.webserver.metrics.MetricsRegistry;
+
+/**
+ * Class that represents a worker which tells if the server is ready to serve
+ * requests, which it is once the scripts are precompiled. A ready server
+ * answers with status 200, and a server which is still warming up, or whose
+ * precompilation failed, with status 503, so load balancers can wait for it.
+ * 
+ * @author Dinz
+ *
+ */
+public class ReadinessWorker implements IWebWorker {
+
+	@Override
+	public void processRequest(RequestContext context) throws Exception {
+		MetricsRegistry metrics = MetricsRegistry.getDefault();
+		Metric ready = metrics.get("server.ready");
+		context.setMimeType("text/plain");
+		if (ready != null && ready.getValue().intValue() == 0) {
+			context.setStatusCode(503);
+			context.setStatusText("Service Unavailable");
+			context.write("NOT READY\r\n");
+		} else {
+			context.write("READY\r\n");
+		}
+		for (String name : new String[] { "scripts.precompile.compiled", "scripts.precompile.failed",
+				"scripts.precompile.totalMillis" }) {
+			Metric metric = metrics.get(name);
+			if (metric != null) {
+				context.write(name + " " + metric.getValue() + "\r\n");
+			}
+		}
+	}
+
+}